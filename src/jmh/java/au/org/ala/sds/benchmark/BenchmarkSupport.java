@@ -0,0 +1,136 @@
+package au.org.ala.sds.benchmark;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import au.org.ala.sds.SensitiveDataService;
+import au.org.ala.sds.dao.SensitiveSpeciesDao;
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitiveTaxonStore;
+import au.org.ala.sds.util.Configuration;
+import au.org.ala.sds.validation.FactCollection;
+
+/**
+ * Common set up for the benchmarks.
+ * <p>
+ * The species, zones and categories are the ones bundled in the jar. Everything runs offline: there is no name
+ * matching index, so the store is built without a name searcher and each taxon is given a synthetic lsid, and records
+ * carry their sampled values so the layers service is never called.
+ */
+final class BenchmarkSupport {
+
+    static final String LSID_PREFIX = "urn:lsid:sds.benchmark:";
+
+    private static final String[][] LOCATIONS = {
+            { "-31.95", "115.86", "Western Australia" },
+            { "-27.47", "153.03", "Queensland" },
+            { "-33.87", "151.21", "New South Wales" },
+            { "-37.81", "144.96", "Victoria" } };
+    private static final String[] DATES = { "1994-03-01", "2004-11-20", "2016-06-15" };
+
+    private static List<SensitiveTaxon> taxa;
+    private static SensitiveTaxonStore store;
+
+    private BenchmarkSupport() {
+    }
+
+    static synchronized void initConfig() {
+        if (System.getProperty("sds.config.file") == null) {
+            System.setProperty("sds.config.file", "/sds-benchmark.properties");
+        }
+        Configuration config = Configuration.getInstance();
+        config.setSpeciesUrl(getBundledResource("sensitive-species.xml").toExternalForm());
+        config.setZoneUrl(getBundledResource("sensitivity-zones.xml").toExternalForm());
+        config.setCategoriesUrl(getBundledResource("sensitivity-categories.xml").toExternalForm());
+    }
+
+    /**
+     * @return The bundled species list, as read by the xml DAO
+     */
+    static synchronized List<SensitiveTaxon> getTaxa() throws Exception {
+        if (taxa == null) {
+            initConfig();
+            try (InputStream is = getBundledResource("sensitive-species.xml").openStream()) {
+                taxa = new SensitiveSpeciesXmlDao(is).getAll();
+            }
+        }
+        return taxa;
+    }
+
+    /**
+     * @return The content of the bundled species list
+     */
+    static byte[] getBundledSpecies() throws Exception {
+        initConfig();
+        return Files.readAllBytes(Paths.get(getBundledResource("sensitive-species.xml").toURI()));
+    }
+
+    /**
+     * @return A store over the bundled species list, with an lsid of {@link #LSID_PREFIX} and the taxon's position
+     */
+    static synchronized SensitiveTaxonStore getStore() throws Exception {
+        if (store == null) {
+            final List<SensitiveTaxon> copy = new ArrayList<SensitiveTaxon>(getTaxa());
+            for (int i = 0; i < copy.size(); i++) {
+                if (copy.get(i).getLsid() == null) {
+                    copy.get(i).setLsid(LSID_PREFIX + i);
+                }
+            }
+            store = new SensitiveTaxonStore(new SensitiveSpeciesDao() {
+                @Override
+                public List<SensitiveTaxon> getAll() {
+                    return copy;
+                }
+            }, null);
+        }
+        return store;
+    }
+
+    /**
+     * @return Records for the taxon across the mainland states and a range of dates
+     */
+    static List<Map<String, String>> records(String scientificName) {
+        List<Map<String, String>> records = new ArrayList<Map<String, String>>();
+        for (String[] location : LOCATIONS) {
+            for (String date : DATES) {
+                records.add(record(scientificName, location[0], location[1], location[2], date));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return A record located by state, with the sampled values flagged as provided
+     */
+    static Map<String, String> record(String scientificName, String latitude, String longitude, String stateProvince, String eventDate) {
+        Map<String, String> record = new HashMap<String, String>();
+        record.put(FactCollection.SCIENTIFIC_NAME_KEY, scientificName);
+        record.put(FactCollection.DECIMAL_LATITUDE_KEY, latitude);
+        record.put(FactCollection.DECIMAL_LONGITUDE_KEY, longitude);
+        record.put(FactCollection.STATE_PROVINCE_KEY, stateProvince);
+        record.put(FactCollection.COUNTRY_KEY, "Australia");
+        record.put(FactCollection.EVENT_DATE_KEY, eventDate);
+        record.put("dataResourceUid", "dr359");
+        record.put(SensitiveDataService.SAMPLED_VALUES_PROVIDED, "true");
+        return record;
+    }
+
+    /**
+     * The test resources, with the same names, come first on the benchmark classpath, so resolve against the
+     * location of the main classes.
+     */
+    private static URL getBundledResource(String name) {
+        try {
+            return new URL(SensitiveTaxonStore.class.getProtectionDomain().getCodeSource().getLocation(), name);
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to locate bundled " + name, e);
+        }
+    }
+}
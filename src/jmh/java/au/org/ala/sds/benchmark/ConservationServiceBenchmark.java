@@ -0,0 +1,60 @@
+package au.org.ala.sds.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.validation.ConservationService;
+import au.org.ala.sds.validation.SdsReportFactory;
+import au.org.ala.sds.validation.ValidationOutcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conservation validation of single records with pre-sampled zones, for a taxon sensitive in Western Australia so
+ * that a quarter of the records are generalised.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConservationServiceBenchmark {
+
+    private ConservationService service;
+    private List<Map<String, String>> records;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        SensitiveTaxon taxon = null;
+        for (SensitiveTaxon candidate : BenchmarkSupport.getTaxa()) {
+            SensitivityZone zone = candidate.getInstances().get(0).getZone();
+            if (candidate.isConservation() && zone != null && SensitivityZone.WA.equals(zone.getId())) {
+                taxon = candidate;
+                break;
+            }
+        }
+        service = new ConservationService(taxon, new SdsReportFactory());
+        records = BenchmarkSupport.records(taxon.getName());
+    }
+
+    @Benchmark
+    public ValidationOutcome validate() {
+        next = (next + 1) % records.size();
+        // Validation adds the zones to the record, so each call gets its own copy
+        return service.validate(new HashMap<String, String>(records.get(next)));
+    }
+}
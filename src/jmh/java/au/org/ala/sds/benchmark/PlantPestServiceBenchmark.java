@@ -0,0 +1,96 @@
+package au.org.ala.sds.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import au.org.ala.sds.knowledgebase.KnowledgeBaseFactory;
+import au.org.ala.sds.model.PlantPestInstance;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityCategoryFactory;
+import au.org.ala.sds.model.SensitivityInstance;
+import au.org.ala.sds.validation.CompiledPlantPestService;
+import au.org.ala.sds.validation.PlantPestService;
+import au.org.ala.sds.validation.SdsReportFactory;
+import au.org.ala.sds.validation.ValidationOutcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plant pest validation of single records.
+ * <p>
+ * The bundled list only has PBC1 pests, so the first of them is re-assigned to each category in turn and every rules
+ * file is measured. Each category is run through its own knowledge base, the merged knowledge base and the Java
+ * evaluator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlantPestServiceBenchmark {
+
+    @Param({ SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA, SensitivityCategory.PLANT_PEST_ERADICATED,
+            SensitivityCategory.PLANT_PEST_UNDER_ERADICATION, SensitivityCategory.PLANT_PEST_SUBJECT_TO_OFFICIAL_CONTROL,
+            SensitivityCategory.PLANT_PEST_IN_TORRES_STRAIT_ZONE, SensitivityCategory.PLANT_PEST_IS_QUEENSLAND_FRUIT_FLY,
+            SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION, SensitivityCategory.PLANT_PEST_NON_TRANSIENT,
+            SensitivityCategory.PLANT_PEST_EXOTIC_BIOLOGICAL_CONTROL_AGENT, SensitivityCategory.PLANT_PEST_HIGHER_TAXON_ID })
+    public String category;
+
+    @Param({ "drools", "merged", "java" })
+    public String engine;
+
+    private PlantPestService service;
+    private List<Map<String, String>> records;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        SensitiveTaxon taxon = null;
+        for (SensitiveTaxon candidate : BenchmarkSupport.getTaxa()) {
+            if (candidate.isPlantPest()) {
+                taxon = reassign(candidate, category);
+                break;
+            }
+        }
+
+        if ("java".equals(engine)) {
+            service = new CompiledPlantPestService(taxon, new SdsReportFactory());
+        } else if ("merged".equals(engine)) {
+            service = new PlantPestService(taxon, KnowledgeBaseFactory.getMergedKnowledgeBase(), new SdsReportFactory());
+            service.setMergedRules(true);
+        } else {
+            service = new PlantPestService(taxon, KnowledgeBaseFactory.getKnowledgeBase(SensitivityCategoryFactory.getCategory(category)),
+                    new SdsReportFactory());
+        }
+        records = BenchmarkSupport.records(taxon.getName());
+    }
+
+    private static SensitiveTaxon reassign(SensitiveTaxon taxon, String category) {
+        SensitiveTaxon copy = new SensitiveTaxon(taxon.getName(), taxon.getRank());
+        copy.setFamily(taxon.getFamily());
+        SensitivityInstance first = taxon.getInstances().get(0);
+        copy.getInstances().add(new PlantPestInstance(SensitivityCategoryFactory.getCategory(category), first.getAuthority(),
+                first.getDataResourceId(), first.getZone(), first.getReason(), first.getRemarks(), null, null));
+        return copy;
+    }
+
+    @Benchmark
+    public ValidationOutcome validate() {
+        next = (next + 1) % records.size();
+        // Validation adds the zones to the record, so each call gets its own copy
+        return service.validate(new HashMap<String, String>(records.get(next)));
+    }
+}
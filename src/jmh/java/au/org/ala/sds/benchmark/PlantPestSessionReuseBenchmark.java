@@ -0,0 +1,80 @@
+package au.org.ala.sds.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import au.org.ala.names.model.RankType;
+import au.org.ala.sds.knowledgebase.KnowledgeBaseFactory;
+import au.org.ala.sds.model.PlantPestInstance;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityCategoryFactory;
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.SensitivityZoneFactory;
+import au.org.ala.sds.validation.PlantPestService;
+import au.org.ala.sds.validation.SdsReportFactory;
+import au.org.ala.sds.validation.ValidationOutcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plant pest validation with a rules session reused by each thread against a session per record
+ * (sds.rules.session.reuse).
+ * <p>
+ * Two pests are measured: one notifiable in Queensland, and Queensland fruit fly, which delegates from PBC1 to PBC5b
+ * so a record can use the sessions of two knowledge bases.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlantPestSessionReuseBenchmark {
+
+    @Param({ SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION, SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA })
+    public String category;
+
+    @Param({ "true", "false" })
+    public boolean reuse;
+
+    private PlantPestService service;
+    private List<Map<String, String>> records;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.initConfig();
+        SensitiveTaxon taxon;
+        if (SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA.equals(category)) {
+            taxon = new SensitiveTaxon("Bactrocera tryoni", RankType.SPECIES);
+            taxon.getInstances().add(new PlantPestInstance(SensitivityCategoryFactory.getCategory(category), "APPD", null,
+                    SensitivityZoneFactory.getZone(SensitivityZone.AUS), null, null, null, null));
+        } else {
+            taxon = new SensitiveTaxon("Testus notifiabilis", RankType.SPECIES);
+            taxon.getInstances().add(new PlantPestInstance(SensitivityCategoryFactory.getCategory(category), "QLD", null,
+                    SensitivityZoneFactory.getZone(SensitivityZone.QLD), null, null, null, null));
+        }
+        service = new PlantPestService(taxon, KnowledgeBaseFactory.getKnowledgeBase(SensitivityCategoryFactory.getCategory(category)),
+                new SdsReportFactory(), reuse);
+        records = BenchmarkSupport.records(taxon.getName());
+    }
+
+    @Benchmark
+    public ValidationOutcome validate() {
+        next = (next + 1) % records.size();
+        // Validation adds the zones to the record, so each call gets its own copy
+        return service.validate(new HashMap<String, String>(records.get(next)));
+    }
+}
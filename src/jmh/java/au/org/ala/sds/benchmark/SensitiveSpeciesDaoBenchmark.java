@@ -0,0 +1,50 @@
+package au.org.ala.sds.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import au.org.ala.sds.dao.SensitiveSpeciesStaxDao;
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.model.SensitiveTaxon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the bundled species list by the JDOM and StAX readers. The gc profiler run by the jmh profile reports
+ * the allocation of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensitiveSpeciesDaoBenchmark {
+
+    @Param({ "jdom", "stax" })
+    public String parser;
+
+    private byte[] species;
+
+    @Setup
+    public void setUp() throws Exception {
+        species = BenchmarkSupport.getBundledSpecies();
+    }
+
+    @Benchmark
+    public List<SensitiveTaxon> getAll() throws Exception {
+        InputStream is = new ByteArrayInputStream(species);
+        return "stax".equals(parser) ? new SensitiveSpeciesStaxDao(is).getAll() : new SensitiveSpeciesXmlDao(is).getAll();
+    }
+}
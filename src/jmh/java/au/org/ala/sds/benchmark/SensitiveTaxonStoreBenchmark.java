@@ -0,0 +1,72 @@
+package au.org.ala.sds.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitiveTaxonStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups in the sensitive taxon store, cycling through the bundled names with one in four a miss.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensitiveTaxonStoreBenchmark {
+
+    private static final int KEYS = 1024;
+
+    private SensitiveTaxonStore store;
+    private String[] names;
+    private String[] lsids;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        store = BenchmarkSupport.getStore();
+        List<SensitiveTaxon> taxa = BenchmarkSupport.getTaxa();
+        Random random = new Random(1);
+        names = new String[KEYS];
+        lsids = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            SensitiveTaxon taxon = taxa.get(random.nextInt(taxa.size()));
+            boolean miss = i % 4 == 3;
+            names[i] = miss ? taxon.getName() + " nonexistens" : taxon.getName();
+            lsids[i] = miss ? BenchmarkSupport.LSID_PREFIX + "missing" : taxon.getLsid();
+        }
+    }
+
+    private int next() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public SensitiveTaxon findByName() {
+        return store.findByName(names[next()]);
+    }
+
+    @Benchmark
+    public SensitiveTaxon findByLsid() {
+        return store.findByLsid(lsids[next()]);
+    }
+
+    @Benchmark
+    public SensitiveTaxon findByExactMatch() {
+        return store.findByExactMatch(names[next()]);
+    }
+}
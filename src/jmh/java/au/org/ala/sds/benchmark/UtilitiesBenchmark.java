@@ -0,0 +1,127 @@
+package au.org.ala.sds.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import au.org.ala.sds.model.ConservationInstance;
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityCategoryFactory;
+import au.org.ala.sds.model.SensitivityInstance;
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.SensitivityZoneFactory;
+import au.org.ala.sds.model.ZoneSet;
+import au.org.ala.sds.util.DateHelper;
+import au.org.ala.sds.util.GeneralisedLocation;
+import au.org.ala.sds.util.ValidationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The helpers called for every record: location generalisation, zone lookup by name, zone list parsing, zone set
+ * lookup, date parsing and restriction of plant pest records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilitiesBenchmark {
+
+    private static final String[] GENERALISATIONS = { "1km", "10km", "100km", "WITHHOLD" };
+    private static final String[][] COORDINATES = { { "-31.953512", "115.857048" }, { "-17.5", "128.25" }, { "-35.0", "117.883" } };
+    private static final String[] ZONE_NAMES = { "Australia", "QUEENSLAND", "New Zealand", "Western Australia", "Nowhere" };
+    private static final String[] DATES = { "2016-06-15", "1994", "2004-11", "2011-03-04T10:15:00Z" };
+
+    private List<List<SensitivityInstance>> instances;
+    private List<SensitivityZone> zones;
+    private String[] zoneStrings;
+    private List<List<SensitivityZone>> zoneLists;
+    private Map<String, String> properties;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.initConfig();
+
+        SensitivityZone wa = SensitivityZoneFactory.getZone(SensitivityZone.WA);
+        zones = Arrays.asList(SensitivityZoneFactory.getZone(SensitivityZone.AUS), wa);
+        instances = new ArrayList<List<SensitivityInstance>>();
+        for (String generalisation : GENERALISATIONS) {
+            instances.add(Collections.<SensitivityInstance>singletonList(new ConservationInstance(
+                    SensitivityCategoryFactory.getCategory(SensitivityCategory.ENDANGERED), "WA DEC", null, wa, null, null, generalisation)));
+        }
+
+        zoneStrings = new String[] {
+                "[AUS, WA]",
+                "[AUS, QLD, TSPZ, TSSQZ]",
+                "[NOTAUS, NZ]",
+                "[AUS, VIC, PIZVICNE, PIZVICMAR, PCNCAVICTHO]" };
+        zoneLists = new ArrayList<List<SensitivityZone>>();
+        for (String zoneString : zoneStrings) {
+            zoneLists.add(SensitivityZone.getListFromString(zoneString));
+        }
+
+        properties = new HashMap<String, String>();
+        properties.put("scientificName", "Bactrocera tryoni");
+        properties.put("decimalLatitude", "-27.47");
+        properties.put("decimalLongitude", "153.03");
+        properties.put("stateProvince", "Queensland");
+        properties.put("eventDate", "2016-06-15");
+        properties.put("recordedBy", "A. Collector");
+        properties.put("locality", "Brisbane");
+        properties.put("dataResourceUid", "dr123");
+        properties.put("institutionCode", "ANIC");
+        properties.put("catalogNumber", "12345");
+    }
+
+    private int next(int size) {
+        next++;
+        return next % size;
+    }
+
+    @Benchmark
+    public GeneralisedLocation generalisedLocation() {
+        String[] coordinates = COORDINATES[next(COORDINATES.length)];
+        return new GeneralisedLocation(coordinates[0], coordinates[1], instances.get(next % instances.size()), new ArrayList<SensitivityZone>(zones));
+    }
+
+    @Benchmark
+    public List<SensitivityZone> getListFromString() {
+        return SensitivityZone.getListFromString(zoneStrings[next(zoneStrings.length)]);
+    }
+
+    @Benchmark
+    public ZoneSet zoneSetOf() {
+        return ZoneSet.of(zoneLists.get(next(zoneLists.size())));
+    }
+
+    @Benchmark
+    public SensitivityZone getZoneByName() {
+        return SensitivityZoneFactory.lookupZoneByName(ZONE_NAMES[next(ZONE_NAMES.length)]);
+    }
+
+    @Benchmark
+    public Date parseDate() {
+        return DateHelper.parseDate(DATES[next(DATES.length)]);
+    }
+
+    @Benchmark
+    public Map<String, Object> restrictForPests() {
+        return ValidationUtils.restrictForPests(properties);
+    }
+}
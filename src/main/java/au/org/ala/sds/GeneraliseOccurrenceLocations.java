@@ -14,27 +14,46 @@
  ***************************************************************************/
 package au.org.ala.sds;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.sql.DataSource;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import au.org.ala.names.search.ALANameSearcher;
-import au.org.ala.names.search.SearchResultException;
-import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitiveTaxonStoreDiff;
 import au.org.ala.sds.util.Configuration;
 import au.org.ala.sds.validation.FactCollection;
-import au.org.ala.sds.validation.ServiceFactory;
 import au.org.ala.sds.validation.ValidationOutcome;
-import au.org.ala.sds.validation.ValidationService;
 
 /**
+ * Generalises the locations of the sensitive occurrences of <code>raw_occurrence_record</code>, and restores the
+ * locations of occurrences that are no longer sensitive.
+ * <p>
+ * Records are read a page at a time in <code>id</code> order, each page starting after the last id of the previous
+ * one. The records of a page are validated over a pool of threads and their changes written as one JDBC batch. Once a
+ * page is committed its last id is written to the checkpoint file, if there is one, so an interrupted run can resume
+ * where it left off.
+ * <p>
+ * A generalised record holds the generalised location in <code>latitude</code> and <code>longitude</code>, the
+ * generalisation in <code>generalised_metres</code> and the original location in <code>raw_latitude</code> and
+ * <code>raw_longitude</code>. Withheld locations are written as null.
  *
  * @author Peter Flemming (peter.flemming@csiro.au)
  */
@@ -42,100 +61,327 @@ public class GeneraliseOccurrenceLocations {
 
     protected static final Logger logger = Logger.getLogger(GeneraliseOccurrenceLocations.class);
 
-    private static BasicDataSource occurrenceDataSource;
-    private static ALANameSearcher nameSearcher;
-    private static SensitiveSpeciesFinder sensitiveSpeciesFinder;
+    private static final String CHECKPOINT_FILE = "/data/sds/generalise-occurrence-locations.checkpoint";
+
+    private static final String SELECT =
+            "SELECT id, scientific_name, latitude, longitude, generalised_metres, raw_latitude, raw_longitude " +
+            "FROM raw_occurrence_record WHERE ";
+
+    static final String SELECT_PAGE = SELECT + "id > ? ORDER BY id LIMIT ?";
+
+    static final String UPDATE_LOCATION =
+            "UPDATE raw_occurrence_record SET latitude = ?, longitude = ?, generalised_metres = ?, raw_latitude = ?, raw_longitude = ? WHERE id = ?";
+
+    private final DataSource dataSource;
+    private final SensitiveSpeciesFinder finder;
+    private final SensitiveDataService service = new SensitiveDataService();
+    private int pageSize = 10000;
+    private File checkpoint;
+    private String lsidColumn;
+
+    private long processed;
+    private long generalised;
+    private long degeneralised;
+
+    public GeneraliseOccurrenceLocations(DataSource dataSource, SensitiveSpeciesFinder finder) {
+        this.dataSource = dataSource;
+        this.finder = finder;
+    }
+
+    /**
+     * @param threads The number of threads that validate a page, by default sds.batch.threads
+     */
+    public void setThreads(int threads) {
+        service.setPool(new ForkJoinPool(Math.max(1, threads)));
+    }
+
+    /**
+     * @param pageSize The number of records read, validated and committed at a time, by default 10000
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param checkpoint The file holding the last id committed, read when a run is not given an id to start after
+     */
+    public void setCheckpoint(File checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @param lsidColumn The column holding the lsid of the taxon of a record, if the table has one, so that
+     *                   {@link #regeneralise(SensitiveTaxonStoreDiff)} also selects records by the lsids of the changed taxa
+     */
+    public void setLsidColumn(String lsidColumn) {
+        this.lsidColumn = lsidColumn;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getGeneralised() {
+        return generalised;
+    }
+
+    public long getDegeneralised() {
+        return degeneralised;
+    }
 
     public static void main(String[] args) throws Exception {
-        nameSearcher = new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex());
-        sensitiveSpeciesFinder = SensitiveSpeciesFinderFactory.getSensitiveSpeciesFinder(
+        ALANameSearcher nameSearcher = new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex());
+        SensitiveSpeciesFinder sensitiveSpeciesFinder = SensitiveSpeciesFinderFactory.getSensitiveSpeciesFinder(
                 "file:///data/sds/sensitive-species.xml", nameSearcher);
-        occurrenceDataSource = new BasicDataSource();
+        BasicDataSource occurrenceDataSource = new BasicDataSource();
         occurrenceDataSource.setDriverClassName("com.mysql.jdbc.Driver");
         occurrenceDataSource.setUrl("jdbc:mysql://localhost/portal");
         occurrenceDataSource.setUsername("root");
         occurrenceDataSource.setPassword("password");
-        run(args.length == 1 ? args[0] : null);
-    }
-
-    private static void run(String startAt) throws SQLException, SearchResultException {
-        Connection conn = occurrenceDataSource.getConnection();
-        PreparedStatement pst = conn.prepareStatement(
-                "SELECT id, scientific_name, latitude, longitude, generalised_metres, raw_latitude, raw_longitude FROM raw_occurrence_record LIMIT ?,?");
-        int offset = startAt == null ? 0 : Integer.parseInt(startAt);
-        int stride = 10000;
-        int recCount = 0;
-        pst.setInt(2, stride);
-        ResultSet rs;
-
-        for (pst.setInt(1, offset); true; offset += stride, pst.setInt(1, offset)) {
-            rs = pst.executeQuery();
-            if (!rs.isBeforeFirst()) {
-                break;
+        try {
+            GeneraliseOccurrenceLocations job = new GeneraliseOccurrenceLocations(occurrenceDataSource, sensitiveSpeciesFinder);
+            if (args.length == 2 && args[0].equals("-changes")) {
+                // Only the records of the taxa that differ from the previous list
+                SensitiveSpeciesFinder previous = SensitiveSpeciesFinderFactory.getSensitiveSpeciesFinder(args[1], nameSearcher, true);
+                job.regeneralise(SensitiveTaxonStoreDiff.compare(previous.getStore(), sensitiveSpeciesFinder.getStore()));
+            } else {
+                job.setCheckpoint(new File(CHECKPOINT_FILE));
+                job.run(args.length == 1 ? Long.valueOf(args[0]) : null);
+            }
+        } finally {
+            occurrenceDataSource.close();
+        }
+    }
+
+    /**
+     * Process the records after an id to the end of the table.
+     *
+     * @param startAfter The id to start after, or null to start after the checkpoint, or from the first record if there
+     *                   is no checkpoint
+     * @return The last id processed
+     */
+    public long run(Long startAfter) throws SQLException, IOException {
+        long lastId = startAfter != null ? startAfter : readCheckpoint();
+        logger.info("Generalising occurrence locations after id " + lastId);
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(SELECT_PAGE);
+                 PreparedStatement update = conn.prepareStatement(UPDATE_LOCATION)) {
+                select.setInt(2, pageSize);
+                lastId = processPages(conn, select, 1, update, lastId, true);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
+        }
+        return lastId;
+    }
+
+    /**
+     * Process only the records of the taxa added, removed or changed between two versions of the sensitive species
+     * list, so a list update does not need a scan of the whole table.
+     * <p>
+     * Records are selected by the names of the taxa in <code>scientific_name</code> and, if there is an lsid column,
+     * by their lsids. Each name and lsid is read in id order, which an index on the column can answer directly. The
+     * checkpoint is neither read nor written.
+     *
+     * @param changes The changes to the list, compared with the list of the finder
+     * @return The number of records processed
+     */
+    public long regeneralise(SensitiveTaxonStoreDiff changes) throws SQLException, IOException {
+        logger.info("Generalising occurrence locations of the " + changes);
+        long start = processed;
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement update = conn.prepareStatement(UPDATE_LOCATION)) {
+                processMatching(conn, update, "scientific_name", changes.getNames());
+                if (lsidColumn != null) {
+                    processMatching(conn, update, lsidColumn, changes.getLsids());
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return processed - start;
+    }
+
+    private void processMatching(Connection conn, PreparedStatement update, String column, Set<String> values) throws SQLException, IOException {
+        try (PreparedStatement select = conn.prepareStatement(SELECT + column + " = ? AND id > ? ORDER BY id LIMIT ?")) {
+            select.setInt(3, pageSize);
+            for (String value : values) {
+                select.setString(1, value);
+                processPages(conn, select, 2, update, Long.MIN_VALUE, false);
+            }
+        }
+    }
+
+    /**
+     * Read, validate and update pages of records until the select returns no more.
+     *
+     * @param idParameter The parameter of the select holding the id to read after
+     * @return The last id processed
+     */
+    private long processPages(Connection conn, PreparedStatement select, int idParameter, PreparedStatement update,
+                              long lastId, boolean checkpointing) throws SQLException, IOException {
+        while (true) {
+            List<Occurrence> page = readPage(select, idParameter, lastId);
+            if (page.isEmpty()) {
+                return lastId;
+            }
+            if (addUpdates(update, page) > 0) {
+                update.executeBatch();
+            }
+            conn.commit();
+            lastId = page.get(page.size() - 1).id;
+            if (checkpointing) {
+                writeCheckpoint(lastId);
+            }
+            logger.info("Processed " + processed + " occurrence records to id " + lastId + ", generalised " +
+                    generalised + ", de-generalised " + degeneralised);
+        }
+    }
+
+    private List<Occurrence> readPage(PreparedStatement select, int idParameter, long lastId) throws SQLException {
+        List<Occurrence> page = new ArrayList<Occurrence>(pageSize);
+        select.setLong(idParameter, lastId);
+        try (ResultSet rs = select.executeQuery()) {
             while (rs.next()) {
-                recCount++;
-
-                String rawScientificName = (rs.getString("scientific_name"));
-                int id = rs.getInt("id");
-                String latitude = rs.getString("latitude");
-                String longitude = rs.getString("longitude");
-                String generalised_metres = rs.getString("generalised_metres");
-                String raw_latitude = rs.getString("raw_latitude");
-                String raw_longitude = rs.getString("raw_longitude");
-
-                if (StringUtils.isEmpty(rawScientificName)) continue;
-                if (StringUtils.isEmpty(latitude) || StringUtils.isEmpty(longitude)) continue;
-
-               // See if it's sensitive
-                SensitiveTaxon ss = sensitiveSpeciesFinder.findSensitiveSpecies(rawScientificName);
-                if (ss != null) {
-                    Map<String, String> facts = new HashMap<String, String>();
-                    facts.put(FactCollection.DECIMAL_LATITUDE_KEY, latitude);
-                    facts.put(FactCollection.DECIMAL_LONGITUDE_KEY, longitude);
-
-                    ValidationService service = ServiceFactory.createValidationService(ss);
-                    ValidationOutcome outcome = service.validate(facts);
-                    Map<String, Object> result = outcome.getResult();
-
-                    String speciesName = ss.getTaxonName();
-                    if (StringUtils.isNotEmpty(ss.getCommonName())) {
-                        speciesName += " [" + ss.getCommonName() + "]";
-                    }
-
-                    if (!result.get("decimalLatitude").equals(facts.get("decimalLatitude")) || !result.get("decimalLongitude").equals(facts.get("decimalLongitude"))) {
-                       if (StringUtils.isEmpty(generalised_metres)) {
-                            logger.info("Generalising location for " + id + " '" + rawScientificName + "' using Name='" + speciesName +
-                                         "', Lat=" + result.get("decimalLatitude") +
-                                         ", Long=" + result.get("decimalLongitude"));
-                            //rawOccurrenceDao.updateLocation(id, result.get("decimalLatitude"), result.get("decimalLongitude"), result.getGeneralisationInMetres(), latitude, longitude);
-                        } else {
-                            if (generalised_metres != result.get("generalisationInMetres")) {
-                                logger.info("Re-generalising location for " + id + " '" + rawScientificName + "' using Name='" + speciesName +
-                                             "', Lat=" + result.get("decimalLatitude") +
-                                             ", Long=" + result.get("decimalLongitude"));
-                                //rawOccurrenceDao.updateLocation(id, result.get("decimalLatitude"), result.get("decimalLongitude"), result.getGeneralisationInMetres());
-                            }
-                        }
-                    } else {
-                        logger.info("Not generalising location for " + id + " '" + rawScientificName + "' using Name='" + speciesName +
-                                    "', Lat=" + result.get("decimalLatitude") +
-                                    ", Long=" + result.get("decimalLongitude") + " - " + result.get("dataGeneralizations"));
-                    }
-                } else {
-                    // See if was sensitive but not now
-                    if (StringUtils.isNotEmpty(generalised_metres)) {
-                        logger.info("De-generalising location for " + id + " '" + rawScientificName + "', Lat=" + raw_latitude + ", Long=" + raw_longitude);
-                        //rawOccurrenceDao.updateLocation(id, raw_latitude, raw_longitude, null, null, null);
-                    }
+                Occurrence occurrence = new Occurrence();
+                occurrence.id = rs.getLong("id");
+                occurrence.scientificName = rs.getString("scientific_name");
+                occurrence.latitude = rs.getString("latitude");
+                occurrence.longitude = rs.getString("longitude");
+                occurrence.generalisedMetres = rs.getString("generalised_metres");
+                occurrence.rawLatitude = rs.getString("raw_latitude");
+                occurrence.rawLongitude = rs.getString("raw_longitude");
+                page.add(occurrence);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Validate the records of a page over the pool and add the changed locations to the update batch.
+     *
+     * @return The number of updates added
+     */
+    private int addUpdates(PreparedStatement update, List<Occurrence> page) throws SQLException {
+        List<Occurrence> located = new ArrayList<Occurrence>(page.size());
+        List<Map<String, String>> records = new ArrayList<Map<String, String>>(page.size());
+        for (Occurrence occurrence : page) {
+            processed++;
+            // A generalised record is validated on its original location
+            String latitude = occurrence.getOriginalLatitude();
+            String longitude = occurrence.getOriginalLongitude();
+            if (StringUtils.isEmpty(occurrence.scientificName) || StringUtils.isEmpty(latitude) || StringUtils.isEmpty(longitude)) {
+                continue;
+            }
+            Map<String, String> facts = new HashMap<String, String>();
+            facts.put(FactCollection.SCIENTIFIC_NAME_KEY, occurrence.scientificName);
+            facts.put(FactCollection.DECIMAL_LATITUDE_KEY, latitude);
+            facts.put(FactCollection.DECIMAL_LONGITUDE_KEY, longitude);
+            located.add(occurrence);
+            records.add(facts);
+        }
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        List<ValidationOutcome> outcomes = service.testMapDetailsBatch(finder, records);
+        int updates = 0;
+        for (int i = 0; i < located.size(); i++) {
+            Occurrence occurrence = located.get(i);
+            ValidationOutcome outcome = outcomes.get(i);
+            Map<String, Object> result = outcome.getResult();
+            // Only a generalised location is written, so the pest outcomes that restrict other fields are left alone
+            if (outcome.isSensitive() && result != null && result.containsKey(FactCollection.DECIMAL_LATITUDE_KEY)) {
+                String latitude = toColumn(result.get(FactCollection.DECIMAL_LATITUDE_KEY));
+                String longitude = toColumn(result.get(FactCollection.DECIMAL_LONGITUDE_KEY));
+                String metres = toColumn(result.get("generalisationInMetres"));
+                boolean moved = !StringUtils.equals(latitude, occurrence.getOriginalLatitude())
+                        || !StringUtils.equals(longitude, occurrence.getOriginalLongitude());
+                boolean changed = !StringUtils.equals(latitude, toColumn(occurrence.latitude))
+                        || !StringUtils.equals(longitude, toColumn(occurrence.longitude))
+                        || !StringUtils.equals(metres, toColumn(occurrence.generalisedMetres));
+                if (occurrence.isGeneralised() ? changed : moved) {
+                    logger.debug((occurrence.isGeneralised() ? "Re-generalising" : "Generalising") + " location for " +
+                            occurrence.id + " '" + occurrence.scientificName + "', Lat=" + latitude + ", Long=" + longitude);
+                    addUpdate(update, occurrence.id, latitude, longitude, metres,
+                            occurrence.getOriginalLatitude(), occurrence.getOriginalLongitude());
+                    generalised++;
+                    updates++;
                 }
+            } else if (occurrence.isGeneralised()) {
+                // Was sensitive but not now
+                logger.debug("De-generalising location for " + occurrence.id + " '" + occurrence.scientificName +
+                        "', Lat=" + occurrence.rawLatitude + ", Long=" + occurrence.rawLongitude);
+                addUpdate(update, occurrence.id, occurrence.rawLatitude, occurrence.rawLongitude, null, null, null);
+                degeneralised++;
+                updates++;
             }
-            rs.close();
-            logger.info("Processed " + recCount + " occurrence records.");
         }
+        return updates;
+    }
+
+    private static void addUpdate(PreparedStatement update, long id, String latitude, String longitude, String metres,
+                                  String rawLatitude, String rawLongitude) throws SQLException {
+        update.setString(1, latitude);
+        update.setString(2, longitude);
+        update.setString(3, metres);
+        update.setString(4, rawLatitude);
+        update.setString(5, rawLongitude);
+        update.setLong(6, id);
+        update.addBatch();
+    }
+
+    private static String toColumn(Object value) {
+        return value == null || value.toString().isEmpty() ? null : value.toString();
+    }
 
-        rs.close();
-        pst.close();
-        conn.close();
+    private long readCheckpoint() throws IOException {
+        if (checkpoint == null || !checkpoint.exists()) {
+            return Long.MIN_VALUE;
+        }
+        String id = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8).trim();
+        logger.info("Resuming from checkpoint " + checkpoint + " at id " + id);
+        return Long.parseLong(id);
+    }
+
+    private void writeCheckpoint(long id) throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        // Replace the checkpoint in one step so a failed run never leaves a partial id behind
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        Files.write(temp.toPath(), Long.toString(id).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The location columns of a record.
+     */
+    private static class Occurrence {
+        long id;
+        String scientificName;
+        String latitude;
+        String longitude;
+        String generalisedMetres;
+        String rawLatitude;
+        String rawLongitude;
+
+        boolean isGeneralised() {
+            return StringUtils.isNotEmpty(generalisedMetres) || StringUtils.isNotEmpty(rawLatitude);
+        }
+
+        String getOriginalLatitude() {
+            return isGeneralised() ? rawLatitude : latitude;
+        }
+
+        String getOriginalLongitude() {
+            return isGeneralised() ? rawLongitude : longitude;
+        }
     }
 }
@@ -0,0 +1,183 @@
+package au.org.ala.sds;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.log4j.Logger;
+
+import au.org.ala.names.search.ALANameSearcher;
+import au.org.ala.sds.dao.SensitiveSpeciesStaxDao;
+import au.org.ala.sds.model.SensitiveTaxonStore;
+import au.org.ala.sds.model.SensitiveTaxonStoreDiff;
+
+/**
+ * A sensitive species finder that picks up changes to the species list without a restart.
+ * <p>
+ * The species list is polled in the background with a conditional GET, using the ETag and Last-Modified headers of
+ * the last response. When it has changed, a new store is built on the polling thread and then published with a single
+ * atomic swap. Lookups always use a complete store, either the old one or the new one, and never wait for a reload.
+ */
+public class ReloadingSensitiveSpeciesFinder extends SensitiveSpeciesFinder implements Closeable {
+
+    protected static final Logger logger = Logger.getLogger(ReloadingSensitiveSpeciesFinder.class);
+
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 60000;
+
+    private final URL dataUrl;
+    private final ALANameSearcher nameSearcher;
+    private final AtomicReference<Version> current = new AtomicReference<Version>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Load the species list and start polling it.
+     *
+     * @param dataUrl The url of the species list
+     * @param nameSearcher The name searcher used to match the species names
+     * @param interval The time between checks for a new list, zero or less to only reload when {@link #reload()} is called
+     */
+    public ReloadingSensitiveSpeciesFinder(String dataUrl, ALANameSearcher nameSearcher, long interval, TimeUnit unit) throws Exception {
+        super(null);
+        this.dataUrl = new URL(dataUrl);
+        this.nameSearcher = nameSearcher;
+        reload();
+        if (interval > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "sds-species-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reload();
+                    } catch (Exception e) {
+                        logger.error("Unable to reload the sensitive species list from " + ReloadingSensitiveSpeciesFinder.this.dataUrl
+                                + ", keeping version " + getStoreVersion(), e);
+                    }
+                }
+            }, interval, interval, unit);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Poll the species list now.
+     *
+     * @return True if a new store has been published, false if the list has not changed
+     */
+    public synchronized boolean reload() throws Exception {
+        Version previous = current.get();
+        URLConnection connection = dataUrl.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (previous != null) {
+            if (previous.etag != null) {
+                connection.setRequestProperty("If-None-Match", previous.etag);
+            }
+            if (previous.lastModified > 0) {
+                connection.setIfModifiedSince(previous.lastModified);
+            }
+        }
+
+        try {
+            if (connection instanceof HttpURLConnection) {
+                int status = ((HttpURLConnection) connection).getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    logger.debug("Sensitive species list " + dataUrl + " not modified");
+                    return false;
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unable to read " + dataUrl + ", status " + status);
+                }
+            }
+            String etag = connection.getHeaderField("ETag");
+            long lastModified = connection.getLastModified();
+            // Not every connection honours a conditional request, a file url for one
+            if (previous != null && (etag != null || lastModified > 0)
+                    && ObjectUtils.equals(etag, previous.etag) && lastModified == previous.lastModified) {
+                logger.debug("Sensitive species list " + dataUrl + " not modified");
+                return false;
+            }
+
+            long start = System.currentTimeMillis();
+            SensitiveTaxonStore store;
+            try (InputStream is = connection.getInputStream()) {
+                store = new SensitiveTaxonStore(new SensitiveSpeciesStaxDao(is), nameSearcher);
+            }
+            Version version = new Version(store, previous == null ? 1 : previous.number + 1, new Date(), etag, lastModified);
+            current.set(version);
+            logger.info("Loaded version " + version.number + " of the sensitive species list from " + dataUrl + ", " +
+                    store.getTaxonCount() + " taxa in " + (System.currentTimeMillis() - start) + "ms");
+            if (previous != null) {
+                logger.info("Changes since version " + previous.number + ": " + SensitiveTaxonStoreDiff.compare(previous.store, store));
+            }
+            return true;
+        } finally {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+
+    @Override
+    public SensitiveTaxonStore getStore() {
+        return current.get().store;
+    }
+
+    /**
+     * @return The number of the current store, starting at 1 and incremented on each reload
+     */
+    public long getStoreVersion() {
+        return current.get().number;
+    }
+
+    /**
+     * @return The time the current store was published
+     */
+    public Date getLastReload() {
+        return new Date(current.get().loaded.getTime());
+    }
+
+    /**
+     * Stop polling. The current store remains in use.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static class Version {
+        private final SensitiveTaxonStore store;
+        private final long number;
+        private final Date loaded;
+        private final String etag;
+        private final long lastModified;
+
+        private Version(SensitiveTaxonStore store, long number, Date loaded, String etag, long lastModified) {
+            this.store = store;
+            this.number = number;
+            this.loaded = loaded;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
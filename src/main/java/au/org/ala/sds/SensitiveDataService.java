@@ -14,14 +14,27 @@
  */
 package au.org.ala.sds;
 
+import au.org.ala.sds.model.GeoLocation;
 import au.org.ala.sds.model.Message;
 import au.org.ala.sds.model.SensitiveTaxon;
 import au.org.ala.sds.util.Configuration;
+import au.org.ala.sds.util.GeoLocationHelper;
 import au.org.ala.sds.util.ValidationUtils;
 import au.org.ala.sds.validation.*;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This class provides the generic entry into the SDS. Users don't need to know how to use piece the components together.
@@ -37,6 +50,12 @@ public class SensitiveDataService {
 
     private ReportFactory reportFactory = new SdsReportFactory();
 
+    /** The pool used for batch validation. Created on first use with sds.batch.threads workers unless supplied */
+    private volatile ForkJoinPool pool;
+
+    /** The flag rules (sds.flag.rules), split on first use */
+    private volatile String[] flagRules;
+
     public boolean isTaxonSensitive(SensitiveSpeciesFinder finder, String scientificName, String taxonId){
         return  getSensitiveTaxon(finder, scientificName, taxonId) != null;
     }
@@ -73,29 +92,249 @@ public class SensitiveDataService {
                                             Map<String, String> properties,
                                             String scientificName,
                                             String taxonId){
-        //Step 1 apply rules for flags
-        Configuration config = null;
+        return test(finder, getFlagRules(), properties, scientificName, taxonId);
+    }
+
+    /**
+     * Tests a batch of records for sensitivity concerns, spreading the work over the batch pool.
+     * <p>
+     * The scientific name and taxon id of each record are taken from the
+     * {@link FactCollection#SCIENTIFIC_NAME_KEY} and {@link FactCollection#TAXON_ID_KEY} properties.
+     * The configuration, flag rules and validation services are set up once and shared by every record in the batch.
+     * The sensitive taxon of each record is found first, then the distinct points of the records that will be sampled
+     * are looked up together, through {@link GeoLocationHelper#getZonesContainingPoints(java.util.Collection)}, before
+     * the records are validated.
+     *
+     * @param finder The SDS finder to use for the taxon searches
+     * @param records The raw record details
+     * @return The validation outcomes in the same order as the supplied records
+     */
+    public List<ValidationOutcome> testMapDetailsBatch(SensitiveSpeciesFinder finder, final List<Map<String, String>> records) {
+        if (records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Batch batch = new Batch(finder);
+        try {
+            return getPool().submit(() -> {
+                // Each record's taxon is found once, for both sampling and validation
+                final SensitiveTaxon[] taxa = new SensitiveTaxon[records.size()];
+                IntStream.range(0, taxa.length).parallel().forEach(i -> taxa[i] = batch.findSensitiveTaxon(records.get(i)));
+                presample(records, taxa);
+                return IntStream.range(0, taxa.length).parallel()
+                        .mapToObj(i -> batch.test(records.get(i), taxa[i]))
+                        .collect(Collectors.toList());
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while validating batch", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Problem validating batch", e.getCause());
+        }
+    }
+
+    /**
+     * Streaming version of {@link #testMapDetailsBatch(SensitiveSpeciesFinder, List)}.
+     * <p>
+     * Records are pulled from the supplied iterator in chunks of sds.batch.size, each chunk is validated in parallel
+     * and the outcomes are returned in input order. Only one chunk of records is held in memory at a time.
+     *
+     * @param finder The SDS finder to use for the taxon searches
+     * @param records The raw record details
+     * @return An iterator over the validation outcomes in the same order as the supplied records
+     */
+    public Iterator<ValidationOutcome> testMapDetailsBatch(final SensitiveSpeciesFinder finder, final Iterator<Map<String, String>> records) {
+        final int batchSize = Math.max(1, getConfiguration().getBatchSize());
+
+        return new Iterator<ValidationOutcome>() {
+            private Iterator<ValidationOutcome> current = Collections.<ValidationOutcome>emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                if (!current.hasNext() && records.hasNext()) {
+                    List<Map<String, String>> chunk = new ArrayList<Map<String, String>>(batchSize);
+                    while (records.hasNext() && chunk.size() < batchSize) {
+                        chunk.add(records.next());
+                    }
+                    current = testMapDetailsBatch(finder, chunk).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public ValidationOutcome next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Start a batch of records tested one at a time by the caller, for callers that run their own threads.
+     *
+     * @param finder The SDS finder to use for the taxon searches
+     * @return A batch that can be used by several threads at once
+     */
+    public Batch newBatch(SensitiveSpeciesFinder finder) {
+        return new Batch(finder);
+    }
+
+    /**
+     * Sample the distinct points of the records that will be sampled, so that validating them finds their zones in the
+     * point cache rather than sampling each point as it is reached. A record is sampled if it is of a sensitive taxon,
+     * has a coordinate and does not supply its sampled values. Points that cannot be sampled here are left to be
+     * sampled, and reported, record by record.
+     *
+     * @param taxa The sensitive taxon of each record, null if it has none or is flagged
+     */
+    private static void presample(List<Map<String, String>> records, SensitiveTaxon[] taxa) {
+        List<GeoLocation> locations = IntStream.range(0, taxa.length).parallel()
+                .filter(i -> taxa[i] != null && isSampled(records.get(i)))
+                .mapToObj(i -> new GeoLocation(records.get(i).get(FactCollection.DECIMAL_LATITUDE_KEY), records.get(i).get(FactCollection.DECIMAL_LONGITUDE_KEY)))
+                .distinct()
+                .collect(Collectors.toList());
+        if (locations.isEmpty()) {
+            return;
+        }
         try {
-            //Step 1 apply rules for flags
-            config = Configuration.getInstance();
+            GeoLocationHelper.getZonesContainingPoints(locations);
+        } catch (Exception e) {
+            logger.warn("Unable to sample " + locations.size() + " points ahead of validation, sampling each record instead", e);
+        }
+    }
+
+    /**
+     * @return True if validating the record will sample the zones containing its coordinate
+     */
+    private static boolean isSampled(Map<String, String> properties) {
+        return !properties.containsKey(SAMPLED_VALUES_PROVIDED)
+                && ValidationUtils.isValidNumber(properties.get(FactCollection.DECIMAL_LATITUDE_KEY))
+                && ValidationUtils.isValidNumber(properties.get(FactCollection.DECIMAL_LONGITUDE_KEY));
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool == null) {
+            synchronized (this) {
+                if (pool == null) {
+                    pool = new ForkJoinPool(Math.max(1, getConfiguration().getBatchThreads()));
+                }
+            }
+        }
+        return pool;
+    }
+
+    private String[] getFlagRules() {
+        String[] rules = flagRules;
+        if (rules == null) {
+            rules = getConfiguration().getFlagRules().split(",");
+            flagRules = rules;
+        }
+        return rules;
+    }
+
+    private static Configuration getConfiguration() {
+        try {
+            return Configuration.getInstance();
         } catch (Exception e){
             throw new RuntimeException("Problem initialising SDS.");
         }
+    }
 
-        for(String rule : config.getFlagRules().split(",")){
-            if(StringUtils.isNotBlank(properties.get(rule))){
-                return restrictRecord(properties, rule, scientificName);
+    /**
+     * The state shared by the records of a single batch.
+     */
+    public class Batch {
+        private final SensitiveSpeciesFinder finder;
+        private final String[] flagRules;
+        private final Map<SensitiveTaxon, ValidationService> services = new ConcurrentHashMap<SensitiveTaxon, ValidationService>();
+
+        Batch(SensitiveSpeciesFinder finder) {
+            this.finder = finder;
+            this.flagRules = getFlagRules();
+        }
+
+        /**
+         * Test a record, taking the scientific name and taxon id from its properties.
+         */
+        public ValidationOutcome test(Map<String, String> properties) {
+            String scientificName = properties.get(FactCollection.SCIENTIFIC_NAME_KEY);
+            String flag = getFlag(flagRules, properties);
+            if (flag != null) {
+                return restrictRecord(properties, flag, scientificName);
             }
+            return validate(services, properties, getSensitiveTaxon(finder, scientificName, properties.get(FactCollection.TAXON_ID_KEY)));
+        }
+
+        /**
+         * Test a record whose taxon has already been found by {@link #findSensitiveTaxon(Map)}.
+         */
+        ValidationOutcome test(Map<String, String> properties, SensitiveTaxon st) {
+            String flag = getFlag(flagRules, properties);
+            if (flag != null) {
+                return restrictRecord(properties, flag, properties.get(FactCollection.SCIENTIFIC_NAME_KEY));
+            }
+            return validate(services, properties, st);
+        }
+
+        /**
+         * @return The sensitive taxon of the record, null if it has none or a flag rule applies to it
+         */
+        SensitiveTaxon findSensitiveTaxon(Map<String, String> properties) {
+            if (getFlag(flagRules, properties) != null) {
+                return null;
+            }
+            return getSensitiveTaxon(finder, properties.get(FactCollection.SCIENTIFIC_NAME_KEY), properties.get(FactCollection.TAXON_ID_KEY));
+        }
+    }
+
+    private ValidationOutcome test(SensitiveSpeciesFinder finder, String[] flagRules, Map<String, String> properties,
+                                   String scientificName, String taxonId) {
+        //Step 1 apply rules for flags
+        String flag = getFlag(flagRules, properties);
+        if (flag != null) {
+            return restrictRecord(properties, flag, scientificName);
         }
 
         //Only continue if no flags were discovered
         //Step 2 extract the sensitive species and validate the service
         //search for a sensitive taxon
-        SensitiveTaxon st = getSensitiveTaxon(finder, scientificName, taxonId);
+        return validate(null, properties, getSensitiveTaxon(finder, scientificName, taxonId));
+    }
 
+    /**
+     * @return The first flag rule set in the record, null if there is none
+     */
+    private static String getFlag(String[] flagRules, Map<String, String> properties) {
+        for(String rule : flagRules){
+            if(StringUtils.isNotBlank(properties.get(rule))){
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param services The validation services of a batch, by taxon, or null to create the service for this record
+     * @param st The sensitive taxon of the record, null if it is not sensitive
+     */
+    private static ValidationOutcome validate(Map<SensitiveTaxon, ValidationService> services, Map<String, String> properties, SensitiveTaxon st) {
         //if taxon recognised as a sensitive species, run the validation
         if(st != null){
-            ValidationService service = ServiceFactory.createValidationService(st);
+            ValidationService service = services == null ? null : services.get(st);
+            if (service == null) {
+                service = ServiceFactory.createValidationService(st);
+                if (services != null) {
+                    services.put(st, service);
+                }
+            }
             return service.validate(properties);
         }
 
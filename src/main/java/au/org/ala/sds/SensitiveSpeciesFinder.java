@@ -37,27 +37,27 @@ public class SensitiveSpeciesFinder implements Lookup {
 
     @Override
     public SensitiveTaxon findSensitiveSpecies(String scientificName) {
-        return store.findByName(scientificName);
+        return getStore().findByName(scientificName);
     }
 
     @Override
     public SensitiveTaxon findSensitiveSpeciesByAcceptedName(String acceptedName) {
-        return store.findByAcceptedName(acceptedName);
+        return getStore().findByAcceptedName(acceptedName);
     }
 
     @Override
     public SensitiveTaxon findSensitiveSpeciesByLsid(String lsid) {
-        return store.findByLsid(lsid);
+        return getStore().findByLsid(lsid);
     }
 
     @Override
     public SensitiveTaxon findSensitiveSpeciesByExactMatch(String scientificName) {
-        return store.findByExactMatch(scientificName);
+        return getStore().findByExactMatch(scientificName);
     }
 
     @Override
     public boolean isSensitive(String scientificName) {
-        return store.findByName(scientificName) != null;
+        return getStore().findByName(scientificName) != null;
     }
 
     public SensitiveTaxonStore getStore(){ return store;}
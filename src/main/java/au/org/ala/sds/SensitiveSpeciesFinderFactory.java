@@ -4,12 +4,9 @@
 package au.org.ala.sds;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -17,8 +14,9 @@ import org.apache.log4j.Logger;
 
 import au.org.ala.names.search.ALANameSearcher;
 import au.org.ala.sds.dao.SensitiveSpeciesDao;
-import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.dao.SensitiveSpeciesStaxDao;
 import au.org.ala.sds.model.SensitiveTaxonStore;
+import au.org.ala.sds.model.SensitiveTaxonStoreSnapshot;
 import au.org.ala.sds.util.Configuration;
 
 /**
@@ -42,9 +40,10 @@ public class SensitiveSpeciesFinderFactory {
         if (Configuration.getInstance().isCached() && !forceReload) {
             File cache = new File(Configuration.getInstance().getCacheUrl());
             if (cache.exists()) {
-                logger.info("Reading SensitiveTaxonStore from serialized cache file " + cache.getPath());
-                store = getStoreFromCache(cache);
-            } else {
+                logger.info("Reading SensitiveTaxonStore from snapshot " + cache.getPath());
+                store = getStoreFromCache(cache, nameSearcher);
+            }
+            if (store == null) {
                 store = getStoreFromUrl(dataUrl, nameSearcher);
                 writeStoreCache(cache, store);
             }
@@ -60,6 +59,15 @@ public class SensitiveSpeciesFinderFactory {
         return getSensitiveSpeciesFinder(Configuration.getInstance().getSpeciesUrl(), nameSearcher);
     }
 
+    /**
+     * @return A finder that polls the configured species list every sds.species.reload.interval seconds and swaps in
+     * a new store when the list changes
+     */
+    public static ReloadingSensitiveSpeciesFinder getReloadingSensitiveSpeciesFinder(ALANameSearcher nameSearcher) throws Exception {
+        return new ReloadingSensitiveSpeciesFinder(Configuration.getInstance().getSpeciesUrl(), nameSearcher,
+                Configuration.getInstance().getSpeciesReloadInterval(), TimeUnit.SECONDS);
+    }
+
     /**
      *   TODO NC 2013-06-28: Remove the need for the cbIndexSearcher by using the supplied guid in the XML file.
      *   This should be appropriate because the list will be updated more regularly and the name match supplied
@@ -84,7 +92,7 @@ public class SensitiveSpeciesFinderFactory {
 
         SensitiveSpeciesDao dao = null;
         try {
-            dao = new SensitiveSpeciesXmlDao(is);
+            dao = new SensitiveSpeciesStaxDao(is);
         } catch (Exception e) {
             logger.error("Exception occurred parsing species list from " + is.toString(), e);
         }
@@ -93,15 +101,16 @@ public class SensitiveSpeciesFinderFactory {
 
     }
 
-    private static SensitiveTaxonStore getStoreFromCache(File cache) {
+    /**
+     * @return The store, or null if the cache is not a current snapshot and the store needs to be rebuilt
+     */
+    private static SensitiveTaxonStore getStoreFromCache(File cache, ALANameSearcher nameSearcher) {
         SensitiveTaxonStore store = null;
 
         try {
-            ObjectInputStream ois = new ObjectInputStream(new FileInputStream(cache));
-            store = (SensitiveTaxonStore) ois.readObject();
-            ois.close();
+            store = SensitiveTaxonStoreSnapshot.read(cache, nameSearcher);
         } catch (Exception e) {
-            logger.error("Error deserializing SensitiveTaxonStore", e);
+            logger.error("Error reading SensitiveTaxonStore snapshot", e);
         }
 
         return store;
@@ -109,11 +118,9 @@ public class SensitiveSpeciesFinderFactory {
 
     private static void writeStoreCache(File cache, SensitiveTaxonStore store) {
         try {
-            ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(cache));
-            oos.writeObject(store);
-            oos.close();
+            SensitiveTaxonStoreSnapshot.write(store, cache);
         } catch (Exception e) {
-            logger.error("Error serializing SensitiveTaxonStore", e);
+            logger.error("Error writing SensitiveTaxonStore snapshot", e);
         }
     }
 }
\ No newline at end of file
@@ -1,15 +1,306 @@
 package au.org.ala.sds;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import au.org.ala.names.search.ALANameSearcher;
+import au.org.ala.sds.dao.DataRowProcessor;
+import au.org.ala.sds.dao.DataStreamDao;
+import au.org.ala.sds.dao.DataStreamDaoFactory;
+import au.org.ala.sds.dao.ParallelDataStreamDao;
+import au.org.ala.sds.dto.DataColumnMapper;
+import au.org.ala.sds.dto.DataStreamProperties;
+import au.org.ala.sds.model.SensitivityInstance;
+import au.org.ala.sds.util.Configuration;
+import au.org.ala.sds.validation.FactCollection;
+import au.org.ala.sds.validation.ValidationOutcome;
+
+/**
+ * Validates the records of a data file and writes them out with the outcome of each.
+ * <p>
+ * Usage: <code>ValidateSpecies -i input -m mapping -o output [-t threads] [-s startRow] [-e endRow] [-w sheet]</code>
+ * <p>
+ * The input is a .csv, .tsv, .xls or .xlsx file. The mapping gives the column of each darwin core term, either as
+ * <code>scientificName=A,decimalLatitude=S</code> or as the name of a file with a <code>term=column</code> line per
+ * term. Columns are letters or numbers from 1. The output is a CSV file, or a TSV file if it ends in .tsv, holding the
+ * mapped columns, the row number and the outcome columns. A summary is printed once the file has been read.
+ */
 public class ValidateSpecies {
 
+    protected static final Logger logger = Logger.getLogger(ValidateSpecies.class);
+
+    /** The columns added to each record of the output */
+    public static final String[] OUTCOME_COLUMNS = {
+            "sensitive", "loadable", "category", "generalisedLatitude", "generalisedLongitude", "dataGeneralizations" };
+
+    /** The summary category of records with no sensitivity */
+    public static final String NOT_SENSITIVE = "Not sensitive";
+
+    /** The summary category of records that could not be validated */
+    public static final String ERROR = "Error";
+
+    private static final String USAGE = "Usage: ValidateSpecies -i input -m mapping -o output [-t threads] [-s startRow] [-e endRow] [-w sheet]";
+
+    private final SensitiveSpeciesFinder finder;
+    private final SensitiveDataService service = new SensitiveDataService();
+    private int threads = 1;
+
+    public ValidateSpecies(SensitiveSpeciesFinder finder) {
+        this.finder = finder;
+    }
+
+    /**
+     * @param threads The number of threads that validate records, by default 1
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
     /**
-     * @param args
+     * Validate the records read by a dao and write each, in row order, with its outcome.
+     *
+     * @param dao The dao reading the data file
+     * @param mapping The column of each term, in the order the terms are written
+     * @param properties The rows and sheet to read
+     * @param writer The writer of the output, flushed but not closed
+     * @return A summary of the outcomes
      */
-    public static void main(String[] args) {
-        // Open file and validate metadata
-        
-        // 
+    public Summary validate(DataStreamDao dao, Map<String, String> mapping, DataStreamProperties properties, final CSVWriter writer) throws IOException {
+        final List<String> terms = new ArrayList<String>(mapping.keySet());
+        DataColumnMapper mapper = new DataColumnMapper();
+        for (Map.Entry<String, String> entry : mapping.entrySet()) {
+            mapper.add(entry.getKey(), entry.getValue());
+        }
+
+        List<String> header = new ArrayList<String>(terms);
+        header.add(FactCollection.ROW_KEY);
+        header.addAll(Arrays.asList(OUTCOME_COLUMNS));
+        writer.writeNext(header.toArray(new String[header.size()]));
+
+        final SensitiveDataService.Batch batch = service.newBatch(finder);
+        final Summary summary = new Summary();
+        ParallelDataStreamDao parallelDao = new ParallelDataStreamDao(dao, threads);
+        long start = System.currentTimeMillis();
+
+        parallelDao.processStream(mapper, properties, new DataRowProcessor<ValidationOutcome>() {
+            @Override
+            public ValidationOutcome processRow(Map<String, String> facts) {
+                try {
+                    return batch.test(facts);
+                } catch (RuntimeException e) {
+                    logger.warn("Row " + facts.get(FactCollection.ROW_KEY) + " could not be validated", e);
+                    return null;
+                }
+            }
 
+            @Override
+            public void rowProcessed(Map<String, String> facts, ValidationOutcome outcome) {
+                String[] line = new String[terms.size() + 1 + OUTCOME_COLUMNS.length];
+                int i = 0;
+                for (String term : terms) {
+                    line[i++] = facts.get(term);
+                }
+                line[i++] = facts.get(FactCollection.ROW_KEY);
+                String category = category(outcome);
+                if (outcome != null) {
+                    line[i++] = Boolean.toString(outcome.isSensitive());
+                    line[i++] = Boolean.toString(outcome.isLoadable());
+                    line[i++] = NOT_SENSITIVE.equals(category) ? "" : category;
+                    line[i++] = result(outcome, facts, FactCollection.DECIMAL_LATITUDE_KEY);
+                    line[i++] = result(outcome, facts, FactCollection.DECIMAL_LONGITUDE_KEY);
+                    line[i] = result(outcome, null, "dataGeneralizations");
+                } else {
+                    line[i + 2] = category;
+                }
+                writer.writeNext(line);
+                summary.add(outcome, category);
+            }
+        });
+
+        writer.flush();
+        summary.elapsed = System.currentTimeMillis() - start;
+        return summary;
+    }
+
+    /**
+     * @return The category of the report, or else the categories of the sensitivity instances that applied
+     */
+    private static String category(ValidationOutcome outcome) {
+        if (outcome == null) {
+            return ERROR;
+        }
+        if (outcome.getReport() != null && StringUtils.isNotBlank(outcome.getReport().getCategory())) {
+            return outcome.getReport().getCategory();
+        }
+        if (!outcome.isSensitive()) {
+            return NOT_SENSITIVE;
+        }
+        Set<String> categories = new LinkedHashSet<String>();
+        if (outcome.getInstances() != null) {
+            for (SensitivityInstance instance : outcome.getInstances()) {
+                if (instance.getCategory() != null) {
+                    categories.add(instance.getCategory().getValue());
+                }
+            }
+        }
+        return StringUtils.join(categories, "|");
     }
 
+    /**
+     * @return The value the outcome gives a term, or else the value of the record
+     */
+    private static String result(ValidationOutcome outcome, Map<String, String> facts, String key) {
+        Map<String, Object> result = outcome.getResult();
+        if (result != null && result.containsKey(key)) {
+            Object value = result.get(key);
+            return value == null ? "" : value.toString();
+        }
+        return facts == null ? "" : StringUtils.defaultString(facts.get(key));
+    }
+
+    /**
+     * The counts of the outcomes of a file.
+     */
+    public static class Summary {
+        private long rows;
+        private long sensitive;
+        private long notLoadable;
+        private long elapsed;
+        private final Map<String, Long> categories = new TreeMap<String, Long>();
+
+        void add(ValidationOutcome outcome, String category) {
+            rows++;
+            if (outcome != null && outcome.isSensitive()) {
+                sensitive++;
+            }
+            if (outcome != null && !outcome.isLoadable()) {
+                notLoadable++;
+            }
+            Long count = categories.get(category);
+            categories.put(category, count == null ? 1 : count + 1);
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getSensitive() {
+            return sensitive;
+        }
+
+        public long getNotLoadable() {
+            return notLoadable;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public long getRowsPerSecond() {
+            return rows * 1000 / Math.max(1, elapsed);
+        }
+
+        /**
+         * @return The number of records of each category, including {@link #NOT_SENSITIVE} and {@link #ERROR}
+         */
+        public Map<String, Long> getCategories() {
+            return Collections.unmodifiableMap(categories);
+        }
+
+        public void print(PrintStream out) {
+            out.println("Validated " + rows + " rows in " + elapsed + "ms (" + getRowsPerSecond() + " rows/sec)");
+            out.println("Sensitive: " + sensitive + ", not loadable: " + notLoadable);
+            for (Map.Entry<String, Long> entry : categories.entrySet()) {
+                out.println("  " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Read a mapping given as <code>term=column,term=column</code>, or as a file with a <code>term=column</code> line
+     * per term.
+     */
+    static Map<String, String> parseMapping(String mapping) throws IOException {
+        List<String> pairs;
+        File file = new File(mapping);
+        if (file.isFile()) {
+            pairs = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } else {
+            pairs = Arrays.asList(mapping.split(","));
+        }
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (String pair : pairs) {
+            pair = pair.trim();
+            if (pair.isEmpty() || pair.startsWith("#")) {
+                continue;
+            }
+            int i = pair.indexOf('=');
+            if (i <= 0 || i == pair.length() - 1) {
+                throw new IllegalArgumentException("Mapping '" + pair + "' is not of the form term=column");
+            }
+            map.put(pair.substring(0, i).trim(), pair.substring(i + 1).trim());
+        }
+        if (map.isEmpty()) {
+            throw new IllegalArgumentException("No columns are mapped");
+        }
+        return map;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<String, String>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].matches("-[imotsew]") || i + 1 == args.length) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            options.put(args[i], args[++i]);
+        }
+        String input = options.get("-i");
+        String output = options.get("-o");
+        if (input == null || output == null || options.get("-m") == null) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        Map<String, String> mapping = parseMapping(options.get("-m"));
+        // Files are expected to have a header row
+        DataStreamProperties properties = new DataStreamProperties(
+                options.containsKey("-s") ? DataStreamProperties.validateStartRow(options.get("-s")) : 2,
+                DataStreamProperties.validateEndRow(options.get("-e")),
+                DataStreamProperties.validateSheetIndex(options.get("-w")));
+
+        SensitiveSpeciesFinder finder = SensitiveSpeciesFinderFactory.getSensitiveSpeciesFinder(
+                new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex()));
+        ValidateSpecies validator = new ValidateSpecies(finder);
+        validator.setThreads(options.containsKey("-t") ? Integer.parseInt(options.get("-t")) : Configuration.getInstance().getBatchThreads());
+
+        InputStream in = new FileInputStream(input);
+        CSVWriter writer = new CSVWriter(new OutputStreamWriter(Files.newOutputStream(new File(output).toPath()), StandardCharsets.UTF_8),
+                output.endsWith(".tsv") ? '\t' : CSVWriter.DEFAULT_SEPARATOR);
+        try {
+            validator.validate(DataStreamDaoFactory.createDao(input, in), mapping, properties, writer).print(System.out);
+        } finally {
+            in.close();
+            writer.close();
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package au.org.ala.sds.dao;
+
+import java.util.Map;
+
+/**
+ * Handles data rows in two steps, so that the work on each row can be shared between threads while the results are
+ * still taken in row order.
+ *
+ * @param <T> The result of processing a row
+ */
+public interface DataRowProcessor<T> {
+
+    /**
+     * Process a row. This may be called from several threads at once.
+     *
+     * @param facts The row, keyed by the mapped column names and {@link au.org.ala.sds.validation.FactCollection#ROW_KEY}
+     * @return The result for the row
+     */
+    T processRow(Map<String, String> facts);
+
+    /**
+     * Take the result of a processed row. Calls are made one at a time, and in row order when the stream is read in
+     * order.
+     */
+    void rowProcessed(Map<String, String> facts, T result);
+}
@@ -4,16 +4,16 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import au.com.bytecode.opencsv.CSVReader;
 import au.org.ala.sds.dto.DataColumnMapper;
+import au.org.ala.sds.dto.DataRow;
 import au.org.ala.sds.dto.DataStreamProperties;
-import au.org.ala.sds.util.ExcelUtils;
 import au.org.ala.sds.validation.FactCollection;
 
 public class DataStreamCsvDao implements DataStreamDao {
@@ -23,6 +23,7 @@ public class DataStreamCsvDao implements DataStreamDao {
     private final String fileName;
     private final InputStream stream;
     private char delimiter = ',';
+    private long rowCount;
 
     public DataStreamCsvDao(String fileName, InputStream stream) {
         this.fileName = fileName;
@@ -35,26 +36,50 @@ public class DataStreamCsvDao implements DataStreamDao {
         this.delimiter = delimiter;
     }
 
+    /**
+     * @return The number of rows read by the last call to processStream
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
     @Override
     public void processStream(
             DataColumnMapper mapper,
             DataStreamProperties properties,
             DataRowHandler rowHandler) throws IOException {
 
+        long start = System.currentTimeMillis();
+        rowCount = readRows(mapper, properties, rowHandler);
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Read " + rowCount + " rows from " + fileName + " in " + elapsed + "ms ("
+                + rowCount * 1000 / Math.max(1, elapsed) + " rows/sec)");
+    }
+
+    /**
+     * Read the rows of the stream, passing those with a mapped value to the handler as they are read.
+     *
+     * @return The number of rows passed to the handler
+     */
+    private long readRows(
+            DataColumnMapper mapper,
+            DataStreamProperties properties,
+            DataRowHandler rowHandler) throws IOException {
+
         CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(stream)), delimiter);
         logger.debug("Reading data file - " + fileName);
 
-        Map<String, Integer> columnMap = new HashMap<String, Integer>();
-        for (String key : mapper.getKeySet()) {
-            String value = mapper.get(key);
-            if (StringUtils.isNumeric(value)) {
-                columnMap.put(key, Integer.parseInt(value) - 1);
-            } else {
-                columnMap.put(key, ExcelUtils.getOrdinal(value) - 1);
-            }
+        List<String> keys = new ArrayList<String>(mapper.getKeySet());
+        keys.add(FactCollection.ROW_KEY);
+        DataRow.Schema schema = new DataRow.Schema(keys);
+        int[] columns = new int[schema.size()];
+        for (int k = 0; k < columns.length; k++) {
+            String key = schema.getKey(k);
+            columns[k] = mapper.getKeySet().contains(key) ? mapper.getColumnIndex(key) : -1;
         }
+        int rowIndex = schema.indexOf(FactCollection.ROW_KEY);
 
-        int rowCount = 0;
+        long rowCount = 0;
         int start = properties.getStartRow();
         int end = properties.getEndRow() == 0 ? Integer.MAX_VALUE : properties.getEndRow();
         int i = 1;
@@ -76,27 +101,26 @@ public class DataStreamCsvDao implements DataStreamDao {
             if ((row = reader.readNext()) == null) {
                 eof = true;
             } else {
-                Map<String, String> facts = new HashMap<String, String>();
-                for (String key : columnMap.keySet()) {
-                    Integer idx = columnMap.get(key);
-                    if (idx < row.length) {
+                DataRow facts = schema.newRow();
+                for (int k = 0; k < columns.length; k++) {
+                    int idx = columns[k];
+                    if (idx != -1 && idx < row.length) {
                         String value = row[idx].trim();
                         if (StringUtils.isNotBlank(value)) {
-                            facts.put(key, value);
+                            facts.set(k, value);
                         }
                     }
                 }
 
                 if (!facts.isEmpty()) {
-                    facts.put(FactCollection.ROW_KEY, Integer.toString(i));
+                    facts.set(rowIndex, Integer.toString(i));
                     rowCount++;
                     rowHandler.handleRow(facts);
                 }
             }
             i++;
         }
-
-        System.out.println("Total no of rows = " + rowCount);
+        return rowCount;
     }
 
 }
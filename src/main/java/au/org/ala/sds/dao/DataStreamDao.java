@@ -15,6 +15,7 @@
 package au.org.ala.sds.dao;
 
 import java.io.IOException;
+import java.util.Map;
 
 import au.org.ala.sds.dto.DataColumnMapper;
 import au.org.ala.sds.dto.DataStreamProperties;
@@ -28,4 +29,17 @@ public interface DataStreamDao {
 
     void processStream(DataColumnMapper mapper, DataStreamProperties properties, DataRowHandler rowHandler) throws IOException;
 
+    /**
+     * Process each row and then take its result, in row order. By default both steps are run for a row before the
+     * next row is read.
+     */
+    default <T> void processStream(DataColumnMapper mapper, DataStreamProperties properties, final DataRowProcessor<T> processor) throws IOException {
+        processStream(mapper, properties, new DataRowHandler() {
+            @Override
+            public void handleRow(Map<String, String> facts) {
+                processor.rowProcessed(facts, processor.processRow(facts));
+            }
+        });
+    }
+
 }
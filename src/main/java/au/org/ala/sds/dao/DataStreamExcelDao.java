@@ -3,26 +3,16 @@
  */
 package au.org.ala.sds.dao;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
-import org.apache.poi.hssf.usermodel.HSSFDateUtil;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import au.org.ala.sds.dto.DataColumnMapper;
 import au.org.ala.sds.dto.DataStreamProperties;
-import au.org.ala.sds.util.DateHelper;
-import au.org.ala.sds.util.ExcelUtils;
-import au.org.ala.sds.validation.FactCollection;
 
 /**
  *
@@ -41,6 +31,9 @@ public class DataStreamExcelDao implements DataStreamDao {
     }
 
     /**
+     * Read the rows of a sheet with the streaming reader for the type of workbook, so memory does not grow with the
+     * number of rows. The stream is first copied to a temporary file, which the readers work from.
+     *
      * @throws IOException
      *
      */
@@ -50,72 +43,32 @@ public class DataStreamExcelDao implements DataStreamDao {
         DataStreamProperties properties,
         DataRowHandler rowHandler) throws IOException {
 
-        Workbook wb = null;
+        boolean xls;
         if (fileName.endsWith(".xls")) {
-            wb = new HSSFWorkbook(stream);
+            xls = true;
         } else if (fileName.endsWith(".xlsx")) {
-            wb = new XSSFWorkbook(stream);
+            xls = false;
         } else {
             throw new IllegalStateException("File extension not supported");
         }
-
-        Sheet sheet = wb.getSheetAt(properties.getSheetIndex() - 1);
         logger.debug("Reading Excel workbook = " + fileName);
-        logger.debug("Sheet = " + sheet.getSheetName());
 
-        Map<String, Integer> columnMap = new HashMap<String, Integer>();
-        for (String key : mapper.getKeySet()) {
-            String value = mapper.get(key);
-            if (StringUtils.isNumeric(value)) {
-                columnMap.put(key, Integer.parseInt(value) - 1);
+        ExcelRowCollector rows = new ExcelRowCollector(mapper, properties, rowHandler);
+        File file = File.createTempFile("sds-workbook", xls ? ".xls" : ".xlsx");
+        try {
+            Files.copy(stream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (xls) {
+                new XlsSheetReader(rows, properties.getSheetIndex() - 1).read(file);
             } else {
-                columnMap.put(key, ExcelUtils.getOrdinal(value) - 1);
+                new XlsxSheetReader(rows).read(file, properties.getSheetIndex() - 1);
             }
-        }
-
-        int rowCount = 0;
-        int start = properties.getStartRow() - 1;
-        int end = properties.getEndRow() == 0 ? sheet.getLastRowNum() : properties.getEndRow() -1;
-        for (int i = start; i <= end; i++) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-                Map<String, String> facts = new HashMap<String, String>();
-                for (String key : columnMap.keySet()) {
-                    Cell cell = row.getCell(columnMap.get(key));
-                    if (cell != null) {
-                        switch (cell.getCellType()) {
-                            case Cell.CELL_TYPE_STRING:
-                                facts.put(key, cell.getStringCellValue().trim());
-                                break;
-                            case Cell.CELL_TYPE_NUMERIC:
-                            case Cell.CELL_TYPE_FORMULA:
-                                double d = cell.getNumericCellValue();
-                                try {
-                                    if (HSSFDateUtil.isCellDateFormatted(cell)) {
-                                        facts.put(key, DateHelper.formattedIso8601Date(HSSFDateUtil.getJavaDate(d)));
-                                    } else {
-                                        facts.put(key, Double.toString(d));
-                                    }
-                                } catch (Exception e) {
-                                    logger.warn("Exception caught trying to check if cell '" + key + "' is a date - " + e.getMessage());
-                                    facts.put(key, Double.toString(d));
-                                }
-                                break;
-                            default:
-                                facts.put(key, "");
-                                break;
-                        }
-                    }
-                }
-                if (!facts.isEmpty()) {
-                    facts.put(FactCollection.ROW_KEY, Integer.toString(i + 1));
-                    rowCount++;
-                    rowHandler.handleRow(facts);
-                }
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
             }
         }
 
-        System.out.println("Total no of rows = " + rowCount);
+        System.out.println("Total no of rows = " + rows.getRowCount());
     }
 
 }
@@ -0,0 +1,157 @@
+package au.org.ala.sds.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import au.org.ala.sds.dto.DataColumnMapper;
+import au.org.ala.sds.dto.DataRow;
+import au.org.ala.sds.dto.DataStreamProperties;
+import au.org.ala.sds.util.DateHelper;
+import au.org.ala.sds.validation.FactCollection;
+
+/**
+ * Builds the facts of spreadsheet rows from cells read one at a time, as the streaming readers of
+ * {@link DataStreamExcelDao} find them, and passes each row in the selected range to a handler.
+ * <p>
+ * Cells are turned into facts as the workbook model did: strings are trimmed, numbers in a date format become ISO
+ * dates, other numbers are written by <code>Double.toString</code>, and any other cell is an empty string.
+ */
+class ExcelRowCollector {
+
+    protected static final Logger logger = Logger.getLogger(ExcelRowCollector.class);
+
+    private final DataRow.Schema schema;
+    /** The places in the schema of the keys mapped to each column */
+    private final int[][] columnKeys;
+    private final int rowKey;
+    private final int start;
+    private final int end;
+    private final DataRowHandler rowHandler;
+
+    private DataRow facts;
+    private int row = -1;
+    private int rowCount;
+
+    ExcelRowCollector(DataColumnMapper mapper, DataStreamProperties properties, DataRowHandler rowHandler) {
+        List<String> keys = new ArrayList<String>(mapper.getKeySet());
+        keys.add(FactCollection.ROW_KEY);
+        this.schema = new DataRow.Schema(keys);
+        int columns = 0;
+        for (String key : mapper.getKeySet()) {
+            columns = Math.max(columns, mapper.getColumnIndex(key) + 1);
+        }
+        this.columnKeys = new int[columns][];
+        for (String key : mapper.getKeySet()) {
+            int column = mapper.getColumnIndex(key);
+            if (column >= 0) {
+                int[] slots = columnKeys[column];
+                slots = slots == null ? new int[1] : Arrays.copyOf(slots, slots.length + 1);
+                slots[slots.length - 1] = schema.indexOf(key);
+                columnKeys[column] = slots;
+            }
+        }
+        this.rowKey = schema.indexOf(FactCollection.ROW_KEY);
+        this.start = properties.getStartRow() - 1;
+        this.end = properties.getEndRow() == 0 ? Integer.MAX_VALUE : properties.getEndRow() - 1;
+        this.rowHandler = rowHandler;
+    }
+
+    /**
+     * @return True once a row after the last one wanted has been reached, so the rest of the sheet can be skipped
+     */
+    boolean isPastEnd() {
+        return row > end;
+    }
+
+    /**
+     * @return True if cells of the current row are kept
+     */
+    boolean isInRange() {
+        return row >= start && row <= end;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Start a row, ending the previous row if there is one. Rows are expected in order.
+     *
+     * @param row The row index, from 0
+     */
+    void startRow(int row) {
+        if (row != this.row) {
+            endRow();
+            this.row = row;
+        }
+    }
+
+    /**
+     * Pass the current row on, if it has any mapped cells.
+     */
+    void endRow() {
+        if (facts != null && !facts.isEmpty()) {
+            facts.set(rowKey, Integer.toString(row + 1));
+            rowCount++;
+            rowHandler.handleRow(facts);
+        }
+        facts = null;
+    }
+
+    /**
+     * @param column The column index, from 0
+     * @param value The string value of a cell, or null for a cell of another kind
+     */
+    void stringCell(int column, String value) {
+        put(column, value == null ? "" : value.trim());
+    }
+
+    /**
+     * @param column The column index, from 0
+     * @param formatIndex The number format index of the cell style
+     * @param formatString The number format of the cell style
+     */
+    void numericCell(int column, double value, int formatIndex, String formatString) {
+        int[] slots = column >= 0 && column < columnKeys.length ? columnKeys[column] : null;
+        if (slots == null || !isInRange()) {
+            return;
+        }
+        for (int slot : slots) {
+            putSlot(slot, formatNumeric(schema.getKey(slot), value, formatIndex, formatString));
+        }
+    }
+
+    private void put(int column, String value) {
+        int[] slots = column >= 0 && column < columnKeys.length ? columnKeys[column] : null;
+        if (slots == null || !isInRange()) {
+            return;
+        }
+        for (int slot : slots) {
+            putSlot(slot, value);
+        }
+    }
+
+    private void putSlot(int slot, String value) {
+        if (facts == null) {
+            facts = schema.newRow();
+        }
+        facts.set(slot, value);
+    }
+
+    private static String formatNumeric(String key, double d, int formatIndex, String formatString) {
+        try {
+            if (DateUtil.isValidExcelDate(d) && DateUtil.isADateFormat(formatIndex, formatString)) {
+                return DateHelper.formattedIso8601Date(DateUtil.getJavaDate(d));
+            } else {
+                return Double.toString(d);
+            }
+        } catch (Exception e) {
+            logger.warn("Exception caught trying to check if cell '" + key + "' is a date - " + e.getMessage());
+            return Double.toString(d);
+        }
+    }
+}
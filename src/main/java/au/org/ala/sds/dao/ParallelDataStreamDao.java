@@ -0,0 +1,113 @@
+package au.org.ala.sds.dao;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import au.org.ala.sds.dto.DataColumnMapper;
+import au.org.ala.sds.dto.DataStreamProperties;
+
+/**
+ * Reads rows with another dao on the calling thread and processes them over a pool of threads. The rows are passed
+ * to the threads in chunks, so any kind of data file can be validated in parallel.
+ */
+public class ParallelDataStreamDao implements DataStreamDao {
+
+    protected static final Logger logger = Logger.getLogger(ParallelDataStreamDao.class);
+
+    private final DataStreamDao dao;
+    private final int threads;
+    private int chunkSize = 500;
+    private int queueSize;
+    private boolean ordered = true;
+    private long rowCount;
+    private long elapsed;
+
+    /**
+     * @param dao The dao that reads the rows
+     * @param threads The number of threads that process rows
+     */
+    public ParallelDataStreamDao(DataStreamDao dao, int threads) {
+        this.dao = dao;
+        this.threads = threads;
+    }
+
+    /**
+     * @param chunkSize The number of rows passed to a thread at a time, by default 500
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param queueSize The number of chunks read ahead of the threads processing them, by default twice the threads
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param ordered True, the default, for a {@link DataRowProcessor} to take the results in row order
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * @return The number of rows read by the last call to processStream
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The rate at which rows were processed by the last call to processStream
+     */
+    public long getRowsPerSecond() {
+        return rowCount * 1000 / Math.max(1, elapsed);
+    }
+
+    /**
+     * Handle the rows over the pool of threads, so the handler must be safe to call from several threads at once.
+     */
+    @Override
+    public void processStream(DataColumnMapper mapper, DataStreamProperties properties, final DataRowHandler rowHandler) throws IOException {
+        process(mapper, properties, new DataRowProcessor<Void>() {
+            @Override
+            public Void processRow(Map<String, String> facts) {
+                rowHandler.handleRow(facts);
+                return null;
+            }
+
+            @Override
+            public void rowProcessed(Map<String, String> facts, Void result) {
+            }
+        }, false);
+    }
+
+    @Override
+    public <T> void processStream(DataColumnMapper mapper, DataStreamProperties properties, DataRowProcessor<T> processor) throws IOException {
+        process(mapper, properties, processor, ordered);
+    }
+
+    private <T> void process(DataColumnMapper mapper, DataStreamProperties properties, DataRowProcessor<T> processor, boolean ordered) throws IOException {
+        long start = System.currentTimeMillis();
+        final ParallelRowPipeline<T> pipeline = new ParallelRowPipeline<T>(processor, threads, chunkSize,
+                queueSize > 0 ? queueSize : threads * 2, ordered);
+        try {
+            dao.processStream(mapper, properties, new DataRowHandler() {
+                @Override
+                public void handleRow(Map<String, String> facts) {
+                    pipeline.add(facts);
+                }
+            });
+            rowCount = pipeline.finish();
+            elapsed = System.currentTimeMillis() - start;
+            logger.info("Processed " + rowCount + " rows over " + threads + " threads in " + elapsed + "ms ("
+                    + getRowsPerSecond() + " rows/sec)");
+        } finally {
+            pipeline.abort();
+        }
+    }
+}
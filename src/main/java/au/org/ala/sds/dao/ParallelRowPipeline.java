@@ -0,0 +1,225 @@
+package au.org.ala.sds.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs a {@link DataRowProcessor} over rows read on a single thread.
+ * <p>
+ * The reader adds rows, which are passed in chunks through a bounded queue to a pool of workers. The reader blocks while
+ * the queue is full. In order, a chunk is only taken once every earlier chunk has been taken, and the chunks held back
+ * count against the queue, so a slow row holds up the reader rather than filling memory.
+ * The results of rows are taken one at a time, whichever thread processed them.
+ */
+class ParallelRowPipeline<T> {
+
+    protected static final Logger logger = Logger.getLogger(ParallelRowPipeline.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final Chunk END = new Chunk(-1, null);
+
+    private final DataRowProcessor<T> processor;
+    private final int threads;
+    private final int chunkSize;
+    private final boolean ordered;
+    private final BlockingQueue<Chunk> queue;
+    private final Semaphore pending;
+    private final ExecutorService workers;
+    private final Object completionLock = new Object();
+    private final Map<Long, Chunk> finished = new HashMap<Long, Chunk>();
+    private final long startTime;
+
+    private List<Map<String, String>> rows;
+    private long nextChunk;
+    private long nextCompletion;
+    private long rowCount;
+    private volatile Throwable failure;
+
+    /**
+     * @param threads The number of workers
+     * @param chunkSize The number of rows passed to a worker at a time
+     * @param queueSize The number of chunks that can wait for a worker, or to be taken in order
+     * @param ordered True to take the results in row order
+     */
+    ParallelRowPipeline(DataRowProcessor<T> processor, int threads, int chunkSize, int queueSize, boolean ordered) {
+        this.processor = processor;
+        this.threads = Math.max(1, threads);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.ordered = ordered;
+        this.queue = new ArrayBlockingQueue<Chunk>(Math.max(1, queueSize));
+        this.pending = new Semaphore(Math.max(1, queueSize) + this.threads);
+        this.rows = new ArrayList<Map<String, String>>(this.chunkSize);
+        this.workers = Executors.newFixedThreadPool(this.threads, new WorkerThreadFactory());
+        for (int i = 0; i < this.threads; i++) {
+            workers.execute(new Worker());
+        }
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Add a row, blocking while the queue is full.
+     */
+    void add(Map<String, String> facts) {
+        rows.add(facts);
+        rowCount++;
+        if (rows.size() >= chunkSize) {
+            submit();
+        }
+    }
+
+    /**
+     * Wait for the rows added to be processed and taken, and stop the workers.
+     *
+     * @return The number of rows processed
+     */
+    long finish() {
+        try {
+            if (!rows.isEmpty()) {
+                submit();
+            }
+            for (int i = 0; i < threads; i++) {
+                put(END);
+            }
+            workers.shutdown();
+            while (!workers.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing rows", e);
+        } finally {
+            workers.shutdownNow();
+        }
+        checkFailure();
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        logger.info("Processed " + rowCount + " rows with " + threads + " threads in " + elapsed + "ms ("
+                + (rowCount * 1000 / elapsed) + " rows/sec)");
+        return rowCount;
+    }
+
+    /**
+     * Stop the workers without waiting for the rows added.
+     */
+    void abort() {
+        workers.shutdownNow();
+    }
+
+    private void submit() {
+        Chunk chunk = new Chunk(nextChunk++, rows);
+        rows = new ArrayList<Map<String, String>>(chunkSize);
+        try {
+            if (ordered) {
+                while (!pending.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+            }
+            put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing rows", e);
+        }
+    }
+
+    private void put(Chunk chunk) throws InterruptedException {
+        while (!queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new RuntimeException("Problem processing rows", t);
+        }
+    }
+
+    private void process(Chunk chunk) {
+        chunk.results = new ArrayList<Object>(chunk.rows.size());
+        for (Map<String, String> facts : chunk.rows) {
+            chunk.results.add(processor.processRow(facts));
+        }
+        synchronized (completionLock) {
+            if (!ordered) {
+                complete(chunk);
+                return;
+            }
+            finished.put(chunk.sequence, chunk);
+            Chunk next;
+            while ((next = finished.remove(nextCompletion)) != null) {
+                complete(next);
+                nextCompletion++;
+                pending.release();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(Chunk chunk) {
+        for (int i = 0; i < chunk.rows.size(); i++) {
+            processor.rowProcessed(chunk.rows.get(i), (T) chunk.results.get(i));
+        }
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                Chunk chunk;
+                while ((chunk = queue.take()) != END) {
+                    // Once a row has failed the rest are dropped, the reader gives up when it next looks
+                    if (failure == null) {
+                        try {
+                            process(chunk);
+                        } catch (Throwable t) {
+                            if (failure == null) {
+                                failure = t;
+                            }
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Chunk {
+        final long sequence;
+        final List<Map<String, String>> rows;
+        List<Object> results;
+
+        Chunk(long sequence, List<Map<String, String>> rows) {
+            this.sequence = sequence;
+            this.rows = rows;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "sds-row-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
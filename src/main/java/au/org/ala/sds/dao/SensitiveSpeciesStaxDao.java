@@ -0,0 +1,163 @@
+package au.org.ala.sds.dao;
+
+import au.org.ala.names.model.RankType;
+import au.org.ala.sds.model.*;
+import org.apache.log4j.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the sensitive species xml a species at a time with a StAX stream reader, without building a document.
+ * <p>
+ * Gives the same taxa as {@link SensitiveSpeciesXmlDao}: every child of the root is a species, only the first
+ * <code>instances</code> element of a species is read, and every child of a <code>plantPestInstance</code> is a
+ * transient event.
+ */
+public class SensitiveSpeciesStaxDao implements SensitiveSpeciesDao {
+
+    protected static final Logger logger = Logger.getLogger(SensitiveSpeciesStaxDao.class);
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final InputStream stream;
+
+    public SensitiveSpeciesStaxDao(InputStream stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public List<SensitiveTaxon> getAll() throws Exception {
+        List<SensitiveTaxon> species = new ArrayList<SensitiveTaxon>();
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(stream);
+        try {
+            if (nextChild(reader)) {
+                while (nextChild(reader)) {
+                    species.add(readSpecies(reader));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        // Sort list since MySQL sort order is not the same as Java's
+        Collections.sort(species);
+
+        return species;
+    }
+
+    private static SensitiveTaxon readSpecies(XMLStreamReader reader) throws XMLStreamException {
+        String name = attribute(reader, "name");
+        String family = attribute(reader, "family");
+        RankType rank = RankType.getForStrRank(attribute(reader, "rank"));
+        String commonName = attribute(reader, "commonName");
+
+        SensitiveTaxon ss = new SensitiveTaxon(name, rank);
+        ss.setFamily(family);
+        ss.setCommonName(commonName);
+        if (attribute(reader, "guid") != null) {
+            ss.setLsid(attribute(reader, "guid"));
+        } else if (attribute(reader, "lsid") != null) {
+            ss.setLsid(attribute(reader, "lsid"));
+        }
+
+        boolean instancesRead = false;
+        while (nextChild(reader)) {
+            if (!instancesRead && reader.getLocalName().equals("instances")) {
+                readInstances(reader, ss);
+                instancesRead = true;
+            } else {
+                skip(reader);
+            }
+        }
+        return ss;
+    }
+
+    private static void readInstances(XMLStreamReader reader, SensitiveTaxon ss) throws XMLStreamException {
+        while (nextChild(reader)) {
+            SensitivityInstance instance = null;
+            String element = reader.getLocalName();
+
+            if (element.equalsIgnoreCase("conservationInstance")) {
+                instance = new ConservationInstance(
+                    SensitivityCategoryFactory.getCategory(attribute(reader, "category")),
+                    attribute(reader, "authority"),
+                    attribute(reader, "dataResourceId"),
+                    SensitivityZoneFactory.findZone(attribute(reader, "zone")),
+                    attribute(reader, "reason"),
+                    attribute(reader, "remarks"),
+                    attribute(reader, "generalisation")
+                );
+                skip(reader);
+            } else if (element.equalsIgnoreCase("plantPestInstance")) {
+                PlantPestInstance plantPest = new PlantPestInstance(
+                    SensitivityCategoryFactory.getCategory(attribute(reader, "category")),
+                    attribute(reader, "authority"),
+                    attribute(reader, "dataResourceId"),
+                    SensitivityZoneFactory.findZone(attribute(reader, "zone")),
+                    attribute(reader, "reason"),
+                    attribute(reader, "remarks"),
+                    attribute(reader, "fromDate"),
+                    attribute(reader, "toDate")
+                );
+                while (nextChild(reader)) {
+                    plantPest.addTransientEvent(
+                            attribute(reader, "eventDate"),
+                            SensitivityZoneFactory.getZone(attribute(reader, "zone")));
+                    skip(reader);
+                }
+                instance = plantPest;
+            } else {
+                skip(reader);
+            }
+            ss.getInstances().add(instance);
+        }
+    }
+
+    /**
+     * Move to the start of the next child of the current element.
+     *
+     * @return False, positioned at the end of the current element, if there are no more children
+     */
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move to the end of the current element, ignoring its content.
+     */
+    private static void skip(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+}
@@ -0,0 +1,236 @@
+package au.org.ala.sds.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Reads a sheet of an .xls workbook a record at a time with the HSSF event model, without building the workbook.
+ * <p>
+ * The workbook globals (shared strings, formats and sheet names) are kept, the cells of other sheets are passed over
+ * and reading stops at the last row wanted.
+ */
+class XlsSheetReader extends AbortableHSSFListener {
+
+    private static final short CONTINUE = 0;
+    private static final short STOP = 1;
+
+    private final ExcelRowCollector rows;
+    private final int sheetIndex;
+
+    private final List<BoundSheetRecord> boundSheets = new ArrayList<BoundSheetRecord>();
+    private final List<ExtendedFormatRecord> extendedFormats = new ArrayList<ExtendedFormatRecord>();
+    private final Map<Integer, String> formats = new HashMap<Integer, String>();
+    private SSTRecord strings;
+
+    private int depth;
+    private int sheets;
+    private int targetSheet = -1;
+    private boolean inSheet;
+    private FormulaRecord stringFormula;
+    private boolean found;
+
+    /**
+     * @param sheetIndex The index of the sheet, from 0
+     */
+    XlsSheetReader(ExcelRowCollector rows, int sheetIndex) {
+        this.rows = rows;
+        this.sheetIndex = sheetIndex;
+    }
+
+    void read(File file) throws IOException {
+        POIFSFileSystem fs = new POIFSFileSystem(file, true);
+        try {
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(this);
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs);
+        } catch (HSSFUserException e) {
+            throw new IOException("Unable to read Excel workbook", e);
+        } finally {
+            rows.endRow();
+            fs.close();
+        }
+        if (!found) {
+            throw new IllegalArgumentException("Sheet index (" + sheetIndex + ") is out of range");
+        }
+    }
+
+    @Override
+    public short abortableProcessRecord(Record record) {
+        switch (record.getSid()) {
+            case BOFRecord.sid:
+                depth++;
+                if (depth == 1 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+                    startSheet();
+                }
+                return CONTINUE;
+            case EOFRecord.sid:
+                depth--;
+                // The end of the sheet, any later sheets are not needed
+                return inSheet && depth == 0 ? STOP : CONTINUE;
+            case BoundSheetRecord.sid:
+                boundSheets.add((BoundSheetRecord) record);
+                return CONTINUE;
+            case SSTRecord.sid:
+                strings = (SSTRecord) record;
+                return CONTINUE;
+            case FormatRecord.sid:
+                FormatRecord format = (FormatRecord) record;
+                formats.put(format.getIndexCode(), format.getFormatString());
+                return CONTINUE;
+            case ExtendedFormatRecord.sid:
+                extendedFormats.add((ExtendedFormatRecord) record);
+                return CONTINUE;
+            default:
+                // Cells of charts within the sheet are left out
+                return inSheet && depth == 1 ? processCell(record) : CONTINUE;
+        }
+    }
+
+    private void startSheet() {
+        if (targetSheet < 0) {
+            // The sheets are in the order of their bound sheet records, their streams in the order they are found
+            if (sheetIndex >= 0 && sheetIndex < boundSheets.size()) {
+                BoundSheetRecord target = boundSheets.get(sheetIndex);
+                BoundSheetRecord[] ordered = BoundSheetRecord.orderByBofPosition(boundSheets);
+                for (int i = 0; i < ordered.length; i++) {
+                    if (ordered[i] == target) {
+                        targetSheet = i;
+                    }
+                }
+            }
+            if (targetSheet < 0) {
+                targetSheet = Integer.MAX_VALUE;
+            }
+        }
+        inSheet = sheets++ == targetSheet;
+        if (inSheet) {
+            found = true;
+            DataStreamExcelDao.logger.debug("Sheet = " + boundSheets.get(sheetIndex).getSheetname());
+        }
+    }
+
+    private short processCell(Record record) {
+        switch (record.getSid()) {
+            case NumberRecord.sid:
+                NumberRecord number = (NumberRecord) record;
+                return numericCell(number, number.getColumn(), number.getValue(), number.getXFIndex());
+            case RKRecord.sid:
+                RKRecord rk = (RKRecord) record;
+                return numericCell(rk, rk.getColumn(), rk.getRKNumber(), rk.getXFIndex());
+            case MulRKRecord.sid:
+                MulRKRecord mulRk = (MulRKRecord) record;
+                if (startRow(mulRk.getRow())) {
+                    return STOP;
+                }
+                for (int i = 0; i < mulRk.getNumColumns(); i++) {
+                    int xf = mulRk.getXFAt(i);
+                    rows.numericCell(mulRk.getFirstColumn() + i, mulRk.getRKNumberAt(i), getFormatIndex(xf), getFormatString(xf));
+                }
+                return CONTINUE;
+            case LabelSSTRecord.sid:
+                LabelSSTRecord label = (LabelSSTRecord) record;
+                return stringCell(label, strings.getString(label.getSSTIndex()).getString());
+            case LabelRecord.sid:
+                LabelRecord oldLabel = (LabelRecord) record;
+                return stringCell(oldLabel, oldLabel.getValue());
+            case FormulaRecord.sid:
+                FormulaRecord formula = (FormulaRecord) record;
+                if (formula.hasCachedResultString()) {
+                    // The value is in the string record that follows
+                    stringFormula = formula;
+                    return startRow(formula.getRow()) ? STOP : CONTINUE;
+                } else if (formula.getCachedResultType() == Cell.CELL_TYPE_NUMERIC) {
+                    return numericCell(formula, formula.getColumn(), formula.getValue(), formula.getXFIndex());
+                } else {
+                    return stringCell(formula, null);
+                }
+            case StringRecord.sid:
+                if (stringFormula != null) {
+                    rows.stringCell(stringFormula.getColumn(), ((StringRecord) record).getString());
+                    stringFormula = null;
+                }
+                return CONTINUE;
+            case BlankRecord.sid:
+            case BoolErrRecord.sid:
+                return stringCell((CellValueRecordInterface) record, null);
+            case MulBlankRecord.sid:
+                MulBlankRecord mulBlank = (MulBlankRecord) record;
+                if (startRow(mulBlank.getRow())) {
+                    return STOP;
+                }
+                for (int i = 0; i < mulBlank.getNumColumns(); i++) {
+                    rows.stringCell(mulBlank.getFirstColumn() + i, null);
+                }
+                return CONTINUE;
+            default:
+                return CONTINUE;
+        }
+    }
+
+    /**
+     * @return True if the row is after the last row wanted
+     */
+    private boolean startRow(int row) {
+        rows.startRow(row);
+        return rows.isPastEnd();
+    }
+
+    private short numericCell(CellValueRecordInterface cell, int column, double value, int xf) {
+        if (startRow(cell.getRow())) {
+            return STOP;
+        }
+        rows.numericCell(column, value, getFormatIndex(xf), getFormatString(xf));
+        return CONTINUE;
+    }
+
+    private short stringCell(CellValueRecordInterface cell, String value) {
+        if (startRow(cell.getRow())) {
+            return STOP;
+        }
+        rows.stringCell(cell.getColumn(), value);
+        return CONTINUE;
+    }
+
+    private int getFormatIndex(int xf) {
+        return xf >= 0 && xf < extendedFormats.size() ? extendedFormats.get(xf).getFormatIndex() : -1;
+    }
+
+    private String getFormatString(int xf) {
+        int index = getFormatIndex(xf);
+        if (index < 0) {
+            return null;
+        }
+        String format = formats.get(index);
+        return format != null ? format : BuiltinFormats.getBuiltinFormat(index);
+    }
+}
@@ -0,0 +1,203 @@
+package au.org.ala.sds.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.SAXException;
+
+import au.org.ala.sds.util.ExcelUtils;
+
+/**
+ * Reads a sheet of an .xlsx workbook a cell at a time from the sheet xml, without building the workbook.
+ * <p>
+ * Only the shared strings and the cell styles are held in memory, and reading stops at the last row wanted.
+ */
+class XlsxSheetReader {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final ExcelRowCollector rows;
+    private ReadOnlySharedStringsTable strings;
+    private StylesTable styles;
+
+    XlsxSheetReader(ExcelRowCollector rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * @param file The workbook
+     * @param sheetIndex The index of the sheet, from 0
+     */
+    void read(File file, int sheetIndex) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Unable to open Excel workbook", e);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            strings = new ReadOnlySharedStringsTable(pkg);
+            styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int i = 0; sheets.hasNext(); i++) {
+                InputStream sheet = sheets.next();
+                try {
+                    if (i == sheetIndex) {
+                        DataStreamExcelDao.logger.debug("Sheet = " + sheets.getSheetName());
+                        readSheet(sheet);
+                        return;
+                    }
+                } finally {
+                    sheet.close();
+                }
+            }
+            throw new IllegalArgumentException("Sheet index (" + sheetIndex + ") is out of range");
+        } catch (OpenXML4JException e) {
+            throw new IOException("Unable to read Excel workbook", e);
+        } catch (SAXException e) {
+            throw new IOException("Unable to read Excel shared strings", e);
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read Excel sheet", e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private void readSheet(InputStream sheet) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(sheet);
+        try {
+            int row = -1;
+            int column = -1;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (name.equals("row")) {
+                    String ref = reader.getAttributeValue(null, "r");
+                    row = ref == null ? row + 1 : Integer.parseInt(ref) - 1;
+                    column = -1;
+                    rows.startRow(row);
+                    if (rows.isPastEnd()) {
+                        return;
+                    }
+                } else if (name.equals("c")) {
+                    column = getColumn(reader.getAttributeValue(null, "r"), column);
+                    readCell(reader, column);
+                }
+            }
+        } finally {
+            rows.endRow();
+            reader.close();
+        }
+    }
+
+    /**
+     * Read a cell, leaving the reader at the end of the cell element.
+     */
+    private void readCell(XMLStreamReader reader, int column) throws XMLStreamException {
+        String type = reader.getAttributeValue(null, "t");
+        String style = reader.getAttributeValue(null, "s");
+        boolean inRange = rows.isInRange();
+        String value = null;
+        StringBuilder inline = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("v")) {
+                    value = reader.getElementText();
+                } else if (name.equals("is")) {
+                    inline = new StringBuilder();
+                    readInlineString(reader, inline);
+                } else {
+                    depth++;
+                }
+            }
+        }
+        if (!inRange) {
+            return;
+        }
+
+        if ("s".equals(type)) {
+            rows.stringCell(column, value == null ? null : strings.getEntryAt(Integer.parseInt(value.trim())));
+        } else if ("inlineStr".equals(type)) {
+            rows.stringCell(column, inline == null ? null : inline.toString());
+        } else if ("str".equals(type) || "d".equals(type)) {
+            rows.stringCell(column, value);
+        } else if ((type == null || "n".equals(type)) && value != null) {
+            XSSFCellStyle cellStyle = styles == null ? null : styles.getStyleAt(style == null ? 0 : Integer.parseInt(style));
+            if (cellStyle == null) {
+                rows.numericCell(column, Double.parseDouble(value), -1, null);
+            } else {
+                rows.numericCell(column, Double.parseDouble(value), cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+            }
+        } else {
+            // Blank, boolean and error cells
+            rows.stringCell(column, null);
+        }
+    }
+
+    /**
+     * Read the text of an inline string, leaving out phonetic runs.
+     */
+    private static void readInlineString(XMLStreamReader reader, StringBuilder text) throws XMLStreamException {
+        int depth = 1;
+        int skipped = 0;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (skipped > depth) {
+                    skipped = 0;
+                }
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (skipped == 0 && name.equals("t")) {
+                    text.append(reader.getElementText());
+                } else {
+                    depth++;
+                    if (skipped == 0 && name.equals("rPh")) {
+                        skipped = depth;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param ref A cell reference such as B12, or null for the column after the last
+     * @return The column index, from 0
+     */
+    private static int getColumn(String ref, int previous) {
+        if (ref == null) {
+            return previous + 1;
+        }
+        int letters = 0;
+        while (letters < ref.length() && Character.isLetter(ref.charAt(letters))) {
+            letters++;
+        }
+        return ExcelUtils.getOrdinal(ref.substring(0, letters).toUpperCase()) - 1;
+    }
+}
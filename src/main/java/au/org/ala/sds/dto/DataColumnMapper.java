@@ -7,6 +7,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang.StringUtils;
+
+import au.org.ala.sds.util.ExcelUtils;
+
 /**
  *
  * @author Peter Flemming (peter.flemming@csiro.au)
@@ -26,4 +30,16 @@ public class DataColumnMapper {
     public Set<String> getKeySet() {
         return map.keySet();
     }
+
+    /**
+     * @return The index, from 0, of the column mapped to a key, given either as a number from 1 or as column letters
+     */
+    public int getColumnIndex(String key) {
+        String value = map.get(key);
+        if (StringUtils.isNumeric(value)) {
+            return Integer.parseInt(value) - 1;
+        } else {
+            return ExcelUtils.getOrdinal(value) - 1;
+        }
+    }
 }
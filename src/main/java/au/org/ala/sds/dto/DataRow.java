@@ -0,0 +1,284 @@
+package au.org.ala.sds.dto;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A row of a data file as a map of values, held in an array laid out by a {@link Schema} shared by every row of the
+ * file.
+ * <p>
+ * Reading a row fills the array rather than hashing each value into a new map. Keys that are not in the schema, and
+ * null values, are held in a map of their own, so a row can be used as any other map.
+ */
+public class DataRow extends AbstractMap<String, String> {
+
+    /**
+     * The keys of the rows of a file, each with a place in the value array of a row.
+     */
+    public static final class Schema {
+        private final String[] keys;
+        private final Map<String, Integer> index;
+
+        public Schema(Collection<String> keys) {
+            Set<String> unique = new LinkedHashSet<String>(keys);
+            this.keys = unique.toArray(new String[unique.size()]);
+            this.index = new HashMap<String, Integer>();
+            for (int i = 0; i < this.keys.length; i++) {
+                index.put(this.keys[i], i);
+            }
+        }
+
+        /**
+         * @return The place of a key in a row, -1 if the key is not in the schema
+         */
+        public int indexOf(Object key) {
+            // Keys are usually the same constant strings, and there are few of them
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            Integer i = key == null ? null : index.get(key);
+            return i == null ? -1 : i;
+        }
+
+        public String getKey(int index) {
+            return keys[index];
+        }
+
+        public int size() {
+            return keys.length;
+        }
+
+        public DataRow newRow() {
+            return new DataRow(this, new String[keys.length], 0, null);
+        }
+    }
+
+    private final Schema schema;
+    private final String[] values;
+    private int count;
+    private Map<String, String> others;
+
+    private DataRow(Schema schema, String[] values, int count, Map<String, String> others) {
+        this.schema = schema;
+        this.values = values;
+        this.count = count;
+        this.others = others;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return The value at a place in the schema, null if there is none
+     */
+    public String get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Set the value at a place in the schema.
+     *
+     * @param value The value, null to remove it
+     * @return The previous value
+     */
+    public String set(int index, String value) {
+        if (others != null && others.containsKey(schema.getKey(index))) {
+            others.remove(schema.getKey(index));
+        }
+        String previous = values[index];
+        if (previous == null && value != null) {
+            count++;
+        } else if (previous != null && value == null) {
+            count--;
+        }
+        values[index] = value;
+        return previous;
+    }
+
+    /**
+     * @return A copy of the row, sharing its schema
+     */
+    public DataRow copy() {
+        return new DataRow(schema, values.clone(), count, others == null ? null : new HashMap<String, String>(others));
+    }
+
+    @Override
+    public int size() {
+        return count + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = schema.indexOf(key);
+        if (i >= 0 && values[i] != null) {
+            return values[i];
+        }
+        return others == null ? null : others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int i = schema.indexOf(key);
+        if (i >= 0 && values[i] != null) {
+            return true;
+        }
+        return others != null && others.containsKey(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int i = schema.indexOf(key);
+        if (i >= 0 && value != null) {
+            return set(i, value);
+        }
+        String previous = i >= 0 ? set(i, null) : null;
+        if (others == null) {
+            others = new HashMap<String, String>();
+        }
+        String other = others.put(key, value);
+        return previous != null ? previous : other;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int i = schema.indexOf(key);
+        if (i >= 0 && values[i] != null) {
+            return set(i, null);
+        }
+        return others == null ? null : others.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        count = 0;
+        others = null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return DataRow.this.size();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+        private int next = advance(0);
+        private int last = -1;
+        private Iterator<Entry<String, String>> otherEntries;
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (otherEntries == null && others != null) {
+                otherEntries = others.entrySet().iterator();
+            }
+            return otherEntries != null && otherEntries.hasNext();
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (next < values.length) {
+                last = next;
+                next = advance(next + 1);
+                return new SlotEntry(last);
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = -1;
+            return otherEntries.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                set(last, null);
+                last = -1;
+            } else if (otherEntries != null) {
+                otherEntries.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private class SlotEntry implements Entry<String, String> {
+        private final int index;
+
+        SlotEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.getKey(index);
+        }
+
+        @Override
+        public String getValue() {
+            return values[index];
+        }
+
+        @Override
+        public String setValue(String value) {
+            if (value == null) {
+                throw new NullPointerException("A null value can not be set through an entry");
+            }
+            return set(index, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return getKey().equals(e.getKey()) && (getValue() == null ? e.getValue() == null : getValue().equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package au.org.ala.sds.knowledgebase;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import org.apache.log4j.Logger;
+import org.drools.core.util.DroolsStreamUtils;
+import org.kie.internal.definition.KnowledgePackage;
+import org.kie.internal.io.ResourceFactory;
+
+/**
+ * Compiles the plant pest DRL files into serialised knowledge packages.
+ * <p>
+ * Run by the build in the process-classes phase with the classes directory as the only argument. Each
+ * <code>&lt;rules&gt;.drl</code> found there is written back as <code>&lt;rules&gt;.pkg</code> so it ends up in the
+ * jar next to the source rules, where {@link KnowledgeBaseFactory} picks it up. The merged knowledge base, with every
+ * category in its own agenda group, is written as <code>PBC-merged.pkg</code>.
+ */
+public class KnowledgeBaseCompiler {
+
+    protected static final Logger logger = Logger.getLogger(KnowledgeBaseCompiler.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: KnowledgeBaseCompiler <classes directory>");
+            System.exit(1);
+        }
+        File directory = new File(args[0]);
+        for (String drl : KnowledgeBaseFactory.getRuleFiles().values()) {
+            compile(new File(directory, drl), new File(directory, KnowledgeBaseFactory.getPackageName(drl)));
+        }
+        compileMerged(directory, new File(directory, KnowledgeBaseFactory.MERGED_PACKAGE));
+    }
+
+    /**
+     * Compile the DRL files in <code>directory</code> into a single set of packages, one agenda group per category,
+     * and write them to <code>output</code>.
+     */
+    public static void compileMerged(File directory, File output) throws IOException {
+        logger.info("Compiling merged rules in " + directory + " to " + output);
+        write(KnowledgeBaseFactory.compileMerged(directory), output);
+    }
+
+    /**
+     * Compile a DRL file and write the knowledge packages to <code>output</code>.
+     */
+    public static void compile(File drl, File output) throws IOException {
+        if (!drl.isFile()) {
+            throw new IOException("Rules not found: " + drl);
+        }
+        logger.info("Compiling " + drl + " to " + output);
+        write(KnowledgeBaseFactory.compile(ResourceFactory.newFileResource(drl)), output);
+    }
+
+    private static void write(Collection<KnowledgePackage> packages, File output) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            DroolsStreamUtils.streamOut(out, packages);
+        }
+    }
+}
@@ -3,28 +3,61 @@
  */
 package au.org.ala.sds.knowledgebase;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.drools.compiler.builder.impl.KnowledgeBuilderImpl;
+import org.drools.compiler.compiler.DrlParser;
+import org.drools.compiler.compiler.DroolsParserException;
+import org.drools.compiler.lang.descr.AttributeDescr;
+import org.drools.compiler.lang.descr.PackageDescr;
+import org.drools.compiler.lang.descr.RuleDescr;
+import org.drools.core.util.DroolsStreamUtils;
+import org.kie.api.io.Resource;
 import org.kie.internal.KnowledgeBase;
 import org.kie.api.KieBaseConfiguration;
 import org.kie.internal.builder.KnowledgeBuilder;
 import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.builder.conf.LanguageLevelOption;
 import org.kie.api.io.ResourceType;
 import org.kie.api.conf.EventProcessingOption;
+import org.kie.internal.definition.KnowledgePackage;
 import org.kie.internal.io.ResourceFactory;
 
 import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.util.Configuration;
 
 /**
+ * Supplies the plant pest rules for a category.
+ * <p>
+ * The DRL files are compiled during the build by {@link KnowledgeBaseCompiler} and the resulting knowledge packages are
+ * shipped next to them as <code>&lt;rules&gt;.pkg</code>. At runtime the packages are loaded from the classpath
+ * without invoking the compiler. The DRL is compiled at runtime when it is supplied externally (sds.rules.dir), when
+ * precompiled rules are disabled (sds.rules.precompiled=false) or when no usable package is found.
+ * <p>
+ * Each knowledge base is built once and shared. Lookups of a built knowledge base do not lock.
  *
  * @author Peter Flemming (peter.flemming@csiro.au)
  */
 public class KnowledgeBaseFactory {
 
     protected static final Logger logger = Logger.getLogger(KnowledgeBaseFactory.class);
-    private static final Object lock = new Object();
+    //NQ 20140318 : It is necessary to synchronise compilation to prevent: Exception in thread "Thread-5" java.lang.LinkageError: au/org/ala/sds/validation/Rule_In_Australia_bebc6a80b9c9410ba9c5d297087be8cc
+    private static final Object compileLock = new Object();
 
     static private Map<String, String> rules  = new HashMap<String, String>();
     static {
@@ -38,39 +71,268 @@ public class KnowledgeBaseFactory {
         rules.put(SensitivityCategory.PLANT_PEST_NON_TRANSIENT, "PBC8-PlantPestTransient.drl");
         rules.put(SensitivityCategory.PLANT_PEST_EXOTIC_BIOLOGICAL_CONTROL_AGENT, "PBC9-ExoticBiologicalControlAgent.drl");
         rules.put(SensitivityCategory.PLANT_PEST_HIGHER_TAXON_ID, "PBC10-IdentificationToHigherTaxon.drl");
-//        //attempt to create all on a single thread
-//        for(String drl : rules.values()){
-//            logger.warn("Prebuilding " + drl);
-//            //KnowledgeBuilder builder = KnowledgeBuilderFactory.newKnowledgeBuilder();
-//            //builder.add(ResourceFactory.newClassPathResource(drl), ResourceType.DRL);
-//        }
     }
-    static private Map<SensitivityCategory, KnowledgeBase> kbs = new HashMap<SensitivityCategory, KnowledgeBase>();
+    static private final ConcurrentMap<String, KnowledgeBase> kbs = new ConcurrentHashMap<String, KnowledgeBase>();
+    static private final ConcurrentMap<String, Object> buildLocks = new ConcurrentHashMap<String, Object>();
+    static private volatile KnowledgeBase mergedKnowledgeBase;
+    static private final AtomicInteger generation = new AtomicInteger();
 
+    /** The precompiled package holding all categories as agenda groups */
+    static final String MERGED_PACKAGE = "PBC-merged.pkg";
+    private static final String AGENDA_GROUP = "agenda-group";
+
+    /**
+     * @return The number of times the knowledge bases have been discarded by {@link #reset()}
+     */
+    public static int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get the knowledge base for a plant pest category, building it on first use.
+     * <p>
+     * Built knowledge bases are held in a concurrent map so that lookups never block. Building a category only locks
+     * that category, and only the rules compiler is serialised across categories.
+     */
     public static KnowledgeBase getKnowledgeBase(SensitivityCategory category) {
-        KnowledgeBase knowledgeBase;
-        //NQ 20140318 : It is necessary to synchronise to prevent: Exception in thread "Thread-5" java.lang.LinkageError: au/org/ala/sds/validation/Rule_In_Australia_bebc6a80b9c9410ba9c5d297087be8cc
-        synchronized (lock){
-            if ((knowledgeBase = kbs.get(category)) == null) {
-                logger.debug("Instantiating KnowledgeBase '" + rules.get(category.getId()) + "'");
-                KnowledgeBuilder builder = KnowledgeBuilderFactory.newKnowledgeBuilder();
-                builder.add(ResourceFactory.newClassPathResource(rules.get(category.getId())), ResourceType.DRL);
+        return getKnowledgeBase(category.getId());
+    }
+
+    /**
+     * Build the knowledge bases for all plant pest categories ahead of time, so the first records to be validated do
+     * not pay for it. Precompiled rules are loaded in parallel.
+     */
+    public static void warmUp() {
+        long start = System.currentTimeMillis();
+        rules.keySet().parallelStream().forEach(KnowledgeBaseFactory::getKnowledgeBase);
+        logger.info("Built " + kbs.size() + " knowledge bases in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Discard the built knowledge bases, so each is rebuilt on next use, for instance after the rules in sds.rules.dir
+     * have changed. Anything kept for the old knowledge bases, such as reused rules sessions, should be dropped when
+     * {@link #getGeneration()} changes.
+     */
+    public static void reset() {
+        kbs.clear();
+        mergedKnowledgeBase = null;
+        generation.incrementAndGet();
+        logger.info("Plant pest knowledge bases will be rebuilt on next use");
+    }
+
+    private static KnowledgeBase getKnowledgeBase(String categoryId) {
+        KnowledgeBase knowledgeBase = kbs.get(categoryId);
+        if (knowledgeBase == null) {
+            Object buildLock = buildLocks.computeIfAbsent(categoryId, id -> new Object());
+            synchronized (buildLock) {
+                if ((knowledgeBase = kbs.get(categoryId)) == null) {
+                    String drl = rules.get(categoryId);
+                    if (drl == null) {
+                        throw new IllegalArgumentException("No plant pest rules for category " + categoryId);
+                    }
+                    logger.debug("Instantiating KnowledgeBase '" + drl + "'");
+
+                    knowledgeBase = newKnowledgeBase();
+                    knowledgeBase.addKnowledgePackages(getKnowledgePackages(drl));
+                    kbs.put(categoryId, knowledgeBase);
+                }
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Using KnowledgeBase '" + rules.get(categoryId) + "'");
+        }
+
+        return knowledgeBase;
+    }
+
+    /**
+     * Get a single knowledge base holding the rules of every plant pest category.
+     * <p>
+     * The rules of each category are placed in an agenda group named after the category id, so a session only fires
+     * the rules of the category in focus and delegation becomes a change of focus within the same session.
+     */
+    public static KnowledgeBase getMergedKnowledgeBase() {
+        KnowledgeBase knowledgeBase = mergedKnowledgeBase;
+        if (knowledgeBase == null) {
+            synchronized (buildLocks.computeIfAbsent(MERGED_PACKAGE, id -> new Object())) {
+                if ((knowledgeBase = mergedKnowledgeBase) == null) {
+                    logger.debug("Instantiating merged KnowledgeBase");
+                    knowledgeBase = newKnowledgeBase();
+                    knowledgeBase.addKnowledgePackages(getMergedKnowledgePackages());
+                    mergedKnowledgeBase = knowledgeBase;
+                }
+            }
+        }
+        return knowledgeBase;
+    }
+
+    /**
+     * Compile the rules of every category into agenda groups.
+     *
+     * @param directory Where to read the DRL files from, or null to read them from the classpath
+     */
+    static Collection<KnowledgePackage> compileMerged(File directory) throws IOException {
+        synchronized (compileLock) {
+            KnowledgeBuilder builder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+            for (Map.Entry<String, String> entry : rules.entrySet()) {
+                File file = directory == null ? null : new File(directory, entry.getValue());
+                String drl = file != null && file.isFile() ? readRules(new FileInputStream(file)) : readRules(getRulesStream(entry.getValue()));
+                ((KnowledgeBuilderImpl) builder).addPackage(toAgendaGroup(entry.getKey(), entry.getValue(), drl));
                 if (builder.hasErrors()) {
-                    throw new RuntimeException(builder.getErrors().toString());
+                    throw new RuntimeException(entry.getValue() + ": " + builder.getErrors().toString());
                 }
+            }
+            return builder.getKnowledgePackages();
+        }
+    }
+
+    /**
+     * Parse a DRL file and place every rule in the agenda group for its category. Rule names are prefixed with the
+     * category as the same name is used in more than one file.
+     *
+     * @throws RuntimeException if the rules cannot be parsed
+     * @throws IllegalArgumentException if a rule is already in the agenda group of another category
+     */
+    static PackageDescr toAgendaGroup(String categoryId, String source, String drl) {
+        DrlParser parser = new DrlParser(LanguageLevelOption.DRL6);
+        PackageDescr pkg;
+        try {
+            pkg = parser.parse(false, drl);
+        } catch (DroolsParserException e) {
+            throw new RuntimeException(source + ": unable to parse rules", e);
+        }
+        if (parser.hasErrors() || pkg == null) {
+            throw new RuntimeException(source + ": " + parser.getErrors().toString());
+        }
+        for (RuleDescr rule : pkg.getRules()) {
+            AttributeDescr group = rule.getAttributes().get(AGENDA_GROUP);
+            if (group != null && !categoryId.equals(group.getValue())) {
+                throw new IllegalArgumentException(source + ": rule \"" + rule.getName() + "\" is in agenda group "
+                        + group.getValue() + ", not " + categoryId);
+            }
+            rule.setName(categoryId + " " + rule.getName());
+            rule.addAttribute(new AttributeDescr(AGENDA_GROUP, categoryId));
+        }
+        return pkg;
+    }
 
-                KieBaseConfiguration configuration = org.kie.internal.KnowledgeBaseFactory.newKnowledgeBaseConfiguration();
-                //configuration.setOption(SequentialOption.YES);
-                configuration.setOption(EventProcessingOption.STREAM);
+    /**
+     * @return The DRL file for each plant pest category id
+     */
+    static Map<String, String> getRuleFiles() {
+        return Collections.unmodifiableMap(rules);
+    }
 
-                knowledgeBase = org.kie.internal.KnowledgeBaseFactory.newKnowledgeBase(configuration);
-                knowledgeBase.addKnowledgePackages(builder.getKnowledgePackages());
-                kbs.put(category, knowledgeBase);
+    /**
+     * @return The name of the precompiled package for a DRL file
+     */
+    static String getPackageName(String drl) {
+        return StringUtils.removeEnd(drl, ".drl") + ".pkg";
+    }
+
+    /**
+     * Compile a DRL resource.
+     *
+     * @throws RuntimeException if the rules contain errors
+     */
+    static Collection<KnowledgePackage> compile(Resource resource) {
+        synchronized (compileLock) {
+            KnowledgeBuilder builder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+            builder.add(resource, ResourceType.DRL);
+            if (builder.hasErrors()) {
+                throw new RuntimeException(builder.getErrors().toString());
             }
+            return builder.getKnowledgePackages();
         }
+    }
 
-        logger.debug("Using KnowledgeBase '" + rules.get(category.getId()) + "'");
+    private static KnowledgeBase newKnowledgeBase() {
+        KieBaseConfiguration configuration = org.kie.internal.KnowledgeBaseFactory.newKnowledgeBaseConfiguration();
+        //configuration.setOption(SequentialOption.YES);
+        configuration.setOption(EventProcessingOption.STREAM);
+        return org.kie.internal.KnowledgeBaseFactory.newKnowledgeBase(configuration);
+    }
 
-        return knowledgeBase;
+    private static Collection<KnowledgePackage> getMergedKnowledgePackages() {
+        Configuration config = Configuration.getInstance();
+        File directory = StringUtils.isNotBlank(config.getRulesDir()) ? new File(config.getRulesDir()) : null;
+        boolean external = false;
+        if (directory != null) {
+            for (String drl : rules.values()) {
+                external |= new File(directory, drl).isFile();
+            }
+        }
+
+        if (!external && config.isRulesPrecompiled()) {
+            Collection<KnowledgePackage> packages = loadPrecompiled(MERGED_PACKAGE);
+            if (packages != null) {
+                return packages;
+            }
+        }
+
+        logger.info("Compiling merged rules");
+        try {
+            return compileMerged(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read plant pest rules", e);
+        }
+    }
+
+    private static InputStream getRulesStream(String drl) throws IOException {
+        InputStream in = KnowledgeBaseFactory.class.getClassLoader().getResourceAsStream(drl);
+        if (in == null) {
+            throw new IOException("Rules not found on classpath: " + drl);
+        }
+        return in;
+    }
+
+    private static String readRules(InputStream in) throws IOException {
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            StringBuilder drl = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                drl.append(buffer, 0, read);
+            }
+            return drl.toString();
+        }
+    }
+
+    private static Collection<KnowledgePackage> getKnowledgePackages(String drl) {
+        Configuration config = Configuration.getInstance();
+        if (StringUtils.isNotBlank(config.getRulesDir())) {
+            File file = new File(config.getRulesDir(), drl);
+            if (file.isFile()) {
+                logger.info("Compiling external rules " + file);
+                return compile(ResourceFactory.newFileResource(file));
+            }
+        }
+
+        if (config.isRulesPrecompiled()) {
+            Collection<KnowledgePackage> packages = loadPrecompiled(getPackageName(drl));
+            if (packages != null) {
+                return packages;
+            }
+        }
+
+        logger.info("Compiling rules " + drl);
+        return compile(ResourceFactory.newClassPathResource(drl));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<KnowledgePackage> loadPrecompiled(String name) {
+        ClassLoader classLoader = KnowledgeBaseFactory.class.getClassLoader();
+        try (InputStream in = classLoader.getResourceAsStream(name)) {
+            if (in == null) {
+                logger.debug("No precompiled rules " + name);
+                return null;
+            }
+            logger.debug("Loading precompiled rules " + name);
+            return (Collection<KnowledgePackage>) DroolsStreamUtils.streamIn(in, classLoader);
+        } catch (Exception e) {
+            logger.warn("Unable to load precompiled rules " + name + ", compiling instead", e);
+            return null;
+        }
     }
 }
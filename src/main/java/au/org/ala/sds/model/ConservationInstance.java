@@ -14,6 +14,7 @@ public class ConservationInstance extends SensitivityInstance implements Seriali
     private static final long serialVersionUID = 1L;
 
     private final String locationGeneralisation;
+    private final Generalisation generalisation;
 
     /**
      * @param category
@@ -31,9 +32,21 @@ public class ConservationInstance extends SensitivityInstance implements Seriali
             String generalisation) {
         super(category, authority, dataResourceId, zone, reason, remarks);
         this.locationGeneralisation = generalisation;
+        this.generalisation = Generalisation.parse(generalisation);
     }
 
     public String getLocationGeneralisation() {
         return locationGeneralisation;
     }
+
+    /**
+     * @return The location generalisation, or null if there is none or it is not recognised
+     */
+    public Generalisation getGeneralisation() {
+        if (generalisation == null && locationGeneralisation != null) {
+            // Unrecognised, or serialized before the generalisation was parsed
+            return Generalisation.parse(locationGeneralisation);
+        }
+        return generalisation;
+    }
 }
@@ -0,0 +1,81 @@
+package au.org.ala.sds.model;
+
+/**
+ * The location generalisations a conservation instance can ask for.
+ */
+public enum Generalisation {
+
+    WITHHOLD("WITHHOLD", Integer.MAX_VALUE, -1, null),
+    KM100("100km", 100000, 0, "1.0"),
+    KM50("50km", 50000, 0, "1.0"),
+    KM10("10km", 10000, 1, "0.1"),
+    KM2("2km", 2000, 2, "0.01"),
+    KM1("1km", 1000, 2, "0.01"),
+    M100("100m", 100, 3, "0.001");
+
+    private final String label;
+    private final int metres;
+    private final String metresText;
+    private final int decimalPlaces;
+    private final String degrees;
+
+    Generalisation(String label, int metres, int decimalPlaces, String degrees) {
+        this.label = label;
+        this.metres = metres;
+        this.metresText = String.valueOf(metres);
+        this.decimalPlaces = decimalPlaces;
+        this.degrees = degrees;
+    }
+
+    /**
+     * Get the generalisation for a value as it appears in the species list, ignoring case.
+     *
+     * @return The generalisation, or null if the value is null or not recognised
+     */
+    public static Generalisation parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (Generalisation generalisation : values()) {
+            if (generalisation.label.equalsIgnoreCase(value)) {
+                return generalisation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The value as it appears in the species list, eg 10km
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return The size of the generalisation, used to pick the largest, {@link Integer#MAX_VALUE} for {@link #WITHHOLD}
+     */
+    public int getMetres() {
+        return metres;
+    }
+
+    /**
+     * @return The size of the generalisation as text
+     */
+    public String getMetresText() {
+        return metresText;
+    }
+
+    /**
+     * @return The decimal places the coordinates are rounded to, -1 if they are withheld
+     */
+    public int getDecimalPlaces() {
+        return decimalPlaces;
+    }
+
+    /**
+     * @return The grid size in degrees, as used in the generalisation message
+     */
+    public String getDegrees() {
+        return degrees;
+    }
+}
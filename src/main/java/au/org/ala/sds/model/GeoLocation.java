@@ -25,6 +25,20 @@ public class GeoLocation {
         return longitude;
     }
     
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof GeoLocation)) return false;
+        GeoLocation other = (GeoLocation) obj;
+        return (latitude == null ? other.latitude == null : latitude.equals(other.latitude)) &&
+               (longitude == null ? other.longitude == null : longitude.equals(other.longitude));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (latitude == null ? 0 : latitude.hashCode()) + (longitude == null ? 0 : longitude.hashCode());
+    }
+
     @Override
     public String toString() {
         return latitude + "," + longitude;
@@ -44,6 +44,18 @@ public class PlantPestInstance extends SensitivityInstance implements Serializab
         this.toDate = StringUtils.isNotEmpty(toDate) ? DateHelper.parseDate(toDate) : null;
     }
 
+    /**
+     * Create an instance with dates that have already been parsed, as read from a store snapshot.
+     *
+     * @param instance The category, authority, zone and other common values
+     */
+    PlantPestInstance(SensitivityInstance instance, Date fromDate, Date toDate) {
+        super(instance.getCategory(), instance.getAuthority(), instance.getDataResourceId(), instance.getZone(),
+                instance.getReason(), instance.getRemarks());
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
     public Date getFromDate() {
         return fromDate;
     }
@@ -58,6 +70,12 @@ public class PlantPestInstance extends SensitivityInstance implements Serializab
         transientEventList.add(new TransientEvent(eventDate, zone));
     }
 
+    void addTransientEvent(Date eventDate, SensitivityZone zone){
+        if(transientEventList == null)
+            transientEventList = new ArrayList<TransientEvent>();
+        transientEventList.add(new TransientEvent(eventDate, zone));
+    }
+
     public java.util.List<TransientEvent> getTransientEventList(){
         return transientEventList;
     }
@@ -70,6 +88,11 @@ public class PlantPestInstance extends SensitivityInstance implements Serializab
             this.zone = zone;
         }
 
+        TransientEvent(Date eventDate, SensitivityZone zone){
+            this.eventDate = eventDate;
+            this.zone = zone;
+        }
+
         public Date getEventDate() {
             return eventDate;
         }
@@ -41,6 +41,7 @@ public class SensitiveTaxon implements Serializable, Comparable<SensitiveTaxon>
     private SensitiveTaxon acceptedTaxon;   //
     private String lsid;
     private final List<SensitivityInstance> instances;
+    private transient volatile ZoneInstanceIndex zoneIndex;
 
     public SensitiveTaxon(String taxon, RankType rank) {
         super();
@@ -109,6 +110,13 @@ public class SensitiveTaxon implements Serializable, Comparable<SensitiveTaxon>
         }
     }
 
+    /**
+     * @return The instances held by this taxon, not those of its accepted taxon
+     */
+    List<SensitivityInstance> getOwnInstances() {
+        return this.instances;
+    }
+
     public String getLsid() {
         return this.lsid;
     }
@@ -152,6 +160,47 @@ public class SensitiveTaxon implements Serializable, Comparable<SensitiveTaxon>
     }
 
     public List<SensitivityInstance> getInstancesForZones(List<SensitivityZone> zones) {
+        if (zones instanceof ZoneSet) {
+            return getInstancesForZones((ZoneSet) zones, null).getInstances();
+        }
+        return findInstancesForZones(zones);
+    }
+
+    /**
+     * Get the instances that apply in a set of zones, using an index of the instances by zone.
+     *
+     * @param excludedAuthority Leave out the instances of this authority, ignoring case, null to keep them all
+     */
+    public ZoneInstances getInstancesForZones(ZoneSet zones, String excludedAuthority) {
+        ZoneInstances result = getZoneIndex().match(zones, excludedAuthority);
+        if (result == null) {
+            List<SensitivityInstance> instanceList = findInstancesForZones(zones);
+            if (excludedAuthority != null) {
+                SensitivityInstance.removeInstance(instanceList, excludedAuthority);
+            }
+            result = new ZoneInstances(instanceList);
+        }
+        return result;
+    }
+
+    /**
+     * Build the index of instances by zone, if it is not up to date, ahead of the first record.
+     */
+    void initialiseZoneIndex() {
+        getZoneIndex();
+    }
+
+    private ZoneInstanceIndex getZoneIndex() {
+        List<SensitivityInstance> source = getInstances();
+        ZoneInstanceIndex index = this.zoneIndex;
+        if (index == null || !index.isCurrent(source)) {
+            index = ZoneInstanceIndex.build(source);
+            this.zoneIndex = index;
+        }
+        return index;
+    }
+
+    private List<SensitivityInstance> findInstancesForZones(List<SensitivityZone> zones) {
         List<SensitivityInstance> instanceList = new ArrayList<SensitivityInstance>();
         for (SensitivityInstance si : getInstances()) {
             if (zones.contains(si.getZone())) {
@@ -18,11 +18,18 @@ import au.org.ala.names.model.*;
 import au.org.ala.names.search.ALANameSearcher;
 import au.org.ala.names.search.SearchResultException;
 import au.org.ala.sds.dao.SensitiveSpeciesDao;
+import au.org.ala.sds.util.Configuration;
+import au.org.ala.sds.util.LruCache;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  *
@@ -42,25 +49,58 @@ public class SensitiveTaxonStore implements Serializable {
     private final Map<String, Integer> lsidMap;
     private final Map<String, Integer> nameMap;
 
+    /** Cached resolution of a name that the name searcher does not match */
+    private static final String NOT_FOUND = "";
+
     private transient final ALANameSearcher namesSearcher;
+    /** Raw name to accepted name, read by every validation thread without taking a lock */
+    private transient final LruCache<String, String> nameCache;
 
     public SensitiveTaxonStore(SensitiveSpeciesDao dao, ALANameSearcher nameSearcher) throws Exception {
+        this(dao, nameSearcher, Configuration.getInstance().getNameMatchingThreads());
+    }
+
+    /**
+     * @param threads The number of names matched at once while the store is built, 1 or less to match them in turn
+     */
+    public SensitiveTaxonStore(SensitiveSpeciesDao dao, ALANameSearcher nameSearcher, int threads) throws Exception {
         this.namesSearcher = nameSearcher;
+        this.nameCache = new LruCache<String, String>(Configuration.getInstance().getNameCacheSize(),
+                Configuration.getInstance().getNameCacheTtl(), TimeUnit.SECONDS);
         this.lsidMap = new HashMap<String, Integer>();
         this.nameMap = new HashMap<String, Integer>();
         this.taxonList = dao.getAll();
-        verifyAndInitialiseSpeciesList();
+        verifyAndInitialiseSpeciesList(threads);
     }
 
-    private void verifyAndInitialiseSpeciesList() {
+    /**
+     * Create a store from taxa and lookup maps that have already been matched, as read from a snapshot.
+     */
+    SensitiveTaxonStore(List<SensitiveTaxon> taxonList, Map<String, Integer> lsidMap, Map<String, Integer> nameMap, ALANameSearcher nameSearcher) {
+        this.namesSearcher = nameSearcher;
+        this.nameCache = new LruCache<String, String>(Configuration.getInstance().getNameCacheSize(),
+                Configuration.getInstance().getNameCacheTtl(), TimeUnit.SECONDS);
+        this.taxonList = taxonList;
+        this.lsidMap = lsidMap;
+        this.nameMap = nameMap;
+        initialiseZoneIndexes();
+    }
+
+    private void verifyAndInitialiseSpeciesList(int threads) {
         List<SensitiveTaxon> additionalAcceptedTaxons = new ArrayList<SensitiveTaxon>();
 
-        for (SensitiveTaxon st : taxonList) {
-            NameSearchResult match = lookupName(st.getTaxonName(), st.getFamily(), st.getRank());
+        // The name searches are independent, so run them first, then apply the results in list order as before
+        final NameSearchResult[] matches = new NameSearchResult[taxonList.size()];
+        final NameSearchResult[] acceptedMatches = new NameSearchResult[taxonList.size()];
+        matchNames(matches, acceptedMatches, threads);
+
+        for (int i = 0; i < taxonList.size(); i++) {
+            SensitiveTaxon st = taxonList.get(i);
+            NameSearchResult match = matches[i];
             if (match != null) {
                 st.setLsid(match.getLsid());
                 if (match.isSynonym()) {
-                    NameSearchResult accepted = getAcceptedNameFromSynonym(match);
+                    NameSearchResult accepted = acceptedMatches[i];
                     if (accepted != null) {
                         String acceptedName = accepted.getRankClassification().getScientificName();
                         //logger.info("Sensitive species '" + st.getName() + "' is not accepted name - using '" + acceptedName + "'");
@@ -120,14 +160,60 @@ public class SensitiveTaxonStore implements Serializable {
                 }
             }
         }
+
+        initialiseZoneIndexes();
     }
 
-    public SensitiveTaxon findByName(String name) {
-        String acceptedName = name;
-        NameSearchResult result = getAcceptedName(name);
-        if (result != null) {
-            acceptedName = result.getRankClassification().getScientificName();
+    /**
+     * Index the instances of each taxon by zone, once the instances of synonyms have been given to their accepted taxa.
+     */
+    private void initialiseZoneIndexes() {
+        for (SensitiveTaxon st : taxonList) {
+            st.initialiseZoneIndex();
         }
+    }
+
+    /**
+     * Look up the name of each taxon, and the accepted name of any synonym, over a pool of <code>threads</code>.
+     */
+    private void matchNames(final NameSearchResult[] matches, final NameSearchResult[] acceptedMatches, int threads) {
+        final IntConsumer matcher = new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                SensitiveTaxon st = taxonList.get(i);
+                matches[i] = lookupName(st.getTaxonName(), st.getFamily(), st.getRank());
+                if (matches[i] != null && matches[i].isSynonym()) {
+                    acceptedMatches[i] = getAcceptedNameFromSynonym(matches[i]);
+                }
+            }
+        };
+        if (namesSearcher == null || threads <= 1 || taxonList.size() < 2) {
+            IntStream.range(0, taxonList.size()).forEach(matcher);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    IntStream.range(0, taxonList.size()).parallel().forEach(matcher);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while matching sensitive species names", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to match sensitive species names", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        logger.info("Matched " + taxonList.size() + " sensitive species names with " + threads + " threads in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    public SensitiveTaxon findByName(String name) {
+        String acceptedName = resolveAcceptedName(name);
 
         Integer nameIndex = nameMap.get(acceptedName);
         if (nameIndex != null) {
@@ -166,41 +252,89 @@ public class SensitiveTaxonStore implements Serializable {
         }
     }
 
-    private NameSearchResult getAcceptedName(String name) {
-        NameSearchResult match = null;
-        if (namesSearcher != null) {
+    /**
+     * @return Statistics for the cache of names resolved by {@link #findByName(String)}, null if there is no name searcher
+     */
+    public LruCache<String, String> getNameCache() {
+        return namesSearcher == null ? null : nameCache;
+    }
+
+    /**
+     * Forget every resolved name, for example after the name matching index has been replaced.
+     */
+    public void clearNameCache() {
+        if (nameCache != null) {
+            logger.info("Clearing name cache " + nameCache);
+            nameCache.clear();
+        }
+    }
+
+    /**
+     * Resolve a name to its accepted scientific name, or to itself if the name searcher does not match it.
+     * <p>
+     * Most names in a dataset are not sensitive and many repeat, so each resolution, including a name that does not
+     * match, is cached and the name searcher is only asked again once the entry expires or is evicted. A search that
+     * fails is not cached, so the next record with the name asks again.
+     */
+    private String resolveAcceptedName(String name) {
+        if (namesSearcher == null || name == null) {
+            return name;
+        }
+        String acceptedName = nameCache.get(name);
+        if (acceptedName == null) {
+            NameSearchResult result;
             try {
-                match = this.lookupName(name, null, null);
-                if (match != null && match.isSynonym()) {
-                    match = getAcceptedNameFromSynonym(match);
-                }
-            } catch (RuntimeException e) {
-                logger.error("'" + name + "'", e);
+                result = getAcceptedName(name);
+            } catch (SearchResultException | RuntimeException e) {
+                logger.error("Error searching for '" + name + "'", e);
+                return name;
             }
+            if (result != null && result.getRankClassification().getScientificName() != null) {
+                acceptedName = result.getRankClassification().getScientificName();
+            } else {
+                acceptedName = NOT_FOUND;
+            }
+            nameCache.put(name, acceptedName);
         }
+        return acceptedName.equals(NOT_FOUND) ? name : acceptedName;
+    }
 
+    /**
+     * @return The accepted name's match, null if the name does not match
+     * @throws SearchResultException if the search failed, as opposed to finding no match
+     */
+    private NameSearchResult getAcceptedName(String name) throws SearchResultException {
+        NameSearchResult match = searchName(name, null, null);
+        if (match != null && match.isSynonym()) {
+            match = getAcceptedNameFromSynonym(match);
+        }
         return match;
     }
 
     private NameSearchResult lookupName(String name, String family, RankType rank) {
+        try {
+            return searchName(name, family, rank);
+        } catch (SearchResultException ex) {
+            logger.error("Error searching for " + name, ex);
+            return null;
+        }
+    }
+
+    private NameSearchResult searchName(String name, String family, RankType rank) throws SearchResultException {
         NameSearchResult match = null;
         if (namesSearcher != null) {
-            try {
-                LinnaeanRankClassification lrc = new LinnaeanRankClassification(null, null, null, null, family, null, name);
-                lrc.setRank(rank == null ? null : rank.getRank());
-                MetricsResultDTO metrics = namesSearcher.searchForRecordMetrics(lrc, false, false);
-                if (metrics != null) {
-                    match = metrics.getResult();
-                    if (match != null && INACCURATE_MATCH.contains(match.getMatchType())) {
-                        logger.error("Inaccurate match type " + match.getMatchType() + " for " + name);
-                        match = null;
-                    }
-                    if (!metrics.getErrors().contains(ErrorType.NONE)){
-                        logger.warn("Name search for " + name + " contains flags " + metrics.getErrors());
-                    }
+            LinnaeanRankClassification lrc = new LinnaeanRankClassification(null, null, null, null, family, null, name);
+            lrc.setRank(rank == null ? null : rank.getRank());
+            MetricsResultDTO metrics = namesSearcher.searchForRecordMetrics(lrc, false, false);
+            if (metrics != null) {
+                match = metrics.getResult();
+                if (match != null && INACCURATE_MATCH.contains(match.getMatchType())) {
+                    logger.error("Inaccurate match type " + match.getMatchType() + " for " + name);
+                    match = null;
+                }
+                if (!metrics.getErrors().contains(ErrorType.NONE)){
+                    logger.warn("Name search for " + name + " contains flags " + metrics.getErrors());
                 }
-            } catch (SearchResultException ex) {
-                logger.error("Error searching for " + name, ex);
             }
         }
         return match;
@@ -219,6 +353,18 @@ public class SensitiveTaxonStore implements Serializable {
         }
     }
 
+    List<SensitiveTaxon> getTaxonList() {
+        return taxonList;
+    }
+
+    Map<String, Integer> getLsidMap() {
+        return lsidMap;
+    }
+
+    Map<String, Integer> getNameMap() {
+        return nameMap;
+    }
+
     public int getTaxonCount(){
         if(taxonList != null)
             return taxonList.size();
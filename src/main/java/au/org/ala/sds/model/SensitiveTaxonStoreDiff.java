@@ -0,0 +1,288 @@
+package au.org.ala.sds.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The differences between two versions of the sensitive species list: the taxa added, the taxa removed and the taxa
+ * whose sensitivity instances changed.
+ * <p>
+ * Taxa are matched on their name and instances on their zone, authority and data resource. A matched instance has
+ * changed if its category, location generalisation or plant pest dates differ. Reasons and remarks are descriptive
+ * and are not compared.
+ */
+public class SensitiveTaxonStoreDiff {
+
+    private final List<SensitiveTaxon> added = new ArrayList<SensitiveTaxon>();
+    private final List<SensitiveTaxon> removed = new ArrayList<SensitiveTaxon>();
+    private final List<TaxonChange> changed = new ArrayList<TaxonChange>();
+
+    private SensitiveTaxonStoreDiff() {
+    }
+
+    /**
+     * @param before The earlier store
+     * @param after The later store
+     * @return The changes that turn the earlier list into the later one
+     */
+    public static SensitiveTaxonStoreDiff compare(SensitiveTaxonStore before, SensitiveTaxonStore after) {
+        Map<String, SensitiveTaxon> beforeTaxa = byName(before);
+        Map<String, SensitiveTaxon> afterTaxa = byName(after);
+        SensitiveTaxonStoreDiff diff = new SensitiveTaxonStoreDiff();
+
+        for (SensitiveTaxon taxon : beforeTaxa.values()) {
+            if (!afterTaxa.containsKey(taxon.getName())) {
+                diff.removed.add(taxon);
+            }
+        }
+        for (SensitiveTaxon taxon : afterTaxa.values()) {
+            SensitiveTaxon previous = beforeTaxa.get(taxon.getName());
+            if (previous == null) {
+                diff.added.add(taxon);
+            } else {
+                TaxonChange change = new TaxonChange(previous, taxon);
+                if (change.isChanged()) {
+                    diff.changed.add(change);
+                }
+            }
+        }
+        return diff;
+    }
+
+    private static Map<String, SensitiveTaxon> byName(SensitiveTaxonStore store) {
+        Map<String, SensitiveTaxon> taxa = new TreeMap<String, SensitiveTaxon>();
+        for (SensitiveTaxon taxon : store.getTaxonList()) {
+            taxa.put(taxon.getName(), taxon);
+        }
+        return taxa;
+    }
+
+    public List<SensitiveTaxon> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    public List<SensitiveTaxon> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    public List<TaxonChange> getChanged() {
+        return Collections.unmodifiableList(changed);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /**
+     * @return The names, and accepted names, of every added, removed or changed taxon
+     */
+    public Set<String> getNames() {
+        Set<String> names = new TreeSet<String>();
+        for (SensitiveTaxon taxon : getTaxa()) {
+            names.add(taxon.getName());
+            if (StringUtils.isNotBlank(taxon.getAcceptedName())) {
+                names.add(taxon.getAcceptedName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return The lsids of every added, removed or changed taxon that has one
+     */
+    public Set<String> getLsids() {
+        Set<String> lsids = new TreeSet<String>();
+        for (SensitiveTaxon taxon : getTaxa()) {
+            if (StringUtils.isNotBlank(taxon.getLsid())) {
+                lsids.add(taxon.getLsid());
+            }
+        }
+        return lsids;
+    }
+
+    private List<SensitiveTaxon> getTaxa() {
+        List<SensitiveTaxon> taxa = new ArrayList<SensitiveTaxon>(added);
+        taxa.addAll(removed);
+        for (TaxonChange change : changed) {
+            taxa.add(change.getBefore());
+            taxa.add(change.getAfter());
+        }
+        return taxa;
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " taxa added, " + removed.size() + " removed and " + changed.size() + " changed";
+    }
+
+    /**
+     * The differences between the versions of a taxon in two lists.
+     */
+    public static class TaxonChange {
+        private final SensitiveTaxon before;
+        private final SensitiveTaxon after;
+        private final List<InstanceChange> instances = new ArrayList<InstanceChange>();
+
+        TaxonChange(SensitiveTaxon before, SensitiveTaxon after) {
+            this.before = before;
+            this.after = after;
+            Map<String, SensitivityInstance> previous = byKey(before.getInstances());
+            for (Map.Entry<String, SensitivityInstance> entry : byKey(after.getInstances()).entrySet()) {
+                InstanceChange change = new InstanceChange(previous.remove(entry.getKey()), entry.getValue());
+                if (change.isChanged()) {
+                    instances.add(change);
+                }
+            }
+            for (SensitivityInstance instance : previous.values()) {
+                instances.add(new InstanceChange(instance, null));
+            }
+        }
+
+        private static Map<String, SensitivityInstance> byKey(List<SensitivityInstance> instances) {
+            Map<String, SensitivityInstance> map = new LinkedHashMap<String, SensitivityInstance>();
+            for (SensitivityInstance instance : instances) {
+                String zone = instance.getZone() == null ? null : instance.getZone().getId();
+                map.put(zone + "|" + StringUtils.lowerCase(instance.getAuthority()) + "|" + StringUtils.lowerCase(instance.getDataResourceId()), instance);
+            }
+            return map;
+        }
+
+        public String getName() {
+            return after.getName();
+        }
+
+        public SensitiveTaxon getBefore() {
+            return before;
+        }
+
+        public SensitiveTaxon getAfter() {
+            return after;
+        }
+
+        public boolean isLsidChanged() {
+            return !StringUtils.equals(before.getLsid(), after.getLsid());
+        }
+
+        /**
+         * @return The instances added, removed or changed
+         */
+        public List<InstanceChange> getInstances() {
+            return Collections.unmodifiableList(instances);
+        }
+
+        /**
+         * @return The ids of the zones of the instances added, removed or changed
+         */
+        public Set<String> getZones() {
+            Set<String> zones = new TreeSet<String>();
+            for (InstanceChange change : instances) {
+                if (change.getZone() != null) {
+                    zones.add(change.getZone().getId());
+                }
+            }
+            return zones;
+        }
+
+        boolean isChanged() {
+            return isLsidChanged() || !instances.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " " + instances;
+        }
+    }
+
+    /**
+     * An instance added, removed or changed. An added instance has no before, a removed one no after.
+     */
+    public static class InstanceChange {
+        private final SensitivityInstance before;
+        private final SensitivityInstance after;
+
+        InstanceChange(SensitivityInstance before, SensitivityInstance after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public SensitivityInstance getBefore() {
+            return before;
+        }
+
+        public SensitivityInstance getAfter() {
+            return after;
+        }
+
+        public SensitivityZone getZone() {
+            return after != null ? after.getZone() : before.getZone();
+        }
+
+        public boolean isAdded() {
+            return before == null;
+        }
+
+        public boolean isRemoved() {
+            return after == null;
+        }
+
+        public boolean isCategoryChanged() {
+            return before != null && after != null && !ObjectUtils.equals(categoryId(before), categoryId(after));
+        }
+
+        public boolean isGeneralisationChanged() {
+            return before != null && after != null && !StringUtils.equals(generalisation(before), generalisation(after));
+        }
+
+        /**
+         * @return True if the plant pest dates, or the kind of instance, differ
+         */
+        public boolean isDatesChanged() {
+            if (before == null || after == null) {
+                return false;
+            }
+            if (before.getClass() != after.getClass()) {
+                return true;
+            }
+            if (before instanceof PlantPestInstance) {
+                PlantPestInstance b = (PlantPestInstance) before;
+                PlantPestInstance a = (PlantPestInstance) after;
+                return !ObjectUtils.equals(b.getFromDate(), a.getFromDate()) || !ObjectUtils.equals(b.getToDate(), a.getToDate());
+            }
+            return false;
+        }
+
+        boolean isChanged() {
+            return isAdded() || isRemoved() || isCategoryChanged() || isGeneralisationChanged() || isDatesChanged();
+        }
+
+        private static String categoryId(SensitivityInstance instance) {
+            return instance.getCategory() == null ? null : instance.getCategory().getId();
+        }
+
+        private static String generalisation(SensitivityInstance instance) {
+            return instance instanceof ConservationInstance ? ((ConservationInstance) instance).getLocationGeneralisation() : null;
+        }
+
+        @Override
+        public String toString() {
+            String zone = getZone() == null ? null : getZone().getId();
+            if (isAdded()) {
+                return "added in " + zone;
+            } else if (isRemoved()) {
+                return "removed from " + zone;
+            }
+            return "changed in " + zone + (isCategoryChanged() ? " category " + categoryId(before) + " to " + categoryId(after) : "")
+                    + (isGeneralisationChanged() ? " generalisation " + generalisation(before) + " to " + generalisation(after) : "")
+                    + (isDatesChanged() ? " dates" : "");
+        }
+    }
+}
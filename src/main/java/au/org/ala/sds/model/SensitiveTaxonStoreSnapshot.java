@@ -0,0 +1,403 @@
+package au.org.ala.sds.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import au.org.ala.names.model.RankType;
+import au.org.ala.names.search.ALANameSearcher;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads and writes a {@link SensitiveTaxonStore} as a compact binary snapshot, so that a matched store can be reloaded
+ * without matching every name again.
+ * <p>
+ * A snapshot starts with a magic number, the format version, and the length and CRC32 checksum of the body. The body
+ * holds a table of every string, the zones and categories the instances refer to, the taxa with their instances, and
+ * the lsid and name indexes. Strings, zones, categories and accepted taxa are written as positions in their tables.
+ * <p>
+ * Zones and categories are resolved through {@link SensitivityZoneFactory} and {@link SensitivityCategoryFactory} on
+ * reading, so the instances share the same objects as a store built from the species list. A file with the wrong magic
+ * number, version, length or checksum is not read, and the caller is expected to rebuild the store.
+ */
+public class SensitiveTaxonStoreSnapshot {
+
+    protected static final Logger logger = Logger.getLogger(SensitiveTaxonStoreSnapshot.class);
+
+    static final int MAGIC = 0x53445353;
+    /** Increment whenever the layout of the body changes */
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 20;
+
+    private static final int NONE = -1;
+    private static final byte SENSITIVITY_INSTANCE = 0;
+    private static final byte CONSERVATION_INSTANCE = 1;
+    private static final byte PLANT_PEST_INSTANCE = 2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Write a snapshot of the store. The snapshot is written to a temporary file which then replaces <code>file</code>,
+     * so a reader never sees a partly written snapshot.
+     */
+    public static void write(SensitiveTaxonStore store, File file) throws IOException {
+        byte[] body = new Writer().write(store);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(body.length);
+            out.writeLong(crc.getValue());
+            out.write(body);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read a snapshot in a single read of the file.
+     *
+     * @param nameSearcher The name searcher used by {@link SensitiveTaxonStore#findByName(String)}, may be null
+     * @return The store, or null if the file is not a snapshot of this version or is damaged
+     */
+    public static SensitiveTaxonStore read(File file, ALANameSearcher nameSearcher) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        if (data.length < HEADER_LENGTH) {
+            logger.warn(file + " is too short to be a species snapshot");
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, 0, HEADER_LENGTH);
+        int magic = header.getInt();
+        int version = header.getInt();
+        int length = header.getInt();
+        long checksum = header.getLong();
+        if (magic != MAGIC) {
+            logger.warn(file + " is not a species snapshot");
+            return null;
+        }
+        if (version != VERSION) {
+            logger.warn(file + " is a version " + version + " species snapshot, expected version " + VERSION);
+            return null;
+        }
+        if (length != data.length - HEADER_LENGTH) {
+            logger.warn(file + " is truncated, expected " + length + " bytes of data but found " + (data.length - HEADER_LENGTH));
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_LENGTH, length);
+        if (crc.getValue() != checksum) {
+            logger.warn(file + " is damaged, the checksum does not match");
+            return null;
+        }
+        return new Reader(new DataInputStream(new ByteArrayInputStream(data, HEADER_LENGTH, length))).read(nameSearcher);
+    }
+
+    private static class Writer {
+        private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        private final Map<SensitivityZone, Integer> zones = new IdentityHashMap<SensitivityZone, Integer>();
+        private final List<SensitivityZone> zoneList = new ArrayList<SensitivityZone>();
+        private final Map<SensitivityCategory, Integer> categories = new IdentityHashMap<SensitivityCategory, Integer>();
+        private final List<SensitivityCategory> categoryList = new ArrayList<SensitivityCategory>();
+
+        byte[] write(SensitiveTaxonStore store) throws IOException {
+            // The taxa are written first, to fill the tables that have to come before them
+            ByteArrayOutputStream taxaBytes = new ByteArrayOutputStream();
+            DataOutputStream taxa = new DataOutputStream(taxaBytes);
+            writeTaxa(taxa, store.getTaxonList());
+            writeIndex(taxa, store.getLsidMap());
+            writeIndex(taxa, store.getNameMap());
+            taxa.flush();
+
+            ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+            DataOutputStream tables = new DataOutputStream(tableBytes);
+            tables.writeInt(zoneList.size());
+            for (SensitivityZone zone : zoneList) {
+                tables.writeInt(string(zone.getId()));
+                tables.writeInt(string(zone.getName()));
+                tables.writeInt(string(zone.getLayerId()));
+                tables.writeByte(zone.getType() == null ? NONE : zone.getType().ordinal());
+            }
+            tables.writeInt(categoryList.size());
+            for (SensitivityCategory category : categoryList) {
+                tables.writeInt(string(category.getId()));
+                tables.writeInt(string(category.getValue()));
+                tables.writeByte(category.getType() == null ? NONE : category.getType().ordinal());
+            }
+            tables.flush();
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream(taxaBytes.size() + tableBytes.size() + strings.size() * 16);
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            tableBytes.writeTo(out);
+            taxaBytes.writeTo(out);
+            out.flush();
+            return body.toByteArray();
+        }
+
+        private void writeTaxa(DataOutputStream out, List<SensitiveTaxon> taxa) throws IOException {
+            Map<SensitiveTaxon, Integer> positions = new IdentityHashMap<SensitiveTaxon, Integer>();
+            for (int i = 0; i < taxa.size(); i++) {
+                positions.put(taxa.get(i), i);
+            }
+            out.writeInt(taxa.size());
+            for (SensitiveTaxon taxon : taxa) {
+                Integer accepted = taxon.getAcceptedTaxon() == null ? null : positions.get(taxon.getAcceptedTaxon());
+                out.writeInt(string(taxon.getName()));
+                out.writeInt(string(taxon.getFamily()));
+                out.writeInt(string(taxon.getCommonName()));
+                out.writeInt(string(taxon.getRank() == null ? null : taxon.getRank().name()));
+                out.writeInt(string(taxon.getAcceptedName()));
+                out.writeInt(string(taxon.getLsid()));
+                out.writeInt(accepted == null ? NONE : accepted);
+                List<SensitivityInstance> instances = taxon.getOwnInstances();
+                out.writeInt(instances.size());
+                for (SensitivityInstance instance : instances) {
+                    writeInstance(out, instance);
+                }
+            }
+        }
+
+        private void writeInstance(DataOutputStream out, SensitivityInstance instance) throws IOException {
+            if (instance instanceof ConservationInstance) {
+                out.writeByte(CONSERVATION_INSTANCE);
+            } else if (instance instanceof PlantPestInstance) {
+                out.writeByte(PLANT_PEST_INSTANCE);
+            } else {
+                out.writeByte(SENSITIVITY_INSTANCE);
+            }
+            out.writeInt(category(instance.getCategory()));
+            out.writeInt(string(instance.getAuthority()));
+            out.writeInt(string(instance.getDataResourceId()));
+            out.writeInt(zone(instance.getZone()));
+            out.writeInt(string(instance.getReason()));
+            out.writeInt(string(instance.getRemarks()));
+            if (instance instanceof ConservationInstance) {
+                out.writeInt(string(((ConservationInstance) instance).getLocationGeneralisation()));
+            } else if (instance instanceof PlantPestInstance) {
+                PlantPestInstance plantPest = (PlantPestInstance) instance;
+                out.writeLong(time(plantPest.getFromDate()));
+                out.writeLong(time(plantPest.getToDate()));
+                List<PlantPestInstance.TransientEvent> events = plantPest.getTransientEventList();
+                out.writeInt(events == null ? NONE : events.size());
+                if (events != null) {
+                    for (PlantPestInstance.TransientEvent event : events) {
+                        out.writeLong(time(event.getEventDate()));
+                        out.writeInt(zone(event.getZone()));
+                    }
+                }
+            }
+        }
+
+        private void writeIndex(DataOutputStream out, Map<String, Integer> index) throws IOException {
+            out.writeInt(index.size());
+            for (Map.Entry<String, Integer> entry : index.entrySet()) {
+                out.writeInt(string(entry.getKey()));
+                out.writeInt(entry.getValue());
+            }
+        }
+
+        private int string(String string) {
+            if (string == null) {
+                return NONE;
+            }
+            Integer position = strings.get(string);
+            if (position == null) {
+                position = strings.size();
+                strings.put(string, position);
+            }
+            return position;
+        }
+
+        private int zone(SensitivityZone zone) {
+            if (zone == null) {
+                return NONE;
+            }
+            Integer position = zones.get(zone);
+            if (position == null) {
+                position = zoneList.size();
+                zones.put(zone, position);
+                zoneList.add(zone);
+            }
+            return position;
+        }
+
+        private int category(SensitivityCategory category) {
+            if (category == null) {
+                return NONE;
+            }
+            Integer position = categories.get(category);
+            if (position == null) {
+                position = categoryList.size();
+                categories.put(category, position);
+                categoryList.add(category);
+            }
+            return position;
+        }
+
+        private static long time(Date date) {
+            return date == null ? NO_DATE : date.getTime();
+        }
+    }
+
+    private static class Reader {
+        private final DataInputStream in;
+        private String[] strings;
+        private SensitivityZone[] zones;
+        private SensitivityCategory[] categories;
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        SensitiveTaxonStore read(ALANameSearcher nameSearcher) throws IOException {
+            strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            zones = new SensitivityZone[in.readInt()];
+            for (int i = 0; i < zones.length; i++) {
+                String id = string();
+                String name = string();
+                String layerId = string();
+                int type = in.readByte();
+                SensitivityZone zone = id == null ? null : SensitivityZoneFactory.getZone(id);
+                zones[i] = zone != null ? zone : new SensitivityZone(id, name, layerId, type == NONE ? null : SensitivityZone.ZoneType.values()[type]);
+            }
+
+            categories = new SensitivityCategory[in.readInt()];
+            for (int i = 0; i < categories.length; i++) {
+                String id = string();
+                String value = string();
+                int type = in.readByte();
+                SensitivityCategory category;
+                if (SensitivityCategory.DEFAULT_CATEGORY.getId().equals(id)) {
+                    category = SensitivityCategory.DEFAULT_CATEGORY;
+                } else {
+                    category = SensitivityCategoryFactory.getCategory(id);
+                }
+                categories[i] = category != null ? category : new SensitivityCategory(id, value, type == NONE ? null : SensitivityCategory.CategoryType.values()[type]);
+            }
+
+            int count = in.readInt();
+            List<SensitiveTaxon> taxa = new ArrayList<SensitiveTaxon>(count);
+            int[] accepted = new int[count];
+            for (int i = 0; i < count; i++) {
+                String name = string();
+                String family = string();
+                String commonName = string();
+                String rank = string();
+                SensitiveTaxon taxon = new SensitiveTaxon(name, rank == null ? null : RankType.valueOf(rank));
+                taxon.setFamily(family);
+                taxon.setCommonName(commonName);
+                taxon.setAcceptedName(string());
+                taxon.setLsid(string());
+                accepted[i] = in.readInt();
+                int instances = in.readInt();
+                for (int j = 0; j < instances; j++) {
+                    taxon.getOwnInstances().add(readInstance());
+                }
+                taxa.add(taxon);
+            }
+            for (int i = 0; i < count; i++) {
+                if (accepted[i] != NONE) {
+                    taxa.get(i).setAcceptedTaxon(taxa.get(accepted[i]));
+                }
+            }
+
+            Map<String, Integer> lsidMap = readIndex();
+            Map<String, Integer> nameMap = readIndex();
+            return new SensitiveTaxonStore(taxa, lsidMap, nameMap, nameSearcher);
+        }
+
+        private SensitivityInstance readInstance() throws IOException {
+            byte kind = in.readByte();
+            SensitivityCategory category = category();
+            String authority = string();
+            String dataResourceId = string();
+            SensitivityZone zone = zone();
+            String reason = string();
+            String remarks = string();
+            switch (kind) {
+                case CONSERVATION_INSTANCE:
+                    return new ConservationInstance(category, authority, dataResourceId, zone, reason, remarks, string());
+                case PLANT_PEST_INSTANCE:
+                    SensitivityInstance common = new SensitivityInstance(category, authority, dataResourceId, zone, reason, remarks);
+                    PlantPestInstance plantPest = new PlantPestInstance(common, date(), date());
+                    int events = in.readInt();
+                    for (int i = 0; i < events; i++) {
+                        plantPest.addTransientEvent(date(), zone());
+                    }
+                    return plantPest;
+                case SENSITIVITY_INSTANCE:
+                    return new SensitivityInstance(category, authority, dataResourceId, zone, reason, remarks);
+                default:
+                    throw new IOException("Unknown instance type " + kind);
+            }
+        }
+
+        private Map<String, Integer> readIndex() throws IOException {
+            int size = in.readInt();
+            Map<String, Integer> index = new HashMap<String, Integer>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                String key = string();
+                index.put(key, in.readInt());
+            }
+            return index;
+        }
+
+        private String string() throws IOException {
+            int position = in.readInt();
+            return position == NONE ? null : strings[position];
+        }
+
+        private SensitivityZone zone() throws IOException {
+            int position = in.readInt();
+            return position == NONE ? null : zones[position];
+        }
+
+        private SensitivityCategory category() throws IOException {
+            int position = in.readInt();
+            return position == NONE ? null : categories[position];
+        }
+
+        private Date date() throws IOException {
+            long time = in.readLong();
+            return time == NO_DATE ? null : new Date(time);
+        }
+    }
+}
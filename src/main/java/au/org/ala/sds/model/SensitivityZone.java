@@ -54,6 +54,8 @@ public class SensitivityZone implements Serializable {
     private final String name;
     private final String layerId;   //the layer used to identify a layer
     private final ZoneType type;
+    /** The position of the zone in the loaded zones, see {@link ZoneSet} */
+    private transient int ordinal = -1;
 
     final static Map<String,String> countryCodes = new HashMap<String,String>();
 
@@ -86,6 +88,14 @@ public class SensitivityZone implements Serializable {
         return type;
     }
 
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     @Override
     public int hashCode() {
         return new HashCodeBuilder(17, 37).
@@ -123,6 +133,9 @@ public class SensitivityZone implements Serializable {
     }
 
     public static boolean isInAustralia(List<SensitivityZone> zones) {
+        if (zones instanceof ZoneSet) {
+            return ((ZoneSet) zones).isInAustralia();
+        }
         for (SensitivityZone zone : zones) {
             if (zone.equals(SensitivityZoneFactory.getZone(AUS)) || zone.getType() == ZoneType.STATE) {
                 return true;
@@ -136,6 +149,9 @@ public class SensitivityZone implements Serializable {
     }
 
     public static boolean isExternalTerritory(List<SensitivityZone> zones) {
+        if (zones instanceof ZoneSet) {
+            return ((ZoneSet) zones).isExternalTerritory();
+        }
         for (SensitivityZone zone : zones) {
             if (zone.getType() == ZoneType.EXTERNAL_TERRITORY) {
                 return true;
@@ -145,6 +161,9 @@ public class SensitivityZone implements Serializable {
     }
 
     public static boolean isInTorresStrait(List<SensitivityZone> zones) {
+        if (zones instanceof ZoneSet) {
+            return ((ZoneSet) zones).isInTorresStrait();
+        }
         for (SensitivityZone zone : zones) {
             if (zone.equals(SensitivityZoneFactory.getZone(TSPZ)) || zone.equals(SensitivityZoneFactory.getZone(TSSQZ))) {
                 return true;
@@ -158,6 +177,9 @@ public class SensitivityZone implements Serializable {
     }
 
     public static boolean isNotInAustralia(List<SensitivityZone> zones) {
+        if (zones instanceof ZoneSet) {
+            return ((ZoneSet) zones).isNotInAustralia();
+        }
         for (SensitivityZone zone : zones) {
             if (zone.equals(SensitivityZoneFactory.getZone(NOTAUS))) {
                 return true;
@@ -180,6 +202,8 @@ public class SensitivityZone implements Serializable {
 
     public static String getZoneDescriptions(List<SensitivityZone> zones) {
         StringBuffer buff = new StringBuffer();
+        // Sort a copy, the list may be shared or immutable
+        zones = new ArrayList<SensitivityZone>(zones);
         Collections.sort(zones, new Comparator<SensitivityZone>(){
 
             @Override
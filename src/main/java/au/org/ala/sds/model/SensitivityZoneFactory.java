@@ -9,10 +9,19 @@ import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -33,28 +42,70 @@ public class SensitivityZoneFactory {
 
     private static final String ZONES_RESOURCE = "sensitivity-zones.xml";
 
-    private static Map<String, SensitivityZone> zones;
+    /** Zone sets are interned, up to this many */
+    private static final int MAX_ZONE_SETS = 10000;
 
-    private static Map<String, SensitivityZone> pidToZoneMap;
+    /** The loaded zones, replaced as a whole so that readers never see part of a load */
+    private static volatile Zones loaded;
+
+    /** Names that match no zone are reported at most this often */
+    private static final long MISS_REPORT_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private static final AtomicLong nameMisses = new AtomicLong();
+    private static final AtomicLong unreportedMisses = new AtomicLong();
+    private static final AtomicLong lastMissReport = new AtomicLong(System.nanoTime() - MISS_REPORT_INTERVAL);
 
     public static SensitivityZone getZone(String key) {
-        if (zones == null) {
-            initZones();
-        }
-        return zones.get(key.toUpperCase());
+        return getZones().byId.get(key.toUpperCase());
     }
 
+    /**
+     * Get the zone with a name or id, ignoring case and surrounding white space.
+     * <p>
+     * Names that match no zone are counted and reported in a periodic warning, rather than one warning each.
+     */
     public static SensitivityZone getZoneByName(String name) {
-        if (zones == null) {
-            initZones();
+        SensitivityZone zone = lookupZoneByName(name);
+        if (zone == null) {
+            reportMiss(name);
         }
-        for (SensitivityZone sz : zones.values()) {
-            if (sz.getName().equalsIgnoreCase(name) || sz.getId().equalsIgnoreCase(name)) {
-                return sz;
+        return zone;
+    }
+
+    /**
+     * Get the zone with a name or id, ignoring case and surrounding white space, for callers that expect names that
+     * are not zones. A name that matches no zone is not reported.
+     */
+    public static SensitivityZone lookupZoneByName(String name) {
+        return name == null ? null : getZones().nameIndex.get(normalise(name));
+    }
+
+    /**
+     * @return The number of names given to {@link #getZoneByName(String)} that matched no zone
+     */
+    public static long getZoneNameMisses() {
+        return nameMisses.get();
+    }
+
+    private static void reportMiss(String name) {
+        nameMisses.incrementAndGet();
+        unreportedMisses.incrementAndGet();
+        long now = System.nanoTime();
+        long last = lastMissReport.get();
+        if (now - last >= MISS_REPORT_INTERVAL && lastMissReport.compareAndSet(last, now)) {
+            long unreported = unreportedMisses.getAndSet(0);
+            if (unreported > 1) {
+                logger.warn("No sensitivity zone matches " + name + ", " + unreported + " names have matched no zone since the last report");
+            } else {
+                logger.warn("No sensitivity zone matches " + name);
             }
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("No sensitivity zone matches " + name);
         }
-        logger.warn("No sensitivity zone matches " + name);
-        return null;
+    }
+
+    private static String normalise(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
     }
 
     public static SensitivityZone findZone(String nameOrId){
@@ -65,9 +116,79 @@ public class SensitivityZoneFactory {
     }
 
 
-    private static void initZones() {
+    /**
+     * Get the interned set of the supplied zones. Nulls, and zones that have not been loaded, are left out.
+     */
+    public static ZoneSet getZoneSet(Collection<? extends SensitivityZone> zoneList) {
+        // The registry, the ordinals and the intern map all come from the same load
+        Zones zones = getZones();
+        SensitivityZone[] registry = zones.ordinals;
+        long[] bits = new long[(registry.length + 63) >>> 6];
+        for (SensitivityZone zone : zoneList) {
+            int ordinal = zones.getOrdinal(zone);
+            if (ordinal >= 0) {
+                bits[ordinal >>> 6] |= 1L << ordinal;
+            }
+        }
+        Bits key = new Bits(bits);
+        ZoneSet zoneSet = zones.zoneSets.get(key);
+        if (zoneSet == null) {
+            zoneSet = new ZoneSet(registry, bits);
+            if (zones.zoneSets.size() < MAX_ZONE_SETS) {
+                ZoneSet interned = zones.zoneSets.putIfAbsent(key, zoneSet);
+                if (interned != null) {
+                    zoneSet = interned;
+                }
+            }
+        }
+        return zoneSet;
+    }
+
+    /**
+     * @return The loaded zones, by ordinal
+     */
+    static SensitivityZone[] getRegistry() {
+        return getZones().ordinals;
+    }
+
+    /**
+     * @param registry Zones by ordinal, from {@link #getRegistry()}
+     * @return The ordinal in the registry of the zone with the same id as the zone, -1 if there is none
+     */
+    static int getOrdinal(SensitivityZone[] registry, SensitivityZone zone) {
+        Zones zones = getZones();
+        if (zones.ordinals == registry) {
+            return zones.getOrdinal(zone);
+        }
+        // The zones have been reloaded since the registry was taken
+        if (zone != null) {
+            for (int i = 0; i < registry.length; i++) {
+                if (registry[i] == zone || registry[i].getId().equals(zone.getId())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static Zones getZones() {
+        Zones zones = loaded;
+        if (zones == null) {
+            synchronized (SensitivityZoneFactory.class) {
+                zones = loaded;
+                if (zones == null) {
+                    zones = loadZones();
+                    loaded = zones;
+                }
+            }
+        }
+        return zones;
+    }
+
+    private static Zones loadZones() {
 
-        zones = new HashMap<String, SensitivityZone>();
+        Map<String, SensitivityZone> zoneMap = new HashMap<String, SensitivityZone>();
+        List<SensitivityZone> read = new ArrayList<SensitivityZone>();
 
         try {
             SAXBuilder builder = new SAXBuilder();
@@ -78,11 +199,29 @@ public class SensitivityZoneFactory {
             for (Iterator sli = zonesList.iterator(); sli.hasNext(); ) {
                 Element sze = (Element) sli.next();
                 SensitivityZone sz = createSensitiveZone(sze);
-                zones.put(sz.getId(), sz);
+                SensitivityZone previous = zoneMap.put(sz.getId(), sz);
+                if (previous != null) {
+                    read.remove(previous);
+                }
+                read.add(sz);
             }
         } catch (Exception e){
             throw new RuntimeException("Unable to load zone information.", e);
         }
+
+        SensitivityZone[] registry = read.toArray(new SensitivityZone[read.size()]);
+        Map<String, SensitivityZone> index = new HashMap<String, SensitivityZone>();
+        for (int i = 0; i < registry.length; i++) {
+            registry[i].setOrdinal(i);
+            index.put(normalise(registry[i].getId()), registry[i]);
+        }
+        // A name takes precedence over an id that happens to be the same
+        for (SensitivityZone zone : registry) {
+            if (zone.getName() != null) {
+                index.put(normalise(zone.getName()), zone);
+            }
+        }
+        return new Zones(zoneMap, registry, index);
     }
 
     private static InputStream getZonesInputStream(){
@@ -115,6 +254,62 @@ public class SensitivityZoneFactory {
     }
 
     public static void reset(){
-       zones = null;
+        synchronized (SensitivityZoneFactory.class) {
+            loaded = null;
+        }
+    }
+
+    /**
+     * One load of the zones. Nothing is changed once it is published, other than interning zone sets.
+     */
+    private static final class Zones {
+        private final Map<String, SensitivityZone> byId;
+        /** The zones by the ordinal given to each as it was read */
+        private final SensitivityZone[] ordinals;
+        /** The zones by trimmed, lower case name and id */
+        private final Map<String, SensitivityZone> nameIndex;
+        private final ConcurrentMap<Bits, ZoneSet> zoneSets = new ConcurrentHashMap<Bits, ZoneSet>();
+
+        private Zones(Map<String, SensitivityZone> byId, SensitivityZone[] ordinals, Map<String, SensitivityZone> nameIndex) {
+            this.byId = Collections.unmodifiableMap(byId);
+            this.ordinals = ordinals;
+            this.nameIndex = Collections.unmodifiableMap(nameIndex);
+        }
+
+        private int getOrdinal(SensitivityZone zone) {
+            if (zone == null) {
+                return -1;
+            }
+            int ordinal = zone.getOrdinal();
+            if (ordinal >= 0 && ordinal < ordinals.length && ordinals[ordinal] == zone) {
+                return ordinal;
+            }
+            // Not one of these zones, so find the zone with the same id
+            SensitivityZone same = byId.get(zone.getId());
+            return same == null ? -1 : same.getOrdinal();
+        }
+    }
+
+    /**
+     * The bits of a zone set, as a key for interning.
+     */
+    private static final class Bits {
+        private final long[] bits;
+        private final int hash;
+
+        private Bits(long[] bits) {
+            this.bits = bits;
+            this.hash = Arrays.hashCode(bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Bits && Arrays.equals(bits, ((Bits) o).bits);
+        }
     }
 }
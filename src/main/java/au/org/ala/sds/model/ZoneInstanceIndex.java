@@ -0,0 +1,120 @@
+package au.org.ala.sds.model;
+
+import java.util.List;
+
+/**
+ * The sensitivity instances of a taxon by zone, so that the instances that apply in a {@link ZoneSet} can be found
+ * without walking the instances for each record.
+ * <p>
+ * Each instance is a bit, and each loaded zone has a mask of the instances in that zone. An instance in Australia also
+ * applies anywhere in Australia. The instances for a set of zones are the union of the masks of its zones. For taxa
+ * with few instances the results are kept by mask, so a record costs a few array lookups.
+ */
+final class ZoneInstanceIndex {
+
+    /** The most instances that fit in a mask */
+    private static final int MAX_INSTANCES = 64;
+
+    /** Results are kept for every mask of a taxon with up to this many instances */
+    private static final int MAX_KEPT_INSTANCES = 8;
+
+    private final List<SensitivityInstance> source;
+    private final int sourceSize;
+    private final SensitivityZone[] registry;
+    private final SensitivityInstance[] instances;
+    private final long[] zoneMasks;
+    private final long australiaMask;
+    private final ZoneInstances[] results;
+
+    private ZoneInstanceIndex(List<SensitivityInstance> source) {
+        this.source = source;
+        this.sourceSize = source.size();
+        this.registry = SensitivityZoneFactory.getRegistry();
+        if (sourceSize > MAX_INSTANCES) {
+            this.instances = null;
+            this.zoneMasks = null;
+            this.australiaMask = 0;
+            this.results = null;
+            return;
+        }
+        this.instances = source.toArray(new SensitivityInstance[sourceSize]);
+        this.zoneMasks = new long[registry.length];
+        long australiaMask = 0;
+        for (int i = 0; i < instances.length; i++) {
+            SensitivityInstance si = instances[i];
+            SensitivityZone zone = si == null ? null : si.getZone();
+            if (zone == null) {
+                continue;
+            }
+            int ordinal = SensitivityZoneFactory.getOrdinal(registry, zone);
+            if (ordinal >= 0) {
+                zoneMasks[ordinal] |= 1L << i;
+            }
+            if (SensitivityZone.AUS.equals(zone.getId())) {
+                australiaMask |= 1L << i;
+            }
+        }
+        this.australiaMask = australiaMask;
+        this.results = sourceSize <= MAX_KEPT_INSTANCES ? new ZoneInstances[1 << sourceSize] : null;
+    }
+
+    static ZoneInstanceIndex build(List<SensitivityInstance> instances) {
+        return new ZoneInstanceIndex(instances);
+    }
+
+    /**
+     * @return True if the index was built from this list of instances, in its current size, and the current zones
+     */
+    boolean isCurrent(List<SensitivityInstance> instances) {
+        return instances == source && instances.size() == sourceSize && registry == SensitivityZoneFactory.getRegistry();
+    }
+
+    /**
+     * Get the instances that apply in the zones.
+     *
+     * @param excludedAuthority Leave out the instances of this authority, ignoring case, null to keep them all
+     * @return The matching instances, or null if the zone set is not from the indexed zones or the taxon has too many
+     * instances to index
+     */
+    ZoneInstances match(ZoneSet zones, String excludedAuthority) {
+        if (instances == null || zones.getRegistry() != registry) {
+            return null;
+        }
+        long mask = zones.isInAustralia() ? australiaMask : 0;
+        for (int i = 0; i < zones.size(); i++) {
+            mask |= zoneMasks[zones.get(i).getOrdinal()];
+        }
+        if (excludedAuthority != null && mask != 0) {
+            mask &= ~authorityMask(excludedAuthority);
+        }
+        if (results == null) {
+            return create(mask);
+        }
+        ZoneInstances result = results[(int) mask];
+        if (result == null) {
+            result = create(mask);
+            results[(int) mask] = result;
+        }
+        return result;
+    }
+
+    private long authorityMask(String authority) {
+        long mask = 0;
+        for (int i = 0; i < instances.length; i++) {
+            if (instances[i] != null && authority.equalsIgnoreCase(instances[i].getAuthority())) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private ZoneInstances create(long mask) {
+        SensitivityInstance[] matched = new SensitivityInstance[Long.bitCount(mask)];
+        int n = 0;
+        while (mask != 0) {
+            matched[n++] = instances[Long.numberOfTrailingZeros(mask)];
+            mask &= mask - 1;
+        }
+        return new ZoneInstances(matched);
+    }
+}
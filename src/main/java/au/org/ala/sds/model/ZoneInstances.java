@@ -0,0 +1,62 @@
+package au.org.ala.sds.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sensitivity instances of a taxon that apply in a set of zones, with the conservation instance whose location
+ * generalisation is used.
+ */
+public final class ZoneInstances {
+
+    private final SensitivityInstance[] instances;
+    private final ConservationInstance generalisingInstance;
+
+    ZoneInstances(SensitivityInstance[] instances) {
+        this.instances = instances;
+        this.generalisingInstance = getGeneralisingInstance(instances);
+    }
+
+    ZoneInstances(List<SensitivityInstance> instances) {
+        this(instances.toArray(new SensitivityInstance[instances.size()]));
+    }
+
+    /**
+     * Find the conservation instance with the largest generalisation. On a tie the later instance is taken.
+     */
+    private static ConservationInstance getGeneralisingInstance(SensitivityInstance[] instances) {
+        ConservationInstance selected = null;
+        int selectedMetres = 0;
+        for (SensitivityInstance si : instances) {
+            if (si instanceof ConservationInstance) {
+                ConservationInstance ci = (ConservationInstance) si;
+                Generalisation generalisation = ci.getGeneralisation();
+                int metres = generalisation == null ? 0 : generalisation.getMetres();
+                if (selected == null || metres >= selectedMetres) {
+                    selected = ci;
+                    selectedMetres = metres;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return A new list of the instances, in the order they are held by the taxon
+     */
+    public List<SensitivityInstance> getInstances() {
+        return new ArrayList<SensitivityInstance>(Arrays.asList(instances));
+    }
+
+    /**
+     * @return The conservation instance with the largest location generalisation, null if there is none
+     */
+    public ConservationInstance getGeneralisingInstance() {
+        return generalisingInstance;
+    }
+
+    public boolean isEmpty() {
+        return instances.length == 0;
+    }
+}
@@ -0,0 +1,199 @@
+package au.org.ala.sds.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * An immutable set of sensitivity zones, listed in the order the zones were loaded.
+ * <p>
+ * {@link SensitivityZoneFactory} gives each zone an ordinal as it is loaded, and a zone set is a bit for each ordinal.
+ * Membership is a single bit test, and whether the set holds a state, an external territory, a quarantine zone and so
+ * on is worked out once, when the set is made. Sets are interned, so the few combinations of zones that records fall
+ * in are shared rather than rebuilt for each record.
+ * <p>
+ * A zone set is a {@link List}, so it can be passed to the rules and helpers that take a list of zones.
+ */
+public final class ZoneSet extends AbstractList<SensitivityZone> implements RandomAccess {
+
+    private static final int AUSTRALIA = 1;
+    private static final int NOT_AUSTRALIA = 1 << 1;
+    private static final int STATE = 1 << 2;
+    private static final int EXTERNAL_TERRITORY = 1 << 3;
+    private static final int QUARANTINE_ZONE = 1 << 4;
+    private static final int TORRES_STRAIT = 1 << 5;
+
+    private final SensitivityZone[] registry;
+    private final long[] bits;
+    private final SensitivityZone[] zones;
+    private final int flags;
+    private final int hash;
+
+    /**
+     * @param registry The loaded zones, by ordinal
+     * @param bits A bit for the ordinal of each zone in the set
+     */
+    ZoneSet(SensitivityZone[] registry, long[] bits) {
+        this.registry = registry;
+        this.bits = bits;
+        int size = 0;
+        for (long word : bits) {
+            size += Long.bitCount(word);
+        }
+        this.zones = new SensitivityZone[size];
+        int flags = 0;
+        int n = 0;
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                SensitivityZone zone = registry[(i << 6) + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+                zones[n++] = zone;
+                flags |= flagsOf(zone);
+            }
+        }
+        this.flags = flags;
+        this.hash = super.hashCode();
+    }
+
+    /**
+     * Get the set of zones in a collection. Nulls, and zones the factory does not know, are left out.
+     */
+    public static ZoneSet of(Collection<? extends SensitivityZone> zones) {
+        return SensitivityZoneFactory.getZoneSet(zones);
+    }
+
+    /**
+     * Get the set of zones from a string of zone ids, either bare or as written by {@link #toString()}.
+     */
+    public static ZoneSet valueOf(String string) {
+        List<SensitivityZone> zones = new ArrayList<SensitivityZone>();
+        if (StringUtils.isNotBlank(string)) {
+            String list = string.indexOf('[') >= 0 ? StringUtils.substringBetween(string, "[", "]") : string;
+            String[] ids = StringUtils.split(list, ',');
+            if (ids != null) {
+                for (String id : ids) {
+                    String key = StringUtils.strip(id);
+                    if (StringUtils.isNotEmpty(key)) {
+                        zones.add(SensitivityZoneFactory.getZone(key));
+                    }
+                }
+            }
+        }
+        return of(zones);
+    }
+
+    private static int flagsOf(SensitivityZone zone) {
+        int flags = 0;
+        if (zone.getType() == SensitivityZone.ZoneType.STATE) {
+            flags |= STATE | AUSTRALIA;
+        } else if (zone.getType() == SensitivityZone.ZoneType.EXTERNAL_TERRITORY) {
+            flags |= EXTERNAL_TERRITORY;
+        } else if (zone.getType() == SensitivityZone.ZoneType.QUARANTINE_ZONE) {
+            flags |= QUARANTINE_ZONE;
+        }
+        String id = zone.getId();
+        if (SensitivityZone.AUS.equals(id)) {
+            flags |= AUSTRALIA;
+        } else if (SensitivityZone.NOTAUS.equals(id)) {
+            flags |= NOT_AUSTRALIA;
+        } else if (SensitivityZone.TSPZ.equals(id) || SensitivityZone.TSSQZ.equals(id)) {
+            flags |= TORRES_STRAIT;
+        }
+        return flags;
+    }
+
+    /**
+     * @return True if the set has Australia or an Australian state
+     */
+    public boolean isInAustralia() {
+        return (flags & AUSTRALIA) != 0;
+    }
+
+    /**
+     * @return True if the set has the zone for outside Australia
+     */
+    public boolean isNotInAustralia() {
+        return (flags & NOT_AUSTRALIA) != 0;
+    }
+
+    /**
+     * @return True if the set has a state
+     */
+    public boolean hasState() {
+        return (flags & STATE) != 0;
+    }
+
+    /**
+     * @return True if the set has an external territory
+     */
+    public boolean isExternalTerritory() {
+        return (flags & EXTERNAL_TERRITORY) != 0;
+    }
+
+    /**
+     * @return True if the set has a quarantine zone
+     */
+    public boolean hasQuarantineZone() {
+        return (flags & QUARANTINE_ZONE) != 0;
+    }
+
+    /**
+     * @return True if the set has either of the Torres Strait zones
+     */
+    public boolean isInTorresStrait() {
+        return (flags & TORRES_STRAIT) != 0;
+    }
+
+    /**
+     * @return The loaded zones the set was made from, by ordinal
+     */
+    SensitivityZone[] getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public SensitivityZone get(int index) {
+        return zones[index];
+    }
+
+    @Override
+    public int size() {
+        return zones.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof SensitivityZone)) {
+            return false;
+        }
+        SensitivityZone zone = (SensitivityZone) o;
+        int ordinal = zone.getOrdinal();
+        if (ordinal >= 0 && ordinal < registry.length && registry[ordinal] == zone) {
+            return (bits[ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+        // A zone that was not loaded by the factory, zones are equal by id
+        return super.contains(o);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof ZoneSet && ((ZoneSet) o).registry == registry) {
+            return Arrays.equals(bits, ((ZoneSet) o).bits);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
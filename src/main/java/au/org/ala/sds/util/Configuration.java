@@ -135,6 +135,94 @@ public class Configuration {
         return config.getProperty("list.tool.url", "https://lists.ala.org.au");
     }
 
+    public int getBatchThreads() {
+        return getInt("sds.batch.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getBatchSize() {
+        return getInt("sds.batch.size", 1000);
+    }
+
+    public int getLayersServiceThreads() {
+        return getInt("sds.layers.service.threads", 8);
+    }
+
+    public int getLayersServiceConnectTimeout() {
+        return getInt("sds.layers.service.connect.timeout", 5000);
+    }
+
+    public int getLayersServiceReadTimeout() {
+        return getInt("sds.layers.service.read.timeout", 30000);
+    }
+
+    public int getZoneCacheSize() {
+        return getInt("sds.zone.cache.size", 10000);
+    }
+
+    /**
+     * @return The time in seconds between checks for a new species list by a reloading finder
+     */
+    public int getSpeciesReloadInterval() {
+        return getInt("sds.species.reload.interval", 3600);
+    }
+
+    public int getNameMatchingThreads() {
+        return getInt("sds.name.matching.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getNameCacheSize() {
+        return getInt("sds.name.cache.size", 100000);
+    }
+
+    /**
+     * @return The time to live of name cache entries in seconds, zero or less for no expiry
+     */
+    public int getNameCacheTtl() {
+        return getInt("sds.name.cache.ttl", 3600);
+    }
+
+    public String getRulesDir() {
+        return config.getProperty("sds.rules.dir", "");
+    }
+
+    public boolean isRulesPrecompiled() {
+        return config.getProperty("sds.rules.precompiled", "true").equalsIgnoreCase("true");
+    }
+
+    public boolean isRulesSessionReuse() {
+        return config.getProperty("sds.rules.session.reuse", "false").equalsIgnoreCase("true");
+    }
+
+    public boolean isRulesMerged() {
+        return config.getProperty("sds.rules.merged", "false").equalsIgnoreCase("true");
+    }
+
+    /**
+     * @return True if plant pest records are validated by the Java translation of the rules rather than Drools
+     */
+    public boolean isPlantPestJavaEngine() {
+        return getPlantPestEngine().trim().equalsIgnoreCase("java");
+    }
+
+    /**
+     * @return The plant pest engine, drools or java (sds.plantpest.engine)
+     */
+    public String getPlantPestEngine() {
+        return config.getProperty("sds.plantpest.engine", "drools");
+    }
+
+    public void setPlantPestEngine(String engine) {
+        config.setProperty("sds.plantpest.engine", engine);
+    }
+
+    public String getSpatialLayersDir() {
+        return config.getProperty("sds.spatial.layers.dir", "");
+    }
+
+    public String getSpatialLayersNameProperty() {
+        return config.getProperty("sds.spatial.layers.property", "name");
+    }
+
     public List<String> getGeospatialLayers() {
         return spatialLayers;
     }
@@ -142,4 +230,17 @@ public class Configuration {
     public void setSpatialLayers(List<String> spatialLayers) {
         this.spatialLayers = spatialLayers;
     }
+
+    private int getInt(String field, int defaultValue) {
+        String value = config.getProperty(field);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '" + value + "' for " + field + ". Using " + defaultValue);
+            return defaultValue;
+        }
+    }
 }
@@ -15,11 +15,14 @@
 package au.org.ala.sds.util;
 
 import java.math.BigDecimal;
+import java.text.DecimalFormatSymbols;
 import java.util.List;
+import java.util.Locale;
 
 import org.apache.commons.lang.StringUtils;
 
 import au.org.ala.sds.model.ConservationInstance;
+import au.org.ala.sds.model.Generalisation;
 import au.org.ala.sds.model.SensitivityInstance;
 import au.org.ala.sds.model.SensitivityZone;
 import au.org.ala.sds.validation.MessageFactory;
@@ -33,6 +36,7 @@ public class GeneralisedLocation {
     private final List<SensitivityZone> zones;
     private final List<SensitivityInstance> instances;
     private final String locationGeneralisation;
+    private final Generalisation generalisation;
     private String generalisedLatitude;
     private String generalisedLongitude;
     private String generalisationInMetres;
@@ -41,11 +45,20 @@ public class GeneralisedLocation {
     private boolean sensitive;
 
     public GeneralisedLocation(String latitude, String longitude, List<SensitivityInstance> instances, List<SensitivityZone> zones) {
+        this(latitude, longitude, instances, zones, getGeneralisingInstance(instances, zones));
+    }
+
+    /**
+     * @param generalisingInstance The instance, of those that apply in the zones, with the largest generalisation
+     */
+    public GeneralisedLocation(String latitude, String longitude, List<SensitivityInstance> instances, List<SensitivityZone> zones,
+                               ConservationInstance generalisingInstance) {
         this.originalLatitude = latitude;
         this.originalLongitude = longitude;
         this.zones = zones;
         this.instances = instances;
-        this.locationGeneralisation = getLocationGeneralisation();
+        this.locationGeneralisation = generalisingInstance == null ? null : generalisingInstance.getLocationGeneralisation();
+        this.generalisation = generalisingInstance == null ? null : generalisingInstance.getGeneralisation();
         this.sensitive = true;
         generaliseCoordinates();
     }
@@ -116,60 +129,24 @@ public class GeneralisedLocation {
             return;
         }
 
-        if (this.locationGeneralisation.equalsIgnoreCase("WITHHOLD")) {
+        if (this.generalisation == null) {
+            generalisedLatitude = originalLatitude;
+            generalisedLongitude = originalLongitude;
+            description = "Location not generalised the severity of generalisation is not specified or is unrecognised.";
+            sensitive = false;
+        } else if (this.generalisation == Generalisation.WITHHOLD) {
             generalisedLatitude = "";
             generalisedLongitude = "";
             description = MessageFactory.getMessageText(MessageFactory.LOCATION_WITHHELD);
-        } else if (this.locationGeneralisation.equalsIgnoreCase("100km") || this.locationGeneralisation.equalsIgnoreCase("50km")) {
-            generaliseCoordinates(0);
-            if (this.locationGeneralisation.equalsIgnoreCase("50km")){
-                generalisationToApplyInMetres = "50000";
-            } else {
-                generalisationToApplyInMetres = "100000";
-            }
-            if (isGeneralised()) {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "1.0");
-                generalisationInMetres = generalisationToApplyInMetres;
-            } else {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_ALREADY_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "1.0");
-            }
-        } else if (this.locationGeneralisation.equalsIgnoreCase("10km")) {
-            generaliseCoordinates(1);
-            generalisationToApplyInMetres = "10000";
-            if (isGeneralised()) {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "0.1");
-                generalisationInMetres = generalisationToApplyInMetres;
-            } else {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_ALREADY_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "0.1");
-            }
-        } else if (this.locationGeneralisation.equalsIgnoreCase("1km") || this.locationGeneralisation.equalsIgnoreCase("2km")) {
-            generaliseCoordinates(2);
-            if (this.locationGeneralisation.equalsIgnoreCase("2km")){
-                generalisationToApplyInMetres = "2000";
-            } else {
-                generalisationToApplyInMetres = "1000";
-            }
-
-            if (isGeneralised()) {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "0.01");
-                generalisationInMetres = generalisationToApplyInMetres;
-            } else {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_ALREADY_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "0.01");
-            }
-        } else if (this.locationGeneralisation.equalsIgnoreCase("100m")) {
-            generaliseCoordinates(3);
-            generalisationToApplyInMetres = "100";
+        } else {
+            generaliseCoordinates(generalisation.getDecimalPlaces());
+            generalisationToApplyInMetres = generalisation.getMetresText();
             if (isGeneralised()) {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "0.001");
+                description = MessageFactory.getMessageText(MessageFactory.LOCATION_GENERALISED, SensitivityZone.getZoneDescriptions(zones), generalisation.getDegrees());
                 generalisationInMetres = generalisationToApplyInMetres;
             } else {
-                description = MessageFactory.getMessageText(MessageFactory.LOCATION_ALREADY_GENERALISED, SensitivityZone.getZoneDescriptions(zones), "0.001");
+                description = MessageFactory.getMessageText(MessageFactory.LOCATION_ALREADY_GENERALISED, SensitivityZone.getZoneDescriptions(zones), generalisation.getDegrees());
             }
-        } else {
-            generalisedLatitude = originalLatitude;
-            generalisedLongitude = originalLongitude;
-            description = "Location not generalised the severity of generalisation is not specified or is unrecognised.";
-            sensitive = false;
         }
     }
 
@@ -182,64 +159,133 @@ public class GeneralisedLocation {
         generalisedLongitude = round(originalLongitude, decimalPlaces);
     }
 
-    private String round(String number, int decimalPlaces) {
+    /**
+     * Round a coordinate to a number of decimal places, half up, as <code>String.format("%.nf")</code> does for the
+     * coordinate as a BigDecimal. A coordinate that already has no more decimal places is returned as it is.
+     * <p>
+     * A plain decimal is rounded directly on its digits, when the format locale writes plain digits and a point. Other
+     * coordinates, such as ones with an exponent, and other locales go through BigDecimal and String.format.
+     */
+    static String round(String number, int decimalPlaces) {
         if (number == null || number.equals("")) {
             return "";
-        } else {
-            BigDecimal bd = new BigDecimal(number);
-            if (bd.scale() > decimalPlaces) {
-                return String.format("%." + decimalPlaces + "f", bd);
+        }
+        int length = number.length();
+        int start = 0;
+        char first = number.charAt(0);
+        if (first == '-' || first == '+') {
+            start = 1;
+        }
+        int point = -1;
+        boolean zero = true;
+        for (int i = start; i < length; i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                zero &= c == '0';
+            } else if (c == '.' && point < 0) {
+                point = i;
             } else {
-                return number;
+                return format(number, decimalPlaces);
+            }
+        }
+        int integerEnd = point < 0 ? length : point;
+        int scale = point < 0 ? 0 : length - point - 1;
+        if (integerEnd == start && scale == 0) {
+            return format(number, decimalPlaces);
+        }
+        if (scale <= decimalPlaces) {
+            return number;
+        }
+        if (!isPlainLocale()) {
+            return format(number, decimalPlaces);
+        }
+
+        // The significant integer digits and the kept decimal places, with a spare digit in front for a carry
+        int integerStart = start;
+        while (integerStart < integerEnd - 1 && number.charAt(integerStart) == '0') {
+            integerStart++;
+        }
+        boolean noInteger = integerStart == integerEnd;
+        int integerDigits = noInteger ? 1 : integerEnd - integerStart;
+        boolean negative = first == '-' && !zero;
+        char[] digits = new char[1 + integerDigits + decimalPlaces];
+        digits[0] = '0';
+        if (noInteger) {
+            digits[1] = '0';
+        } else {
+            number.getChars(integerStart, integerEnd, digits, 1);
+        }
+        number.getChars(point + 1, point + 1 + decimalPlaces, digits, 1 + integerDigits);
+        if (number.charAt(point + 1 + decimalPlaces) >= '5') {
+            int i = digits.length - 1;
+            while (digits[i] == '9') {
+                digits[i--] = '0';
             }
+            digits[i]++;
+        }
+
+        int from = digits[0] == '0' ? 1 : 0;
+        int whole = digits.length - decimalPlaces - from;
+        StringBuilder sb = new StringBuilder(digits.length + 2);
+        if (negative) {
+            sb.append('-');
         }
+        sb.append(digits, from, whole);
+        if (decimalPlaces > 0) {
+            sb.append('.').append(digits, from + whole, decimalPlaces);
+        }
+        return sb.toString();
+    }
+
+    private static String format(String number, int decimalPlaces) {
+        BigDecimal bd = new BigDecimal(number);
+        if (bd.scale() > decimalPlaces) {
+            return String.format("%." + decimalPlaces + "f", bd);
+        } else {
+            return number;
+        }
+    }
+
+    /** The last format locale found to write plain digits and a decimal point */
+    private static volatile Locale plainLocale;
+
+    private static boolean isPlainLocale() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        if (locale == plainLocale) {
+            return true;
+        }
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        if (symbols.getZeroDigit() == '0' && symbols.getDecimalSeparator() == '.') {
+            plainLocale = locale;
+            return true;
+        }
+        return false;
     }
 
-    private String getLocationGeneralisation() {
-        String generalisation = null;
+    /**
+     * Find the conservation instance with the largest generalisation that applies in the zones.
+     */
+    private static ConservationInstance getGeneralisingInstance(List<SensitivityInstance> instances, List<SensitivityZone> zones) {
+        ConservationInstance selected = null;
 
         //this is where zones are matched to sensitive zone...
         for (SensitivityInstance si : instances) {
             if (si instanceof ConservationInstance) {
                 if (zones.contains(si.getZone()) || (si.getZone().getId().equals(SensitivityZone.AUS) && SensitivityZone.isInAustralia(zones))) {
-                    generalisation = maxGeneralisation(generalisation, ((ConservationInstance) si).getLocationGeneralisation());
+                    ConservationInstance ci = (ConservationInstance) si;
+                    // On a tie the later instance is taken
+                    if (selected == null || toInt(ci) >= toInt(selected)) {
+                        selected = ci;
+                    }
                 }
             }
         }
-        return generalisation;
+        return selected;
     }
 
-    private String maxGeneralisation(String generalisation1, String generalisation2) {
-        int gen1 = toInt(generalisation1);
-        int gen2 = toInt(generalisation2);
-
-        if (gen1 > gen2) {
-            return generalisation1;
-        } else {
-            return generalisation2;
-        }
-    }
-
-    private int toInt(String generalisation) {
-        if (generalisation == null) {
-            return 0;
-        } else if (generalisation.equalsIgnoreCase("WITHHOLD")) {
-            return Integer.MAX_VALUE;
-        } else if (generalisation.equalsIgnoreCase("100km")) {
-            return 100000;
-        } else if (generalisation.equalsIgnoreCase("50km")) {
-            return 50000;
-        } else if (generalisation.equalsIgnoreCase("10km")) {
-            return 10000;
-        } else if (generalisation.equalsIgnoreCase("1km")) {
-            return 1000;
-        } else if (generalisation.equalsIgnoreCase("2km")) {
-            return 2000;
-        } else if (generalisation.equalsIgnoreCase("100m")) {
-            return 100;
-        } else {
-            return 0;
-        }
+    private static int toInt(ConservationInstance instance) {
+        Generalisation generalisation = instance.getGeneralisation();
+        return generalisation == null ? 0 : generalisation.getMetres();
     }
 
 }
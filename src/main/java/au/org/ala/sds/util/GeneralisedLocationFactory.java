@@ -5,6 +5,7 @@ package au.org.ala.sds.util;
 
 import java.util.List;
 
+import au.org.ala.sds.model.ConservationInstance;
 import au.org.ala.sds.model.SensitivityInstance;
 import au.org.ala.sds.model.SensitivityZone;
 
@@ -18,4 +19,9 @@ public class GeneralisedLocationFactory {
         return new GeneralisedLocation(latitude, longitude, instances, zones);
     }
 
+    public static GeneralisedLocation getGeneralisedLocation(String latitude, String longitude, List<SensitivityInstance> instances, List<SensitivityZone> zones,
+                                                             ConservationInstance generalisingInstance) {
+        return new GeneralisedLocation(latitude, longitude, instances, zones, generalisingInstance);
+    }
+
 }
@@ -1,15 +1,23 @@
 package au.org.ala.sds.util;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 
+import au.org.ala.sds.model.GeoLocation;
 import au.org.ala.sds.model.SensitivityZone;
 import au.org.ala.sds.model.SensitivityZoneFactory;
 
@@ -17,8 +25,19 @@ public class GeoLocationHelper {
 
     final static Logger logger = Logger.getLogger(GeoLocationHelper.class);
 
+    private static volatile ZoneIntersector zoneIntersector;
+    private static volatile boolean intersectorLoaded = false;
+    private static volatile LruCache<PointKey, Set<SensitivityZone>> zoneCache;
+    private static volatile ExecutorService samplingExecutor;
+
     /**
      * Retrieves zones
+     * <p>
+     * When a local layers directory is configured (sds.spatial.layers.dir) the point is intersected in-process,
+     * otherwise the layers service is called.
+     * <p>
+     * Results are held in an LRU cache (sds.zone.cache.size entries) keyed on the numeric coordinate so that
+     * "-35.1" and "-35.10" share an entry. The returned set is unmodifiable and may be shared between callers.
      *
      * @param latitude
      * @param longitude
@@ -26,33 +45,150 @@ public class GeoLocationHelper {
      * @throws Exception
      */
     public static Set<SensitivityZone> getZonesContainingPoint(String latitude, String longitude) throws Exception {
+        PointKey key = PointKey.parse(latitude, longitude);
+        if (key == null) {
+            return Collections.unmodifiableSet(lookupZones(latitude, longitude));
+        }
+        LruCache<PointKey, Set<SensitivityZone>> cache = getZoneCache();
+        Set<SensitivityZone> zones = cache.get(key);
+        if (zones == null) {
+            zones = Collections.unmodifiableSet(lookupZones(latitude, longitude));
+            cache.put(key, zones);
+        }
+        return zones;
+    }
+
+    /**
+     * Retrieves the zones for many points at once.
+     * <p>
+     * Points are de-duplicated on their numeric coordinate and cached results are reused. The remaining points are
+     * intersected locally when a layers directory is configured, otherwise they are sent to the layers service as
+     * concurrent requests (sds.layers.service.threads) over pooled keep-alive connections.
+     *
+     * @param locations The points to sample
+     * @return The unmodifiable zone set for each distinct supplied location
+     * @throws Exception if any point could not be sampled
+     */
+    public static Map<GeoLocation, Set<SensitivityZone>> getZonesContainingPoints(Collection<GeoLocation> locations) throws Exception {
+        Map<GeoLocation, Set<SensitivityZone>> results = new LinkedHashMap<GeoLocation, Set<SensitivityZone>>();
+        Map<PointKey, List<GeoLocation>> pending = new LinkedHashMap<PointKey, List<GeoLocation>>();
+        LruCache<PointKey, Set<SensitivityZone>> cache = getZoneCache();
+
+        for (GeoLocation location : locations) {
+            if (results.containsKey(location)) {
+                continue;
+            }
+            PointKey key = PointKey.parse(location.getLatitude(), location.getLongitude());
+            if (key == null) {
+                throw new IllegalArgumentException("Invalid coordinate " + location);
+            }
+            List<GeoLocation> sameKey = pending.get(key);
+            if (sameKey != null) {
+                sameKey.add(location);
+                continue;
+            }
+            Set<SensitivityZone> zones = cache.get(key);
+            if (zones != null) {
+                results.put(location, zones);
+            } else {
+                sameKey = new ArrayList<GeoLocation>();
+                sameKey.add(location);
+                pending.put(key, sameKey);
+            }
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        logger.debug("Sampling " + pending.size() + " distinct points for " + locations.size() + " locations");
+        Map<PointKey, Future<Set<SensitivityZone>>> futures = new LinkedHashMap<PointKey, Future<Set<SensitivityZone>>>();
+        ExecutorService executor = getZoneIntersector() == null ? getSamplingExecutor() : null;
+        for (Map.Entry<PointKey, List<GeoLocation>> entry : pending.entrySet()) {
+            final GeoLocation location = entry.getValue().get(0);
+            if (executor == null) {
+                addResult(results, cache, entry, lookupZones(location.getLatitude(), location.getLongitude()));
+            } else {
+                futures.put(entry.getKey(), executor.submit(() -> lookupZones(location.getLatitude(), location.getLongitude())));
+            }
+        }
+        try {
+            for (Map.Entry<PointKey, List<GeoLocation>> entry : pending.entrySet()) {
+                Future<Set<SensitivityZone>> future = futures.get(entry.getKey());
+                if (future != null) {
+                    addResult(results, cache, entry, future.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            for (Future<Set<SensitivityZone>> future : futures.values()) {
+                future.cancel(true);
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return results;
+    }
+
+    private static void addResult(Map<GeoLocation, Set<SensitivityZone>> results, LruCache<PointKey, Set<SensitivityZone>> cache,
+                                  Map.Entry<PointKey, List<GeoLocation>> entry, Set<SensitivityZone> zones) {
+        zones = Collections.unmodifiableSet(zones);
+        cache.put(entry.getKey(), zones);
+        for (GeoLocation location : entry.getValue()) {
+            results.put(location, zones);
+        }
+    }
+
+    private static ExecutorService getSamplingExecutor() {
+        if (samplingExecutor == null) {
+            synchronized (GeoLocationHelper.class) {
+                if (samplingExecutor == null) {
+                    final AtomicInteger count = new AtomicInteger();
+                    samplingExecutor = Executors.newFixedThreadPool(Math.max(1, Configuration.getInstance().getLayersServiceThreads()), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "sds-sampling-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return samplingExecutor;
+    }
+
+    private static Set<SensitivityZone> lookupZones(String latitude, String longitude) throws Exception {
+        ZoneIntersector intersector = getZoneIntersector();
+        Map<String, String> layerValues;
+        if (intersector != null) {
+            layerValues = intersector.intersect(Double.parseDouble(latitude), Double.parseDouble(longitude));
+        } else {
+            layerValues = getLayerValuesFromService(latitude, longitude);
+        }
+        return getZonesForLayerValues(layerValues, latitude, longitude);
+    }
+
+    /**
+     * Converts the layer values containing a point into sensitivity zones.
+     *
+     * @param layerValues The layer id to feature name map for the point
+     * @param latitude
+     * @param longitude
+     * @return
+     */
+    static Set<SensitivityZone> getZonesForLayerValues(Map<String, String> layerValues, String latitude, String longitude) {
 
         Set<SensitivityZone> zones = new HashSet<SensitivityZone>();
 
-        // Call spatial web service for polygon intersections
-        URL url = new URL(Configuration.getInstance().getLayersServiceUrl() + "/intersect/" + getLayersForUri() + "/" + latitude + "/" + longitude);
-        URLConnection connection = url.openConnection();
-        logger.debug("Looking up location using " + url);
-        InputStream inStream = connection.getInputStream();
-
-        // Parse JSON result
-        logger.debug("Parsing location results");
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode rootNode = mapper.readValue(inStream, JsonNode.class);
-        for (JsonNode node : rootNode) {
-
-            JsonNode valueNode = node.get("value");
-            if(valueNode != null){
-                String field = node.get("field").getTextValue();
-                String value = valueNode.getTextValue();
-                if(StringUtils.isNotBlank(value) && StringUtils.isNotBlank(field)){
-                    Set<SensitivityZone> auZones = AUWorkarounds.getZones(field, value, latitude, longitude);
-                    zones.addAll(auZones);
-
-                    SensitivityZone sensitivityZone = SensitivityZoneFactory.getZoneByName(value);
-                    if(sensitivityZone != null){
-                        zones.add(sensitivityZone);
-                    }
+        for (Map.Entry<String, String> entry : layerValues.entrySet()) {
+            String field = entry.getKey();
+            String value = entry.getValue();
+            if(StringUtils.isNotBlank(value) && StringUtils.isNotBlank(field)){
+                Set<SensitivityZone> auZones = AUWorkarounds.getZones(field, value, latitude, longitude);
+                zones.addAll(auZones);
+
+                // Most layer values are not zones, so a miss is expected
+                SensitivityZone sensitivityZone = SensitivityZoneFactory.lookupZoneByName(value);
+                if(sensitivityZone != null){
+                    zones.add(sensitivityZone);
                 }
             }
         }
@@ -64,6 +200,129 @@ public class GeoLocationHelper {
         return zones;
     }
 
+    private static Map<String, String> getLayerValuesFromService(String latitude, String longitude) throws Exception {
+
+        Map<String, String> layerValues = new LinkedHashMap<String, String>();
+
+        // Call spatial web service for polygon intersections
+        Configuration config = Configuration.getInstance();
+        URL url = new URL(config.getLayersServiceUrl() + "/intersect/" + getLayersForUri() + "/" + latitude + "/" + longitude);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(config.getLayersServiceConnectTimeout());
+        connection.setReadTimeout(config.getLayersServiceReadTimeout());
+        logger.debug("Looking up location using " + url);
+
+        // Parse JSON result. The stream is read to the end and closed so the connection returns to the keep-alive pool
+        try (InputStream inStream = connection.getInputStream()) {
+            logger.debug("Parsing location results");
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode rootNode = mapper.readValue(inStream, JsonNode.class);
+            for (JsonNode node : rootNode) {
+
+                JsonNode valueNode = node.get("value");
+                if(valueNode != null){
+                    layerValues.put(node.get("field").getTextValue(), valueNode.getTextValue());
+                }
+            }
+        } catch (IOException e) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                error.close();
+            }
+            throw e;
+        }
+        return layerValues;
+    }
+
+    /**
+     * @return The in-process intersector, loaded from the configured layers directory on first use, or null if
+     * the layers service should be used
+     */
+    public static ZoneIntersector getZoneIntersector() throws Exception {
+        if (!intersectorLoaded) {
+            synchronized (GeoLocationHelper.class) {
+                if (!intersectorLoaded) {
+                    zoneIntersector = LocalZoneIntersector.fromConfiguration();
+                    intersectorLoaded = true;
+                }
+            }
+        }
+        return zoneIntersector;
+    }
+
+    /**
+     * Use the supplied intersector instead of the configured one. Supply null to fall back to the layers service.
+     */
+    public static void setZoneIntersector(ZoneIntersector intersector) {
+        synchronized (GeoLocationHelper.class) {
+            zoneIntersector = intersector;
+            intersectorLoaded = true;
+        }
+        clearZoneCache();
+    }
+
+    private static LruCache<PointKey, Set<SensitivityZone>> getZoneCache() {
+        if (zoneCache == null) {
+            synchronized (GeoLocationHelper.class) {
+                if (zoneCache == null) {
+                    zoneCache = new LruCache<PointKey, Set<SensitivityZone>>(Configuration.getInstance().getZoneCacheSize());
+                }
+            }
+        }
+        return zoneCache;
+    }
+
+    public static long getZoneCacheHits() {
+        return getZoneCache().getHits();
+    }
+
+    public static long getZoneCacheMisses() {
+        return getZoneCache().getMisses();
+    }
+
+    /**
+     * Discard all cached point to zone results. The cache is resized from the configuration on next use.
+     */
+    public static void clearZoneCache() {
+        synchronized (GeoLocationHelper.class) {
+            zoneCache = null;
+        }
+    }
+
+    /**
+     * Cache key for a point, compared on the numeric coordinate values.
+     */
+    private static final class PointKey {
+        private final double latitude;
+        private final double longitude;
+
+        private PointKey(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        static PointKey parse(String latitude, String longitude) {
+            try {
+                return new PointKey(Double.parseDouble(latitude), Double.parseDouble(longitude));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof PointKey)) return false;
+            PointKey other = (PointKey) obj;
+            return Double.compare(latitude, other.latitude) == 0 && Double.compare(longitude, other.longitude) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Double.hashCode(latitude) + Double.hashCode(longitude);
+        }
+    }
+
     public static List<SensitivityZone> filterForZoneType(List<SensitivityZone> zones, SensitivityZone.ZoneType type){
         List<SensitivityZone> newZones = new ArrayList<SensitivityZone>();
         for(SensitivityZone zone : zones){
@@ -0,0 +1,162 @@
+package au.org.ala.sds.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.locationtech.jts.io.geojson.GeoJsonReader;
+
+/**
+ * In-process replacement for the layers service intersect call.
+ * <p>
+ * The polygons of each layer are read from a directory containing one file per layer id, either
+ * <ul>
+ *     <li><code>&lt;layer&gt;.geojson</code> (or <code>.json</code>) - a GeoJSON FeatureCollection where the feature
+ *     name is held in a configurable property (by default <code>name</code>), or</li>
+ *     <li><code>&lt;layer&gt;.wkt</code> - one feature per line as <code>name&lt;TAB&gt;WKT</code>.</li>
+ * </ul>
+ * All features are held in a single STR-tree so a lookup is an envelope query followed by a point-in-polygon test on
+ * the candidates. The index is immutable once built and can be shared between threads.
+ */
+public class LocalZoneIntersector implements ZoneIntersector {
+
+    protected static final Logger logger = Logger.getLogger(LocalZoneIntersector.class);
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final STRtree index = new STRtree();
+    private int featureCount;
+
+    public LocalZoneIntersector(File directory, List<String> layers, String nameProperty) throws IOException {
+        for (String layer : layers) {
+            File file = findLayerFile(directory, layer);
+            if (file == null) {
+                logger.warn("No local geometry found for layer " + layer + " in " + directory);
+                continue;
+            }
+            int before = featureCount;
+            try {
+                if (file.getName().endsWith(".wkt")) {
+                    loadWkt(layer, file);
+                } else {
+                    loadGeoJson(layer, file, nameProperty);
+                }
+            } catch (ParseException e) {
+                throw new IOException("Unable to parse geometry in " + file, e);
+            }
+            logger.info("Loaded " + (featureCount - before) + " features for layer " + layer + " from " + file);
+        }
+        index.build();
+    }
+
+    /**
+     * Create an intersector from the configured layers directory.
+     *
+     * @return The intersector or null if no layers directory has been configured
+     */
+    public static LocalZoneIntersector fromConfiguration() throws IOException {
+        Configuration config = Configuration.getInstance();
+        if (StringUtils.isBlank(config.getSpatialLayersDir())) {
+            return null;
+        }
+        return new LocalZoneIntersector(new File(config.getSpatialLayersDir()), config.getGeospatialLayers(), config.getSpatialLayersNameProperty());
+    }
+
+    @Override
+    public Map<String, String> intersect(double latitude, double longitude) {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        Point point = geometryFactory.createPoint(new Coordinate(longitude, latitude));
+        for (Object candidate : index.query(point.getEnvelopeInternal())) {
+            LayerFeature feature = (LayerFeature) candidate;
+            if (!values.containsKey(feature.layer) && feature.geometry.covers(point)) {
+                values.put(feature.layer, feature.name);
+            }
+        }
+        return values;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    private static File findLayerFile(File directory, String layer) {
+        for (String extension : new String[] { ".geojson", ".json", ".wkt" }) {
+            File file = new File(directory, layer + extension);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private void loadWkt(String layer, File file) throws IOException, ParseException {
+        WKTReader reader = new WKTReader(geometryFactory);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (StringUtils.isBlank(line) || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    throw new IOException("Expected <name>TAB<WKT> in " + file + " but found: " + StringUtils.abbreviate(line, 80));
+                }
+                addFeature(layer, line.substring(0, tab).trim(), reader.read(line.substring(tab + 1)));
+            }
+        }
+    }
+
+    private void loadGeoJson(String layer, File file, String nameProperty) throws IOException, ParseException {
+        GeoJsonReader reader = new GeoJsonReader(geometryFactory);
+        JsonNode root = new ObjectMapper().readTree(file);
+        JsonNode features = root.get("features");
+        if (features == null) {
+            throw new IOException("Expected a GeoJSON FeatureCollection in " + file);
+        }
+        for (JsonNode feature : features) {
+            JsonNode properties = feature.get("properties");
+            JsonNode name = properties == null ? null : properties.get(nameProperty);
+            JsonNode geometry = feature.get("geometry");
+            if (name == null || geometry == null || geometry.isNull()) {
+                logger.warn("Skipping feature without '" + nameProperty + "' or geometry in " + file);
+                continue;
+            }
+            addFeature(layer, name.getValueAsText(), reader.read(geometry.toString()));
+        }
+    }
+
+    private void addFeature(String layer, String name, Geometry geometry) {
+        index.insert(geometry.getEnvelopeInternal(), new LayerFeature(layer, name, PreparedGeometryFactory.prepare(geometry)));
+        featureCount++;
+    }
+
+    private static class LayerFeature {
+        private final String layer;
+        private final String name;
+        private final PreparedGeometry geometry;
+
+        LayerFeature(String layer, String name, PreparedGeometry geometry) {
+            this.layer = layer;
+            this.name = name;
+            this.geometry = geometry;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package au.org.ala.sds.util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded thread safe cache that evicts entries not recently used, with hit and miss counters.
+ * <p>
+ * Entries are held in a {@link ConcurrentHashMap}, so a lookup takes no lock and threads can hit the cache at once.
+ * Eviction is the clock approximation of least-recently-used: a hit marks its entry, and when the cache is full an
+ * insert walks the entries in insertion order, giving each marked entry a second chance and evicting the first one
+ * that is not marked. Inserts share one lock, which is cheap next to the miss that leads to an insert.
+ * <p>
+ * A maximum size of zero or less disables the cache: nothing is stored and every lookup is a miss. Entries can be
+ * given a time to live, after which a lookup treats them as missing and drops them.
+ */
+public class LruCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Entry<K, V>> map;
+    /** The entries in the order the clock hand visits them, guarded by itself */
+    private final ArrayDeque<Entry<K, V>> clock = new ArrayDeque<Entry<K, V>>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public LruCache(final int maxSize) {
+        this(maxSize, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param ttl How long an entry is kept, zero or less to keep entries until they are evicted
+     */
+    public LruCache(final int maxSize, long ttl, TimeUnit unit) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl > 0 ? unit.toNanos(ttl) : 0;
+        this.map = new ConcurrentHashMap<K, Entry<K, V>>(Math.max(16, Math.min(maxSize, 1 << 16)));
+    }
+
+    /**
+     * @return The cached value or null if there is no entry for the key
+     */
+    public V get(K key) {
+        V value = null;
+        Entry<K, V> entry = key == null ? null : map.get(key);
+        if (entry != null) {
+            if (ttlNanos > 0 && System.nanoTime() - entry.created > ttlNanos) {
+                if (map.remove(key, entry)) {
+                    expired.incrementAndGet();
+                }
+            } else {
+                value = entry.value;
+                // Only write when the mark changes, so hot entries are not written by every reader
+                if (!entry.used) {
+                    entry.used = true;
+                }
+            }
+        }
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        if (maxSize <= 0 || key == null || value == null) {
+            return;
+        }
+        Entry<K, V> entry = new Entry<K, V>(key, value, ttlNanos > 0 ? System.nanoTime() : 0);
+        synchronized (clock) {
+            map.put(key, entry);
+            clock.addLast(entry);
+            while (map.size() > maxSize && !clock.isEmpty()) {
+                Entry<K, V> candidate = clock.pollFirst();
+                if (map.get(candidate.key) != candidate) {
+                    // Replaced, expired or already evicted
+                    continue;
+                }
+                if (candidate.used) {
+                    candidate.used = false;
+                    clock.addLast(candidate);
+                } else {
+                    map.remove(candidate.key, candidate);
+                }
+            }
+            if (clock.size() > 2 * maxSize) {
+                purge();
+            }
+        }
+    }
+
+    /**
+     * Drop the entries of the clock that are no longer in the map, left by replaced and expired entries.
+     */
+    private void purge() {
+        for (Iterator<Entry<K, V>> i = clock.iterator(); i.hasNext(); ) {
+            Entry<K, V> entry = i.next();
+            if (map.get(entry.key) != entry) {
+                i.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (clock) {
+            map.clear();
+            clock.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+        expired.set(0);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of lookups that found an entry past its time to live
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return The fraction of lookups that were hits, or zero before the first lookup
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "LruCache{size=" + size() + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses + ", expired=" + expired + "}";
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final long created;
+        private volatile boolean used;
+
+        private Entry(K key, V value, long created) {
+            this.key = key;
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
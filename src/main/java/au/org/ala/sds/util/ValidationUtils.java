@@ -15,6 +15,7 @@ import org.apache.log4j.Logger;
 
 import au.org.ala.sds.model.SensitivityZone;
 import au.org.ala.sds.model.SensitivityZoneFactory;
+import au.org.ala.sds.model.ZoneSet;
 import au.org.ala.sds.validation.FactCollection;
 import au.org.ala.sds.validation.MessageFactory;
 import au.org.ala.sds.validation.ValidationReport;
@@ -90,7 +91,7 @@ public class ValidationUtils {
 //            }
         }
 
-        facts.add(FactCollection.ZONES_KEY, zones.toString());
+        facts.setZones(ZoneSet.of(zones));
         return true;
     }
 
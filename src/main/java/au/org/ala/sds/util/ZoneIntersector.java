@@ -0,0 +1,15 @@
+package au.org.ala.sds.util;
+
+import java.util.Map;
+
+/**
+ * Intersects a point with the spatial layers used to determine sensitivity zones.
+ * <p>
+ * The result mirrors the layers service <code>/intersect</code> response: a map from layer id (eg cl22) to the
+ * name of the layer feature that contains the point. Layers that do not contain the point are left out.
+ */
+public interface ZoneIntersector {
+
+    Map<String, String> intersect(double latitude, double longitude);
+
+}
@@ -0,0 +1,381 @@
+package au.org.ala.sds.validation;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+import au.org.ala.sds.model.Message;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.SensitivityZoneFactory;
+import au.org.ala.sds.util.DateHelper;
+import au.org.ala.sds.util.PlantPestUtils;
+
+/**
+ * Plant pest validation without the rules engine.
+ * <p>
+ * Each category's DRL file is translated into plain Java, one <code>if</code> per rule in declaration order. As in the
+ * rules engine every rule whose conditions hold fires, so later rules may overwrite the state set by earlier ones.
+ * Conditions only depend on the record, never on the state, so evaluating them as each rule is reached gives the same
+ * result as matching them all before firing. A missing date is equivalent to <code>not Date()</code>.
+ * <p>
+ * Changes to the DRL files must be mirrored here; PlantPestEngineEquivalenceTest compares the two.
+ */
+public class CompiledPlantPestService extends PlantPestService {
+
+    protected static final Logger logger = Logger.getLogger(CompiledPlantPestService.class);
+
+    private static final String QUEENSLAND_FRUIT_FLY = "Bactrocera tryoni";
+    private static final String TEPHRITIDAE = "Tephritidae";
+    private static final String UNKNOWN_DATE = "Unknown Date";
+    private static final String UNKNOWN_RESOURCE = "Unknown submitting resource";
+
+    public CompiledPlantPestService(SensitiveTaxon taxon, ReportFactory reportFactory) {
+        super(taxon, null, reportFactory, false);
+    }
+
+    @Override
+    protected String fireRules(ValidationReport report, RuleState state, String category, List<SensitivityZone> zones, Date date, Map<String, String> map) {
+        SensitiveTaxon st = getTaxon();
+        do {
+            state.setComplete(true);
+            fire(category, new Facts(st, zones, date, map, report, state));
+            if (!state.isComplete()) {
+                if (StringUtils.isNotBlank(state.getDelegateRules())) {
+                    category = state.getDelegateRules();
+                    state.setDelegateRules(null);
+                } else {
+                    throw new IllegalStateException("Delegate rules not specified.");
+                }
+            }
+        } while (!state.isComplete());
+        return category;
+    }
+
+    private static void fire(String category, Facts f) {
+        if (SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA.equals(category)) {
+            notKnownInAustralia(f);
+        } else if (SensitivityCategory.PLANT_PEST_ERADICATED.equals(category)) {
+            eradicated(f);
+        } else if (SensitivityCategory.PLANT_PEST_UNDER_ERADICATION.equals(category)) {
+            underEradication(f);
+        } else if (SensitivityCategory.PLANT_PEST_SUBJECT_TO_OFFICIAL_CONTROL.equals(category)) {
+            subjectToOfficialControl(f);
+        } else if (SensitivityCategory.PLANT_PEST_IN_TORRES_STRAIT_ZONE.equals(category)) {
+            inTorresStraitZone(f);
+        } else if (SensitivityCategory.PLANT_PEST_IS_QUEENSLAND_FRUIT_FLY.equals(category)) {
+            isQueenslandFruitFly(f);
+        } else if (SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION.equals(category)) {
+            notifiableUnderStateLegislation(f);
+        } else if (SensitivityCategory.PLANT_PEST_NON_TRANSIENT.equals(category)) {
+            transient_(f);
+        } else if (SensitivityCategory.PLANT_PEST_EXOTIC_BIOLOGICAL_CONTROL_AGENT.equals(category)) {
+            exoticBiologicalControlAgent(f);
+        } else if (SensitivityCategory.PLANT_PEST_HIGHER_TAXON_ID.equals(category)) {
+            identificationToHigherTaxon(f);
+        } else {
+            throw new IllegalArgumentException("No plant pest rules for category " + category);
+        }
+    }
+
+    /** PBC1-PlantPestNotKnownInAustralia.drl */
+    private static void notKnownInAustralia(Facts f) {
+        boolean qff = QUEENSLAND_FRUIT_FLY.equals(f.st.getName());
+        if (qff) {
+            f.fired("PBC1", "Queensland Fruit Fly");
+            f.delegate(SensitivityCategory.PLANT_PEST_IS_QUEENSLAND_FRUIT_FLY);
+        }
+        if (!qff && SensitivityZone.isInAustralia(f.zones) && !SensitivityZone.isInTorresStrait(f.zones)) {
+            f.fired("PBC1", "In Australia");
+            f.state.setLoadable(false);
+            f.message(Message.Type.WARNING, MessageFactory.PLANT_PEST_MSG_CAT1_A1, f.summary());
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT1_A3, f.st.getTaxonName(), f.resource(), f.zones.get(0),
+                    f.get("eventDate", UNKNOWN_DATE));
+        }
+        if (!qff && SensitivityZone.isExternalTerritory(f.zones)) {
+            f.fired("PBC1", "In External Territory");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT1_B1), f.locality(), f.st.getTaxonName());
+        }
+        if (SensitivityZone.isInTorresStrait(f.zones)) {
+            f.fired("PBC1", "In Torres Strait Zone");
+            f.delegate(SensitivityCategory.PLANT_PEST_IN_TORRES_STRAIT_ZONE);
+        }
+        if (!qff && SensitivityZone.isNotInAustralia(f.zones)) {
+            f.fired("PBC1", "Not in Australia");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT1_D1), f.st.getTaxonName());
+            f.message(Message.Type.INFO, MessageFactory.PLANT_PEST_MSG_CAT1_D1, f.st.getTaxonName());
+        }
+        if (!qff && f.zones.isEmpty()) {
+            f.fired("PBC1", "Location not provided");
+            f.state.setLoadable(false);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT1_A0), f.st.getTaxonName());
+            f.message(Message.Type.INFO, MessageFactory.PLANT_PEST_MSG_CAT1_A0, f.st.getTaxonName());
+        }
+    }
+
+    /** PBC2-PlantPestEradicated.drl */
+    private static void eradicated(Facts f) {
+        String category = SensitivityCategory.PLANT_PEST_ERADICATED;
+        if (f.date != null && PlantPestUtils.isInZoneDuringPeriod(f.st, category, f.zones, f.date)) {
+            f.fired("PBC2", "Inside PQA during quarantine period");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT2_A1), f.st.getName());
+        }
+        if (f.date != null && PlantPestUtils.isInZoneBeforePeriod(f.st, category, f.zones, f.date)) {
+            f.fired("PBC2", "Inside PQA earlier than quarantine period");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT2_B1), f.st.getName(), f.locality());
+            f.state.setControlledAccess(true);
+            f.message(Message.Type.WARNING, MessageFactory.PLANT_PEST_MSG_CAT2_B2, f.summary(), f.locality());
+        }
+        if (f.date != null && !SensitivityZone.isInTorresStrait(f.zones) &&
+                (PlantPestUtils.isOutsideZone(f.st, category, f.zones) || PlantPestUtils.isAfterPeriod(f.st, category, f.date))) {
+            f.fired("PBC2", "Outside PQA or After quarantine period");
+            f.message(Message.Type.WARNING, MessageFactory.PLANT_PEST_MSG_CAT2_C1, f.summary(), f.locality());
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT2_C2, f.st.getTaxonName(), f.resource(), f.locality(),
+                    f.get("eventDate", UNKNOWN_DATE));
+        }
+        if (f.date == null) {
+            f.fired("PBC2", "Inside PQA No Date Provided");
+            f.state.setLoadable(true);
+            f.state.setControlledAccess(true);
+            f.message(Message.Type.WARNING, MessageFactory.PLANT_PEST_MSG_CAT2_B2, f.summary(), f.locality());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT2_A1), f.st.getName());
+        }
+    }
+
+    /** PBC3-PlantPestUnderEradication.drl */
+    private static void underEradication(Facts f) {
+        if (SensitivityZone.isInAustralia(f.zones)) {
+            f.fired("PBC3", "Temporary catch all rule for species that are under eradication");
+            f.state.setLoadable(true);
+            f.state.setControlledAccess(true);
+            f.message(Message.Type.WARNING, MessageFactory.PLANT_PEST_MSG_CAT3_ALL1, f.summary(), f.st.getTaxonName());
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT3_ALL2, f.st.getTaxonName(), f.get("eventDate", UNKNOWN_DATE),
+                    f.locality(), f.resource());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT3_ALL3, f.st.getName()));
+        }
+    }
+
+    /** PBC4-PlantPestSubjectToOfficialControl.drl */
+    private static void subjectToOfficialControl(Facts f) {
+        String category = SensitivityCategory.PLANT_PEST_SUBJECT_TO_OFFICIAL_CONTROL;
+        if (PlantPestUtils.isOutsideZone(f.st, category, f.zones)) {
+            f.fired("PBC4", "Outside infested area");
+            f.delegate(SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION);
+        }
+        if (PlantPestUtils.isInShapeBasedZone(f.st, category, f.zones)) {
+            f.fired("PBC4", "Inside shape file based infested area");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT4_A1, f.st.getName(), f.stateName()));
+        }
+        if (PlantPestUtils.isInStateBasedZone(f.st, category, f.zones)) {
+            f.fired("PBC4", "Inside state based infested area");
+            f.state.setLoadable(true);
+            f.state.setControlledAccess(true);
+            f.message(Message.Type.WARNING, MessageFactory.PLANT_PEST_MSG_CAT4_B1, f.get("scientificName", f.st.getTaxonName()), f.stateName(),
+                    f.get("eventDate", UNKNOWN_DATE), f.locality());
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT4_B2, f.st.getTaxonName(), f.get("eventDate", UNKNOWN_DATE),
+                    f.locality(), f.resource());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT4_B3, f.st.getName(), f.stateName()));
+        }
+    }
+
+    /** PBC5a-PlantPestInTorresStraitZone.drl */
+    private static void inTorresStraitZone(Facts f) {
+        boolean qff = QUEENSLAND_FRUIT_FLY.equals(f.st.getTaxonName());
+        boolean tephritidae = TEPHRITIDAE.equals(f.st.getFamily());
+        boolean torresStrait = SensitivityZone.isInTorresStrait(f.zones);
+        if (qff) {
+            f.fired("PBC5a", "Queensland Fruit Fly");
+            f.delegate(SensitivityCategory.PLANT_PEST_IS_QUEENSLAND_FRUIT_FLY);
+        }
+        if (tephritidae && !qff && f.date == null && torresStrait) {
+            f.fired("PBC5a", "Within Torres Strait Zone and taxon is in family Tephritidae no date provided");
+            f.state.setLoadable(true);
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT5A_C2, f.st.getTaxonName(), f.locality(), f.resource());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT5A_C1), f.st.getTaxonName());
+        }
+        if (tephritidae && !qff && f.date != null && torresStrait && DateHelper.dateBefore(f.date, "1996-01-01")) {
+            f.fired("PBC5a", "Within Torres Strait Zone and taxon is in family Tephritidae and before commencement date");
+            f.state.setLoadable(true);
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT5A_A2, f.st.getTaxonName(), f.locality(), f.resource());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT5A_A1), f.st.getTaxonName());
+        }
+        if (tephritidae && !qff && f.date != null && torresStrait && DateHelper.dateOnOrAfter(f.date, "1996-01-01")) {
+            f.fired("PBC5a", "Within Torres Strait Zone and taxon is in family Tephritidae and after commencement date");
+            f.state.setLoadable(true);
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT5A_B2, f.st.getTaxonName(), f.locality(), f.resource());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT5A_B1), f.st.getTaxonName());
+        }
+        if (!tephritidae && torresStrait) {
+            f.fired("PBC5a", "Within Torres Strait Zone and taxon not in family Tephritidae");
+            f.state.setLoadable(true);
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT5A_D2, f.st.getTaxonName(), f.locality(),
+                    f.get("eventDate", "Unknown date"), f.resource());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT5A_D1), f.st.getTaxonName());
+        }
+    }
+
+    /** PBC5b-PlantPestIsQueenslandFruitFly.drl */
+    private static void isQueenslandFruitFly(Facts f) {
+        String category = SensitivityCategory.PLANT_PEST_IS_QUEENSLAND_FRUIT_FLY;
+        boolean outside = PlantPestUtils.isOutsideZone(f.st, category, f.zones);
+        if (f.zones.contains(SensitivityZoneFactory.getZone(SensitivityZone.SA)) && outside) {
+            f.fired("PBC5b", "In South Australia outside FFEZ");
+            f.delegate(SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION);
+        }
+        if (f.date != null && PlantPestUtils.isInZoneDuringPeriod(f.st, category, f.zones, f.date)) {
+            f.fired("PBC5b", "Inside FFEZ since commencement date");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT5B_A1));
+        }
+        if (f.date != null && PlantPestUtils.isInZoneBeforePeriod(f.st, category, f.zones, f.date)) {
+            f.fired("PBC5b", "Inside FFEZ before commencement date");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT5B_A2));
+        }
+        if (f.date == null) {
+            f.fired("PBC5b", "Inside FFEZ no date");
+            f.state.setLoadable(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT5B_A3));
+        }
+        if (outside) {
+            f.fired("PBC5b", "Outside FFEZ");
+            f.state.setLoadable(true);
+            f.delegate(SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION);
+        }
+    }
+
+    /** PBC6-PlantPestNotifiableUnderStateLegislation.drl */
+    private static void notifiableUnderStateLegislation(Facts f) {
+        String category = SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION;
+        if (PlantPestUtils.isInsideZone(f.st, category, f.zones)) {
+            f.fired("PBC6", "Plant pest notifiable in this State");
+            f.state.setLoadable(false);
+            String zone = PlantPestUtils.getSensitivityZone(f.st, category, f.zones);
+            f.message(Message.Type.WARNING, MessageFactory.PLANT_PEST_MSG_CAT6_A1, f.summary(), zone);
+            f.message(Message.Type.ALERT, MessageFactory.PLANT_PEST_MSG_CAT6_A2, f.st.getTaxonName(), zone, f.resource(), f.locality(),
+                    f.get("eventDate", "Unknown date"));
+        }
+        if (PlantPestUtils.isOutsideZone(f.st, category, f.zones)) {
+            f.fired("PBC6", "Plant pest not notifiable in this State");
+            f.state.setLoadable(true);
+        }
+    }
+
+    /** PBC8-PlantPestTransient.drl */
+    private static void transient_(Facts f) {
+        String category = SensitivityCategory.PLANT_PEST_NON_TRANSIENT;
+        boolean nonActionable = f.date != null && SensitivityZone.isInAustralia(f.zones) &&
+                PlantPestUtils.isANonActionableTransientEvent(f.st, category, f.date, f.zones);
+        if (nonActionable) {
+            f.fired("PBC8", "Transient: non actionable");
+            f.state.setLoadable(true);
+            f.state.setComplete(true);
+            f.state.setRestricted(true);
+            f.message(Message.Type.INFO, MessageFactory.PLANT_PEST_MSG_CAT8, f.st.getTaxonName());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT8, f.st.getTaxonName()));
+        }
+        if (f.date == null) {
+            f.fired("PBC8", "Not Transient partt 1");
+            f.delegate(SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA);
+        }
+        if (f.date != null && !nonActionable) {
+            f.fired("PBC8", "Not Transient");
+            f.delegate(SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA);
+        }
+    }
+
+    /** PBC9-ExoticBiologicalControlAgent.drl */
+    private static void exoticBiologicalControlAgent(Facts f) {
+        if (SensitivityZone.isInAustralia(f.zones)) {
+            f.fired("PBC9", "Is Unreleased Exotic Biological Control Agent");
+            f.state.setLoadable(true);
+            f.state.setComplete(true);
+            f.state.setRestricted(true);
+            f.message(Message.Type.INFO, MessageFactory.PLANT_PEST_MSG_CAT9, f.st.getTaxonName());
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT9, f.st.getTaxonName()));
+        }
+    }
+
+    /** PBC10-IdentificationToHigherTaxon.drl */
+    private static void identificationToHigherTaxon(Facts f) {
+        boolean applies = (SensitivityZone.isInAustralia(f.zones) || SensitivityZone.isExternalTerritory(f.zones) ||
+                SensitivityZone.isInTorresStrait(f.zones)) && PlantPestUtils.isExactMatch(f.map, f.st);
+        if (applies) {
+            f.fired("PBC10", "PBC10-IdentificationToHigherTaxon");
+            f.state.setLoadable(true);
+            f.state.setComplete(true);
+            f.state.setRestricted(true);
+            f.state.setAnnotation(MessageFactory.getMessageText(MessageFactory.PLANT_PEST_MSG_CAT10, f.st.getTaxonName()));
+            f.message(Message.Type.INFO, MessageFactory.PLANT_PEST_MSG_CAT10, f.st.getTaxonName());
+        } else {
+            f.fired("PBC10", "Not Extact Match or Outside Australia");
+            f.state.setLoadable(true);
+        }
+    }
+
+    /**
+     * The facts and globals the rules reason upon, with the expressions the DRL files share.
+     */
+    private static class Facts {
+        final SensitiveTaxon st;
+        final List<SensitivityZone> zones;
+        final Date date;
+        final Map<String, String> map;
+        final ValidationReport report;
+        final RuleState state;
+
+        Facts(SensitiveTaxon st, List<SensitivityZone> zones, Date date, Map<String, String> map, ValidationReport report, RuleState state) {
+            this.st = st;
+            this.zones = zones;
+            this.date = date;
+            this.map = map;
+            this.report = report;
+            this.state = state;
+        }
+
+        String get(String key, String defaultValue) {
+            return PlantPestUtils.mapGetOrElse(map, key, defaultValue);
+        }
+
+        String locality() {
+            return PlantPestUtils.getLocalityFromMapForMessage(map, zones);
+        }
+
+        String stateName() {
+            return PlantPestUtils.getStateFromMapForMessage(map, zones);
+        }
+
+        String resource() {
+            return get("dataResourceName", get("dataResourceUid", UNKNOWN_RESOURCE));
+        }
+
+        /** The "name, date and locality" summary used by the submitter warnings */
+        String summary() {
+            return get("scientificName", st.getTaxonName()) + "," + get("eventDate", UNKNOWN_DATE) + " and " + locality();
+        }
+
+        void message(Message.Type type, String key, Object... context) {
+            report.addMessage(MessageFactory.createMessage(type, key, context));
+        }
+
+        void delegate(String category) {
+            state.setDelegateRules(category);
+            state.setComplete(false);
+        }
+
+        void fired(String category, String rule) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(category + " Rule '" + rule + "'");
+            }
+        }
+    }
+}
@@ -10,7 +10,8 @@ import java.util.Map;
 
 import au.org.ala.sds.model.SensitiveTaxon;
 import au.org.ala.sds.model.SensitivityInstance;
-import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.ZoneInstances;
+import au.org.ala.sds.model.ZoneSet;
 import au.org.ala.sds.util.GeneralisedLocation;
 import au.org.ala.sds.util.GeneralisedLocationFactory;
 import au.org.ala.sds.util.ValidationUtils;
@@ -57,18 +58,19 @@ public class ConservationService implements ValidationService {
         // Assemble parameters for location generalisation
         String latitude = facts.get(FactCollection.DECIMAL_LATITUDE_KEY);
         String longitude = facts.get(FactCollection.DECIMAL_LONGITUDE_KEY);
-        String zonesString = facts.get(FactCollection.ZONES_KEY);  //this is a serialised list []
-
-        List<SensitivityZone> zones = SensitivityZone.getListFromString(zonesString);
-        List<SensitivityInstance> instances = taxon.getInstancesForZones(zones);
+        ZoneSet zones = facts.getZones();
 
         // Check data provider (Birds Australia generalisation only happens for BA occurrences)
+        String excludedAuthority = null;
         if (facts.get("dataResourceUid") == null || !BIRDS_AUSTRALIA.contains(facts.get("dataResourceUid"))) {
-            SensitivityInstance.removeInstance(instances, SensitivityInstance.BIRDS_AUSTRALIA_INSTANCE);
+            excludedAuthority = SensitivityInstance.BIRDS_AUSTRALIA_INSTANCE;
         }
+        ZoneInstances zoneInstances = taxon.getInstancesForZones(zones, excludedAuthority);
+        List<SensitivityInstance> instances = zoneInstances.getInstances();
 
         // Generalise location
-        GeneralisedLocation gl = GeneralisedLocationFactory.getGeneralisedLocation(latitude, longitude, instances, zones);
+        GeneralisedLocation gl = GeneralisedLocationFactory.getGeneralisedLocation(latitude, longitude, instances, zones,
+                zoneInstances.getGeneralisingInstance());
         ValidationOutcome outcome = new ValidationOutcome(report);
 
         // Specify instances
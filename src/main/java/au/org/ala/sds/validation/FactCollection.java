@@ -7,6 +7,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import au.org.ala.sds.dto.DataRow;
+import au.org.ala.sds.model.ZoneSet;
+
 /**
  * A selection of key value pairs describing an occurrence.
  *
@@ -19,6 +22,7 @@ public class FactCollection {
     public static final String SPECIFIC_EPITHET_KEY = "specificEpithet";
     public static final String INTRA_SPECIFIC_EPITHET_KEY = "intraspecificEpithet";
     public static final String SCIENTIFIC_NAME_KEY = "scientificName";
+    public static final String TAXON_ID_KEY = "taxonConceptID";
     public static final String DECIMAL_LATITUDE_KEY = "decimalLatitude";
     public static final String DECIMAL_LONGITUDE_KEY = "decimalLongitude";
     public static final String STATE_PROVINCE_KEY = "stateProvince";
@@ -45,30 +49,83 @@ public class FactCollection {
     public static final String[] FACT_NAMES2 = { MUNICIPALITY_KEY,
             STATE_PROVINCE_KEY, COUNTRY_KEY, EVENT_DATE_KEY, YEAR_KEY };
 
-    private final Map<String, String> facts;
+    private Map<String, String> facts;
+
+    /** True while the facts are a row read from a file, which is copied before it is changed */
+    private boolean shared;
+
+    /** The zones of the occurrence, kept as a set rather than as a string under {@link #ZONES_KEY} */
+    private ZoneSet zones;
 
     public FactCollection() {
         this.facts = new HashMap<String, String>();
     }
 
+    /**
+     * @param map The facts, copied. A {@link DataRow} is only copied if the facts are changed.
+     */
     public FactCollection(Map<String, String> map) {
-        this.facts = new HashMap<String, String>(map);
+        if (map instanceof DataRow) {
+            this.facts = map;
+            this.shared = true;
+        } else {
+            this.facts = new HashMap<String, String>(map);
+        }
+    }
+
+    private Map<String, String> writable() {
+        if (shared) {
+            facts = ((DataRow) facts).copy();
+            shared = false;
+        }
+        return facts;
     }
 
     public void add(String key, String value) {
-        facts.put(key, value);
+        if (ZONES_KEY.equals(key)) {
+            zones = null;
+        }
+        writable().put(key, value);
     }
 
     public String get(String key) {
+        if (zones != null && ZONES_KEY.equals(key)) {
+            return zones.toString();
+        }
         return facts.get(key);
     }
 
     public boolean contains(String key)  {
-        return facts.containsKey(key);
+        return facts.containsKey(key) || (zones != null && ZONES_KEY.equals(key));
     }
 
     public String remove(String key) {
-        return facts.remove(key);
+        String value = get(key);
+        if (ZONES_KEY.equals(key)) {
+            zones = null;
+        }
+        if (facts.containsKey(key)) {
+            writable().remove(key);
+        }
+        return value;
+    }
+
+    public void setZones(ZoneSet zones) {
+        this.zones = zones;
+        if (facts.containsKey(ZONES_KEY)) {
+            writable().remove(ZONES_KEY);
+        }
+    }
+
+    /**
+     * @return The zones of the occurrence, read from {@link #ZONES_KEY} if they were supplied as a string
+     */
+    public ZoneSet getZones() {
+        if (zones == null && facts.containsKey(ZONES_KEY)) {
+            zones = ZoneSet.valueOf(facts.get(ZONES_KEY));
+            writable().remove(ZONES_KEY);
+        }
+        return zones;
     }
 
     public boolean isNotEmpty() {
@@ -81,6 +138,9 @@ public class FactCollection {
         for (Entry<String, String> entry : facts.entrySet()) {
             sb.append(entry.getKey()).append("=").append(entry.getValue()).append(", ");
         }
+        if (zones != null) {
+            sb.append(ZONES_KEY).append("=").append(zones).append(", ");
+        }
         sb.replace(sb.length() - 2, sb.length() - 1, "]");
 
         return sb.toString();
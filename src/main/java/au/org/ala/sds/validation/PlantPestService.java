@@ -6,12 +6,17 @@ package au.org.ala.sds.validation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.kie.api.KieServices;
+import org.kie.api.command.Command;
+import org.kie.api.command.KieCommands;
 import org.kie.internal.KnowledgeBase;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
 import org.kie.internal.runtime.StatelessKnowledgeSession;
 
 import au.org.ala.sds.knowledgebase.KnowledgeBaseFactory;
@@ -20,6 +25,7 @@ import au.org.ala.sds.model.SdsMessage;
 import au.org.ala.sds.model.SensitiveTaxon;
 import au.org.ala.sds.model.SensitivityCategoryFactory;
 import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.util.Configuration;
 import au.org.ala.sds.util.DateHelper;
 import au.org.ala.sds.util.ValidationUtils;
 
@@ -34,12 +40,27 @@ public class PlantPestService implements ValidationService {
     private KnowledgeBase knowledgeBase;
     private ReportFactory reportFactory;
     private final SensitiveTaxon taxon;
+    private boolean reuseSessions;
+    private boolean mergedRules;
+
+    /** Sessions are not thread safe, so each thread keeps one per knowledge base */
+    private static final ThreadLocal<SessionCache> sessions = new ThreadLocal<SessionCache>() {
+        @Override
+        protected SessionCache initialValue() {
+            return new SessionCache();
+        }
+    };
 
     public PlantPestService(SensitiveTaxon taxon, KnowledgeBase knowledgeBase, ReportFactory reportFactory) {
+        this(taxon, knowledgeBase, reportFactory, Configuration.getInstance().isRulesSessionReuse());
+    }
+
+    public PlantPestService(SensitiveTaxon taxon, KnowledgeBase knowledgeBase, ReportFactory reportFactory, boolean reuseSessions) {
         super();
         this.taxon = taxon;
         this.knowledgeBase = knowledgeBase;
         this.reportFactory = reportFactory;
+        this.reuseSessions = reuseSessions;
     }
 
     /**
@@ -63,29 +84,9 @@ public class PlantPestService implements ValidationService {
             return new ValidationOutcome(report, false);
         }
 
-        List<SensitivityZone> zones = SensitivityZone.getListFromString(facts.get(FactCollection.ZONES_KEY));
+        List<SensitivityZone> zones = facts.getZones();
         RuleState state = new RuleState();
-        String category = taxon.getInstances().get(0).getCategory().getId();
-        do {
-            state.setComplete(true);
-            StatelessKnowledgeSession session = knowledgeBase.newStatelessKnowledgeSession();
-
-            session.setGlobal("validationReport", report);
-            session.setGlobal("state", state);
-            session.setGlobal("logger", logger);
-
-            session.execute(getFacts(taxon, zones, date, biocacheData));
-
-            if (!state.isComplete()) {
-                if (StringUtils.isNotBlank(state.getDelegateRules())) {
-                    knowledgeBase = KnowledgeBaseFactory.getKnowledgeBase(SensitivityCategoryFactory.getCategory(state.getDelegateRules()));
-                    category = state.getDelegateRules();
-                    state.setDelegateRules(null);
-                } else {
-                    throw new IllegalStateException("Delegate rules not specified.");
-                }
-            }
-        } while (!state.isComplete());
+        String category = fireRules(report, state, taxon.getInstances().get(0).getCategory().getId(), zones, date, biocacheData);
 
         ValidationOutcome outcome = new ValidationOutcome(report);
         outcome.setLoadable(state.isLoadable());
@@ -104,6 +105,137 @@ public class PlantPestService implements ValidationService {
         return outcome;
     }
 
+    /**
+     * Fire the rules of a category, and of any categories it delegates to, updating the report and state.
+     *
+     * @return The category of the rules that completed
+     */
+    protected String fireRules(ValidationReport report, RuleState state, String category, List<SensitivityZone> zones, Date date, Map<String, String> biocacheData) {
+        if (mergedRules) {
+            category = executeMerged(report, state, category, getFacts(taxon, zones, date, biocacheData));
+        } else {
+            // Delegation swaps in another knowledge base for this record only, the service itself may be shared
+            KnowledgeBase knowledgeBase = this.knowledgeBase;
+            do {
+                state.setComplete(true);
+                if (reuseSessions) {
+                    execute(getSession(knowledgeBase), report, state, getFacts(taxon, zones, date, biocacheData));
+                } else {
+                    StatelessKnowledgeSession session = knowledgeBase.newStatelessKnowledgeSession();
+
+                    session.setGlobal("validationReport", report);
+                    session.setGlobal("state", state);
+                    session.setGlobal("logger", logger);
+
+                    session.execute(getFacts(taxon, zones, date, biocacheData));
+                }
+
+                if (!state.isComplete()) {
+                    if (StringUtils.isNotBlank(state.getDelegateRules())) {
+                        knowledgeBase = KnowledgeBaseFactory.getKnowledgeBase(SensitivityCategoryFactory.getCategory(state.getDelegateRules()));
+                        category = state.getDelegateRules();
+                        state.setDelegateRules(null);
+                    } else {
+                        throw new IllegalStateException("Delegate rules not specified.");
+                    }
+                }
+            } while (!state.isComplete());
+        }
+        return category;
+    }
+
+    /**
+     * Run the rules in the merged knowledge base. Every category is an agenda group, so delegation moves the focus to
+     * the delegate's group and fires again within the same session.
+     *
+     * @return The category of the rules that completed
+     */
+    private String executeMerged(ValidationReport report, RuleState state, String category, Collection<Object> facts) {
+        StatefulKnowledgeSession session = knowledgeBase.newStatefulKnowledgeSession();
+        try {
+            session.setGlobal("validationReport", report);
+            session.setGlobal("state", state);
+            session.setGlobal("logger", logger);
+            for (Object fact : facts) {
+                if (fact != null) {
+                    session.insert(fact);
+                }
+            }
+            state.setComplete(true);
+            session.getAgenda().getAgendaGroup(category).setFocus();
+            session.fireAllRules();
+            while (!state.isComplete()) {
+                if (StringUtils.isBlank(state.getDelegateRules())) {
+                    throw new IllegalStateException("Delegate rules not specified.");
+                }
+                category = state.getDelegateRules();
+                state.setDelegateRules(null);
+                state.setComplete(true);
+                session.getAgenda().getAgendaGroup(category).setFocus();
+                session.fireAllRules();
+            }
+            return category;
+        } finally {
+            session.dispose();
+        }
+    }
+
+    /**
+     * Run the rules in a reused session. The per-record globals travel with the facts in a single batch command, so
+     * they apply to this execution only and the session holds no record state afterwards.
+     */
+    private static void execute(StatelessKnowledgeSession session, ValidationReport report, RuleState state, Collection<Object> facts) {
+        KieCommands commands = KieServices.Factory.get().getCommands();
+        List<Command> batch = new ArrayList<Command>(4);
+        batch.add(commands.newSetGlobal("validationReport", report));
+        batch.add(commands.newSetGlobal("state", state));
+        batch.add(commands.newInsertElements(facts));
+        batch.add(commands.newFireAllRules());
+        session.execute(commands.newBatchExecution(batch));
+    }
+
+    /**
+     * @return This thread's session for the knowledge base
+     */
+    private static StatelessKnowledgeSession getSession(KnowledgeBase knowledgeBase) {
+        SessionCache cache = sessions.get();
+        int generation = KnowledgeBaseFactory.getGeneration();
+        if (cache.generation != generation) {
+            cache.sessions.clear();
+            cache.generation = generation;
+        }
+        StatelessKnowledgeSession session = cache.sessions.get(knowledgeBase);
+        if (session == null) {
+            session = knowledgeBase.newStatelessKnowledgeSession();
+            session.setGlobal("logger", logger);
+            cache.sessions.put(knowledgeBase, session);
+        }
+        return session;
+    }
+
+    /**
+     * @return The number of sessions this thread is keeping
+     */
+    static int getSessionCount() {
+        SessionCache cache = sessions.get();
+        return cache.generation == KnowledgeBaseFactory.getGeneration() ? cache.sessions.size() : 0;
+    }
+
+    /**
+     * @param mergedRules True if the knowledge base is {@link KnowledgeBaseFactory#getMergedKnowledgeBase()}
+     */
+    public void setMergedRules(boolean mergedRules) {
+        this.mergedRules = mergedRules;
+    }
+
+    public void setReuseSessions(boolean reuseSessions) {
+        this.reuseSessions = reuseSessions;
+    }
+
+    public SensitiveTaxon getTaxon() {
+        return taxon;
+    }
+
     public void setKnowledgeBase(KnowledgeBase knowledgeBase) {
         this.knowledgeBase = knowledgeBase;
     }
@@ -124,4 +256,12 @@ public class PlantPestService implements ValidationService {
       return facts;
     }
 
+    /**
+     * A thread's sessions, by knowledge base, as of a generation of the knowledge bases. The sessions are dropped
+     * once {@link KnowledgeBaseFactory#reset()} has discarded the knowledge bases they were made from.
+     */
+    private static final class SessionCache {
+        private final Map<KnowledgeBase, StatelessKnowledgeSession> sessions = new IdentityHashMap<KnowledgeBase, StatelessKnowledgeSession>();
+        private int generation = KnowledgeBaseFactory.getGeneration();
+    }
 }
@@ -10,6 +10,7 @@ import au.org.ala.sds.model.ConservationInstance;
 import au.org.ala.sds.model.PlantPestInstance;
 import au.org.ala.sds.model.SensitiveTaxon;
 import au.org.ala.sds.model.SensitivityInstance;
+import au.org.ala.sds.util.Configuration;
 
 /**
  *
@@ -25,9 +26,17 @@ public class ServiceFactory {
         if (species.getInstances().get(0) instanceof ConservationInstance) {
             service = new ConservationService(species, reportFactory);
         } else if (species.getInstances().get(0) instanceof PlantPestInstance) {
-            SensitivityInstance instance = species.getInstances().get(0);
-            KnowledgeBase knowledgeBase = KnowledgeBaseFactory.getKnowledgeBase(instance.getCategory());
-            service = new PlantPestService(species, knowledgeBase, reportFactory);
+            if (Configuration.getInstance().isPlantPestJavaEngine()) {
+                service = new CompiledPlantPestService(species, reportFactory);
+            } else if (Configuration.getInstance().isRulesMerged()) {
+                PlantPestService plantPestService = new PlantPestService(species, KnowledgeBaseFactory.getMergedKnowledgeBase(), reportFactory);
+                plantPestService.setMergedRules(true);
+                service = plantPestService;
+            } else {
+                SensitivityInstance instance = species.getInstances().get(0);
+                KnowledgeBase knowledgeBase = KnowledgeBaseFactory.getKnowledgeBase(instance.getCategory());
+                service = new PlantPestService(species, knowledgeBase, reportFactory);
+            }
         }
         return service;
     }
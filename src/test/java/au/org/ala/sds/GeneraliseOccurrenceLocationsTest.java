@@ -0,0 +1,188 @@
+package au.org.ala.sds;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.model.SensitiveTaxonStore;
+import au.org.ala.sds.model.SensitiveTaxonStoreDiff;
+import au.org.ala.sds.util.GeoLocationHelper;
+import au.org.ala.sds.util.TestUtils;
+import au.org.ala.sds.util.ZoneIntersector;
+
+import static org.junit.Assert.*;
+
+public class GeneraliseOccurrenceLocationsTest {
+
+    static SensitiveSpeciesFinder finder;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JdbcDataSource dataSource;
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+        InputStream stream = GeneraliseOccurrenceLocationsTest.class.getResourceAsStream("/sensitive-species.xml");
+        try {
+            finder = new SensitiveSpeciesFinder(new SensitiveTaxonStore(new SensitiveSpeciesXmlDao(stream), null));
+        } finally {
+            stream.close();
+        }
+        // Every point is in New South Wales
+        GeoLocationHelper.setZoneIntersector(new ZoneIntersector() {
+            @Override
+            public Map<String, String> intersect(double latitude, double longitude) {
+                Map<String, String> layers = new HashMap<String, String>();
+                layers.put("cl932", "Australia");
+                layers.put("cl22", "New South Wales");
+                return layers;
+            }
+        });
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        GeoLocationHelper.setZoneIntersector(null);
+    }
+
+    @Before
+    public void createTable() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + folder.getRoot().getName() + ";DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE raw_occurrence_record (id BIGINT PRIMARY KEY, scientific_name VARCHAR(255), " +
+                    "latitude VARCHAR(32), longitude VARCHAR(32), generalised_metres VARCHAR(32), " +
+                    "raw_latitude VARCHAR(32), raw_longitude VARCHAR(32))");
+        }
+        insert(1, "Callocephalon fimbriatum", "-33.523456", "150.512345", null, null, null);
+        insert(2, "Crex crex", "-33.523456", "150.512345", null, null, null);
+        insert(5, "Wollemia nobilis", "-33.523456", "150.512345", null, null, null);
+        // Generalised when it was sensitive
+        insert(7, "Crex crex", "-33.5", "150.5", "10000", "-33.523456", "150.512345");
+        insert(8, "Callocephalon fimbriatum", null, null, null, null, null);
+        for (int id = 10; id < 20; id++) {
+            insert(id, "Crex crex", "-35." + id, "149." + id, null, null, null);
+        }
+    }
+
+    private void insert(long id, String name, String latitude, String longitude, String metres, String rawLatitude, String rawLongitude) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement("INSERT INTO raw_occurrence_record VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            st.setLong(1, id);
+            st.setString(2, name);
+            st.setString(3, latitude);
+            st.setString(4, longitude);
+            st.setString(5, metres);
+            st.setString(6, rawLatitude);
+            st.setString(7, rawLongitude);
+            st.executeUpdate();
+        }
+    }
+
+    private String[] row(long id) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT latitude, longitude, generalised_metres, raw_latitude, raw_longitude FROM raw_occurrence_record WHERE id = ?")) {
+            st.setLong(1, id);
+            try (ResultSet rs = st.executeQuery()) {
+                assertTrue(rs.next());
+                return new String[] { rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5) };
+            }
+        }
+    }
+
+    private GeneraliseOccurrenceLocations job(File checkpoint) {
+        GeneraliseOccurrenceLocations job = new GeneraliseOccurrenceLocations(dataSource, finder);
+        job.setThreads(3);
+        job.setPageSize(3);
+        job.setCheckpoint(checkpoint);
+        return job;
+    }
+
+    @Test
+    public void generaliseAndRestoreLocations() throws Exception {
+        GeneraliseOccurrenceLocations job = job(null);
+        assertEquals(19, job.run(null));
+        assertEquals(15, job.getProcessed());
+        assertEquals(2, job.getGeneralised());
+        assertEquals(1, job.getDegeneralised());
+
+        String[] gangGang = row(1);
+        assertNotEquals("-33.523456", gangGang[0]);
+        assertNotNull(gangGang[2]);
+        assertEquals("-33.523456", gangGang[3]);
+        assertEquals("150.512345", gangGang[4]);
+
+        assertArrayEquals(new String[] { "-33.523456", "150.512345", null, null, null }, row(2));
+
+        String[] wollemia = row(5);
+        assertNull(wollemia[0]);
+        assertNull(wollemia[1]);
+        assertEquals("-33.523456", wollemia[3]);
+
+        assertArrayEquals(new String[] { "-33.523456", "150.512345", null, null, null }, row(7));
+
+        // A second run finds nothing to change
+        GeneraliseOccurrenceLocations again = job(null);
+        again.run(null);
+        assertEquals(0, again.getGeneralised());
+        assertEquals(0, again.getDegeneralised());
+        assertArrayEquals(gangGang, row(1));
+    }
+
+    @Test
+    public void resumeFromCheckpoint() throws Exception {
+        File checkpoint = new File(folder.getRoot(), "checkpoint");
+        job(checkpoint).run(null);
+        assertEquals("19", new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8));
+
+        insert(25, "Callocephalon fimbriatum", "-33.523456", "150.512345", null, null, null);
+        GeneraliseOccurrenceLocations job = job(checkpoint);
+        assertEquals(25, job.run(null));
+        assertEquals(1, job.getProcessed());
+        assertEquals(1, job.getGeneralised());
+        assertEquals("25", new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void regeneraliseChangedTaxa() throws Exception {
+        String crex = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><sensitiveSpeciesList>" +
+                "<sensitiveSpecies name=\"Crex crex\" family=\"Rallidae\" rank=\"SPECIES\"><instances>" +
+                "<conservationInstance category=\"EN\" authority=\"Birds Australia\" dataResourceId=\"dr494\" zone=\"AUS\" generalisation=\"10km\" />" +
+                "</instances></sensitiveSpecies></sensitiveSpeciesList>";
+        SensitiveTaxonStore previous = new SensitiveTaxonStore(
+                new SensitiveSpeciesXmlDao(new ByteArrayInputStream(crex.getBytes(StandardCharsets.UTF_8))), null);
+        SensitiveTaxonStoreDiff changes = SensitiveTaxonStoreDiff.compare(previous, finder.getStore());
+        assertTrue(changes.getNames().contains("Callocephalon fimbriatum"));
+        assertFalse(changes.getNames().contains("Crex crex"));
+
+        String[] crexBefore = row(7);
+        GeneraliseOccurrenceLocations job = job(null);
+        assertEquals(3, job.regeneralise(changes));
+        assertEquals(2, job.getGeneralised());
+        assertEquals(0, job.getDegeneralised());
+        assertEquals("-33.523456", row(1)[3]);
+        assertEquals("-33.523456", row(5)[3]);
+        // Not in the changed taxa, so left alone
+        assertArrayEquals(crexBefore, row(7));
+    }
+}
@@ -18,6 +18,7 @@ import au.org.ala.names.search.ALANameSearcher;
 import au.org.ala.sds.model.SensitiveTaxon;
 import au.org.ala.sds.util.Configuration;
 import au.org.ala.sds.util.PlantPestUtils;
+import au.org.ala.sds.util.PlantPestEngineScenarios;
 import au.org.ala.sds.util.TestUtils;
 import au.org.ala.sds.validation.MessageFactory;
 import au.org.ala.sds.validation.ServiceFactory;
@@ -39,7 +40,7 @@ import static org.junit.Assert.assertTrue;
  *
  * @author Natasha Carter (natasha.carter@csiro.au)
  */
-public class PlantPestCategory5Test {
+public class PlantPestCategory5Test extends PlantPestEngineScenarios {
 
     static ALANameSearcher nameSearcher;
     static SensitiveSpeciesFinder finder;
@@ -20,6 +20,7 @@ import java.util.Map;
 import au.org.ala.sds.model.Message;
 import au.org.ala.sds.util.AUWorkarounds;
 import au.org.ala.sds.util.GeoLocationHelper;
+import au.org.ala.sds.util.PlantPestEngineScenarios;
 import au.org.ala.sds.util.TestUtils;
 import au.org.ala.sds.validation.*;
 import org.junit.BeforeClass;
@@ -37,7 +38,7 @@ import static org.junit.Assert.*;
  * @author Peter Flemming (peter.flemming@csiro.au)
  */
 
-public class PlantPestEradicatedTest {
+public class PlantPestEradicatedTest extends PlantPestEngineScenarios {
 
 //  static DataSource dataSource;
     static ALANameSearcher nameSearcher;
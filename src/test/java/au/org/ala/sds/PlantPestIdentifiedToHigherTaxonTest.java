@@ -18,6 +18,7 @@ import au.org.ala.names.search.ALANameSearcher;
 import au.org.ala.sds.model.SensitiveTaxon;
 import au.org.ala.sds.util.Configuration;
 import au.org.ala.sds.util.PlantPestUtils;
+import au.org.ala.sds.util.PlantPestEngineScenarios;
 import au.org.ala.sds.util.TestUtils;
 import au.org.ala.sds.validation.*;
 import org.junit.BeforeClass;
@@ -33,7 +34,7 @@ import static org.junit.Assert.*;
  *
  * @author Natasha Carter (natasha.carter@csiro.au)
  */
-public class PlantPestIdentifiedToHigherTaxonTest {
+public class PlantPestIdentifiedToHigherTaxonTest extends PlantPestEngineScenarios {
     static ALANameSearcher nameSearcher;
     static SensitiveSpeciesFinder finder;
 
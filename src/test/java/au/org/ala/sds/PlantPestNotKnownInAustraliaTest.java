@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import au.org.ala.sds.model.Message;
+import au.org.ala.sds.util.PlantPestEngineScenarios;
 import au.org.ala.sds.util.TestUtils;
 import au.org.ala.sds.validation.*;
 import org.junit.BeforeClass;
@@ -37,7 +38,7 @@ import static org.junit.Assert.assertEquals;
  * @author Peter Flemming (peter.flemming@csiro.au)
  */
 
-public class PlantPestNotKnownInAustraliaTest {
+public class PlantPestNotKnownInAustraliaTest extends PlantPestEngineScenarios {
 
 //  static DataSource dataSource;
     static ALANameSearcher nameSearcher;
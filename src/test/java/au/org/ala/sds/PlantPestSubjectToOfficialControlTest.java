@@ -21,6 +21,7 @@ import au.org.ala.sds.model.GeoLocation;
 import au.org.ala.sds.model.Message;
 import au.org.ala.sds.util.AUWorkarounds;
 import au.org.ala.sds.util.GeoLocationHelper;
+import au.org.ala.sds.util.PlantPestEngineScenarios;
 import au.org.ala.sds.util.TestUtils;
 import au.org.ala.sds.validation.*;
 import org.junit.BeforeClass;
@@ -38,7 +39,7 @@ import static org.junit.Assert.*;
  * @author Peter Flemming (peter.flemming@csiro.au)
  */
 
-public class PlantPestSubjectToOfficialControlTest {
+public class PlantPestSubjectToOfficialControlTest extends PlantPestEngineScenarios {
 
 //  static DataSource dataSource;
     static ALANameSearcher nameSearcher;
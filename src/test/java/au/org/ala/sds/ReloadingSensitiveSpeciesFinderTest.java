@@ -0,0 +1,120 @@
+package au.org.ala.sds;
+
+import au.org.ala.sds.model.SensitiveTaxonStore;
+import au.org.ala.sds.util.TestUtils;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reloads the species list from a stub server that honours If-None-Match.
+ */
+public class ReloadingSensitiveSpeciesFinderTest {
+
+    private static final String EXTRA =
+            "  <sensitiveSpecies name=\"Testus reloadus\" family=\"\" rank=\"SPECIES\" commonName=\"\">\n" +
+            "    <instances>\n" +
+            "      <conservationInstance category=\"EN\" authority=\"TEST\" zone=\"NSW\" generalisation=\"10km\" />\n" +
+            "    </instances>\n" +
+            "  </sensitiveSpecies>\n";
+
+    private static String species;
+
+    private HttpServer server;
+    private volatile String body;
+    private volatile String etag;
+    private final AtomicInteger notModified = new AtomicInteger();
+    private ReloadingSensitiveSpeciesFinder finder;
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+        species = new String(Files.readAllBytes(Paths.get(ReloadingSensitiveSpeciesFinderTest.class.getResource("/sensitive-species.xml").toURI())),
+                StandardCharsets.UTF_8);
+    }
+
+    @Before
+    public void startServer() throws Exception {
+        body = species;
+        etag = "\"1\"";
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/sensitive-species.xml", exchange -> {
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/xml");
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        finder = new ReloadingSensitiveSpeciesFinder("http://localhost:" + server.getAddress().getPort() + "/sensitive-species.xml",
+                null, 0, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void stopServer() {
+        finder.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void reloadsOnlyWhenChanged() throws Exception {
+        SensitiveTaxonStore first = finder.getStore();
+        Date loaded = finder.getLastReload();
+        assertEquals(1, finder.getStoreVersion());
+        assertNotNull(finder.findSensitiveSpeciesByExactMatch("Wollemia nobilis"));
+        assertNull(finder.findSensitiveSpeciesByExactMatch("Testus reloadus"));
+
+        assertFalse(finder.reload());
+        assertEquals(1, notModified.get());
+        assertEquals(1, finder.getStoreVersion());
+        assertSame(first, finder.getStore());
+
+        body = species.replace("</sensitiveSpeciesList>", EXTRA + "</sensitiveSpeciesList>");
+        etag = "\"2\"";
+        assertTrue(finder.reload());
+        assertEquals(2, finder.getStoreVersion());
+        assertNotSame(first, finder.getStore());
+        assertFalse(loaded.after(finder.getLastReload()));
+        assertNotNull(finder.findSensitiveSpeciesByExactMatch("Testus reloadus"));
+        assertEquals(first.getTaxonCount() + 1, finder.getStore().getTaxonCount());
+
+        // The previous store is untouched, so a lookup that was using it completes as before
+        assertNull(first.findByExactMatch("Testus reloadus"));
+    }
+
+    @Test
+    public void failedReloadKeepsTheStore() throws Exception {
+        SensitiveTaxonStore first = finder.getStore();
+        body = "<sensitiveSpeciesList>";
+        etag = "\"broken\"";
+        try {
+            finder.reload();
+            fail("Expected the damaged list to be rejected");
+        } catch (Exception e) {
+            // expected
+        }
+        assertSame(first, finder.getStore());
+        assertEquals(1, finder.getStoreVersion());
+    }
+}
@@ -0,0 +1,152 @@
+package au.org.ala.sds;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitiveTaxonStore;
+import au.org.ala.sds.util.GeoLocationHelper;
+import au.org.ala.sds.util.TestUtils;
+import au.org.ala.sds.util.ZoneIntersector;
+import au.org.ala.sds.validation.FactCollection;
+import au.org.ala.sds.validation.ValidationOutcome;
+
+import static org.junit.Assert.*;
+
+public class SensitiveDataServiceBatchTest {
+
+    private static final String[][] POINTS = { { "-33.523456", "150.512345" }, { "-33.6", "150.6" }, { "-32.1", "151.2" } };
+    private static final int COPIES = 20;
+
+    static SensitiveSpeciesFinder finder;
+
+    /** The number of times each point was intersected */
+    static final ConcurrentMap<String, AtomicInteger> sampled = new ConcurrentHashMap<String, AtomicInteger>();
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+        InputStream stream = SensitiveDataServiceBatchTest.class.getResourceAsStream("/sensitive-species.xml");
+        try {
+            finder = new SensitiveSpeciesFinder(new SensitiveTaxonStore(new SensitiveSpeciesXmlDao(stream), null));
+        } finally {
+            stream.close();
+        }
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        GeoLocationHelper.setZoneIntersector(null);
+    }
+
+    @Before
+    public void countSamples() {
+        sampled.clear();
+        // Every point is in New South Wales. Setting the intersector clears the point cache
+        GeoLocationHelper.setZoneIntersector(new ZoneIntersector() {
+            @Override
+            public Map<String, String> intersect(double latitude, double longitude) {
+                AtomicInteger count = new AtomicInteger();
+                AtomicInteger existing = sampled.putIfAbsent(latitude + "," + longitude, count);
+                (existing == null ? count : existing).incrementAndGet();
+                Map<String, String> layers = new HashMap<String, String>();
+                layers.put("cl932", "Australia");
+                layers.put("cl22", "New South Wales");
+                return layers;
+            }
+        });
+    }
+
+    private static Map<String, String> record(String name, String[] point) {
+        Map<String, String> record = new HashMap<String, String>();
+        record.put(FactCollection.SCIENTIFIC_NAME_KEY, name);
+        record.put(FactCollection.DECIMAL_LATITUDE_KEY, point[0]);
+        record.put(FactCollection.DECIMAL_LONGITUDE_KEY, point[1]);
+        return record;
+    }
+
+    @Test
+    public void distinctPointsAreSampledOnce() {
+        List<Map<String, String>> records = new ArrayList<Map<String, String>>();
+        for (int i = 0; i < COPIES; i++) {
+            for (String[] point : POINTS) {
+                records.add(record("Wollemia nobilis", point));
+            }
+            // Not sensitive, so never sampled
+            records.add(record("Crex crex", new String[] { "-35.1", "149.1" }));
+            // Supplies its sampled values
+            Map<String, String> provided = record("Wollemia nobilis", new String[] { "-36.1", "148.1" });
+            provided.put(FactCollection.STATE_PROVINCE_KEY, "New South Wales");
+            provided.put(SensitiveDataService.SAMPLED_VALUES_PROVIDED, "true");
+            records.add(provided);
+        }
+
+        // Validation changes the records, so keep a copy of each for the single record path
+        List<Map<String, String>> copies = new ArrayList<Map<String, String>>();
+        for (Map<String, String> record : records) {
+            copies.add(new HashMap<String, String>(record));
+        }
+
+        SensitiveDataService service = new SensitiveDataService();
+        List<ValidationOutcome> outcomes = service.testMapDetailsBatch(finder, records);
+
+        assertSampledOnce();
+
+        assertEquals(records.size(), outcomes.size());
+        for (int i = 0; i < copies.size(); i++) {
+            Map<String, String> record = copies.get(i);
+            ValidationOutcome expected = service.testMapDetails(finder, record, record.get(FactCollection.SCIENTIFIC_NAME_KEY));
+            ValidationOutcome actual = outcomes.get(i);
+            assertEquals(record.toString(), expected.isSensitive(), actual.isSensitive());
+            assertEquals(record.toString(), expected.isLoadable(), actual.isLoadable());
+        }
+        assertTrue(outcomes.get(0).isSensitive());
+        assertFalse(outcomes.get(POINTS.length).isSensitive());
+        // The single record path found the points in the cache
+        assertSampledOnce();
+    }
+
+    @Test
+    public void eachRecordIsSearchedOnce() {
+        final AtomicInteger searches = new AtomicInteger();
+        SensitiveSpeciesFinder counting = new SensitiveSpeciesFinder(finder.getStore()) {
+            @Override
+            public SensitiveTaxon findSensitiveSpecies(String scientificName) {
+                searches.incrementAndGet();
+                return super.findSensitiveSpecies(scientificName);
+            }
+        };
+        List<Map<String, String>> records = new ArrayList<Map<String, String>>();
+        for (int i = 0; i < COPIES; i++) {
+            for (String[] point : POINTS) {
+                records.add(record("Wollemia nobilis", point));
+            }
+            records.add(record("Crex crex", new String[] { "-35.1", "149.1" }));
+        }
+
+        List<ValidationOutcome> outcomes = new SensitiveDataService().testMapDetailsBatch(counting, records);
+
+        assertEquals(records.size(), outcomes.size());
+        assertEquals(records.size(), searches.get());
+        assertSampledOnce();
+    }
+
+    private static void assertSampledOnce() {
+        assertEquals(POINTS.length, sampled.size());
+        for (String[] point : POINTS) {
+            assertEquals(1, sampled.get(Double.parseDouble(point[0]) + "," + Double.parseDouble(point[1])).get());
+        }
+    }
+}
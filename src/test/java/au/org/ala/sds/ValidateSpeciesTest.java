@@ -0,0 +1,104 @@
+package au.org.ala.sds;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+import au.org.ala.sds.dao.DataStreamCsvDao;
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.dto.DataStreamProperties;
+import au.org.ala.sds.model.SensitiveTaxonStore;
+import au.org.ala.sds.util.TestUtils;
+
+import static org.junit.Assert.*;
+
+public class ValidateSpeciesTest {
+
+    private static final int COPIES = 300;
+    private static final String[] SPECIES = { "Wollemia nobilis", "Callocephalon fimbriatum", "Crex crex" };
+
+    static SensitiveSpeciesFinder finder;
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+        InputStream stream = ValidateSpeciesTest.class.getResourceAsStream("/sensitive-species.xml");
+        try {
+            finder = new SensitiveSpeciesFinder(new SensitiveTaxonStore(new SensitiveSpeciesXmlDao(stream), null));
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static InputStream csv() {
+        StringBuilder sb = new StringBuilder("scientificName,decimalLatitude,decimalLongitude,stateProvince,country,samplesProvided\n");
+        for (int i = 0; i < COPIES; i++) {
+            for (String species : SPECIES) {
+                sb.append(species).append(",-33.523456,150.512345,NSW,Australia,true\n");
+            }
+        }
+        return new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void annotatesRecordsInOrder() throws Exception {
+        ValidateSpecies validator = new ValidateSpecies(finder);
+        validator.setThreads(4);
+        StringWriter out = new StringWriter();
+        CSVWriter writer = new CSVWriter(out);
+        Map<String, String> mapping = ValidateSpecies.parseMapping(
+                "scientificName=A,decimalLatitude=B,decimalLongitude=C,stateProvince=D,country=E,samplesProvided=F");
+
+        ValidateSpecies.Summary summary = validator.validate(new DataStreamCsvDao("test.csv", csv()), mapping,
+                new DataStreamProperties(2, 0), writer);
+
+        assertEquals(COPIES * SPECIES.length, summary.getRows());
+        assertEquals(COPIES * 2, summary.getSensitive());
+        assertEquals(Long.valueOf(COPIES), summary.getCategories().get("EN"));
+        assertEquals(Long.valueOf(COPIES), summary.getCategories().get("VU"));
+        assertEquals(Long.valueOf(COPIES), summary.getCategories().get(ValidateSpecies.NOT_SENSITIVE));
+
+        List<String[]> lines = new CSVReader(new StringReader(out.toString())).readAll();
+        assertEquals(COPIES * SPECIES.length + 1, lines.size());
+        List<String> header = Arrays.asList(lines.get(0));
+        int sensitive = header.indexOf("sensitive");
+        int category = header.indexOf("category");
+        int latitude = header.indexOf("generalisedLatitude");
+        int generalisations = header.indexOf("dataGeneralizations");
+        assertEquals("scientificName", header.get(0));
+        assertEquals("row", header.get(6));
+
+        for (int i = 1; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            assertEquals(Integer.toString(i + 1), line[6]);
+            assertEquals(SPECIES[(i - 1) % SPECIES.length], line[0]);
+        }
+        String[] wollemia = lines.get(1);
+        assertEquals("true", wollemia[sensitive]);
+        assertEquals("EN", wollemia[category]);
+        assertNotEquals("-33.523456", wollemia[latitude]);
+        assertFalse(wollemia[generalisations].isEmpty());
+        String[] gangGang = lines.get(2);
+        assertEquals("VU", gangGang[category]);
+        assertNotEquals("-33.523456", gangGang[latitude]);
+        String[] crex = lines.get(3);
+        assertEquals("false", crex[sensitive]);
+        assertEquals("", crex[category]);
+        assertEquals("-33.523456", crex[latitude]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badMapping() throws Exception {
+        ValidateSpecies.parseMapping("scientificName");
+    }
+}
@@ -0,0 +1,113 @@
+package au.org.ala.sds.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import au.org.ala.sds.dto.DataColumnMapper;
+import au.org.ala.sds.dto.DataStreamProperties;
+import au.org.ala.sds.validation.FactCollection;
+
+import static org.junit.Assert.*;
+
+public class DataStreamCsvDaoTest {
+
+    private static final int ROWS = 5000;
+
+    private static InputStream csv() {
+        StringBuilder sb = new StringBuilder("scientificName,decimalLatitude,decimalLongitude\n");
+        for (int i = 0; i < ROWS; i++) {
+            sb.append("Species ").append(i).append(",-35.").append(i).append(",149.").append(i).append('\n');
+        }
+        return new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static DataColumnMapper mapper() {
+        DataColumnMapper mapper = new DataColumnMapper();
+        mapper.add("scientificName", "A");
+        mapper.add("decimalLatitude", "2");
+        return mapper;
+    }
+
+    private static ParallelDataStreamDao dao(int threads) {
+        ParallelDataStreamDao dao = new ParallelDataStreamDao(new DataStreamCsvDao("test.csv", csv()), threads);
+        dao.setChunkSize(7);
+        dao.setQueueSize(3);
+        return dao;
+    }
+
+    @Test
+    public void resultsInRowOrder() throws Exception {
+        final List<String> sequential = new ArrayList<String>();
+        final List<String> parallel = new ArrayList<String>();
+        new DataStreamCsvDao("test.csv", csv()).processStream(mapper(), new DataStreamProperties(2, 0), new Collector(sequential));
+        ParallelDataStreamDao dao = dao(4);
+        dao.processStream(mapper(), new DataStreamProperties(2, 0), new Collector(parallel));
+
+        assertEquals(ROWS, sequential.size());
+        assertEquals(sequential, parallel);
+        assertEquals("Species 0 row 2", parallel.get(0));
+        assertEquals(ROWS, dao.getRowCount());
+    }
+
+    @Test
+    public void rowHandlerOnSeveralThreads() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final List<String> rows = Collections.synchronizedList(new ArrayList<String>());
+        ParallelDataStreamDao dao = dao(4);
+        dao.processStream(mapper(), new DataStreamProperties(2, 101), new DataRowHandler() {
+            @Override
+            public void handleRow(Map<String, String> facts) {
+                count.incrementAndGet();
+                rows.add(facts.get(FactCollection.ROW_KEY));
+            }
+        });
+
+        assertEquals(100, count.get());
+        assertEquals(100, dao.getRowCount());
+        assertTrue(rows.contains("2"));
+        assertTrue(rows.contains("101"));
+    }
+
+    @Test
+    public void failedRow() throws Exception {
+        try {
+            dao(4).processStream(mapper(), new DataStreamProperties(2, 0), new DataRowHandler() {
+                @Override
+                public void handleRow(Map<String, String> facts) {
+                    if (facts.get(FactCollection.SCIENTIFIC_NAME_KEY).equals("Species 1234")) {
+                        throw new IllegalStateException("Bad row");
+                    }
+                }
+            });
+            fail("Expected the row failure");
+        } catch (IllegalStateException e) {
+            assertEquals("Bad row", e.getMessage());
+        }
+    }
+
+    private static class Collector implements DataRowProcessor<String> {
+        private final List<String> results;
+
+        Collector(List<String> results) {
+            this.results = results;
+        }
+
+        @Override
+        public String processRow(Map<String, String> facts) {
+            return facts.get(FactCollection.SCIENTIFIC_NAME_KEY) + " row " + facts.get(FactCollection.ROW_KEY);
+        }
+
+        @Override
+        public void rowProcessed(Map<String, String> facts, String result) {
+            results.add(result);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package au.org.ala.sds.dao;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.junit.Test;
+
+import au.org.ala.sds.dto.DataColumnMapper;
+import au.org.ala.sds.dto.DataStreamProperties;
+import au.org.ala.sds.util.DateHelper;
+import au.org.ala.sds.util.ExcelUtils;
+import au.org.ala.sds.validation.FactCollection;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the streaming readers with rows read from the workbook model.
+ */
+public class DataStreamExcelDaoTest {
+
+    private static DataColumnMapper mapper() {
+        DataColumnMapper mapper = new DataColumnMapper();
+        mapper.add("sourceDatabase", "A");
+        mapper.add("accessionNo", "2");
+        mapper.add("decimalLatitude", "S");
+        mapper.add("decimalLongitude", "T");
+        mapper.add("eventDate", "V");
+        mapper.add("year", "W");
+        mapper.add("collector", "X");
+        return mapper;
+    }
+
+    private static List<Map<String, String>> stream(String fileName, DataStreamProperties properties) throws Exception {
+        final List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+        InputStream stream = DataStreamExcelDaoTest.class.getResourceAsStream("/" + fileName);
+        try {
+            DataStreamDaoFactory.createDao(fileName, stream).processStream(mapper(), properties, new DataRowHandler() {
+                @Override
+                public void handleRow(Map<String, String> facts) {
+                    rows.add(facts);
+                }
+            });
+        } finally {
+            stream.close();
+        }
+        return rows;
+    }
+
+    @Test
+    public void xlsxValues() throws Exception {
+        List<Map<String, String>> rows = stream("workbook.xlsx", new DataStreamProperties(2, 3, 1));
+        assertEquals(2, rows.size());
+        Map<String, String> facts = rows.get(0);
+        assertEquals("2", facts.get(FactCollection.ROW_KEY));
+        assertEquals("ANIC", facts.get("sourceDatabase"));
+        assertEquals("29-011820", facts.get("accessionNo"));
+        assertEquals("-16.883333", facts.get("decimalLatitude"));
+        assertEquals("1959-08-18", facts.get("eventDate"));
+        assertEquals("1959.0", facts.get("year"));
+        assertEquals("Campbell,T.G.", facts.get("collector"));
+        assertEquals("29-011821", rows.get(1).get("accessionNo"));
+    }
+
+    @Test
+    public void xlsxAsWorkbook() throws Exception {
+        DataStreamProperties properties = new DataStreamProperties(1, 500, 1);
+        assertEquals(workbook("workbook.xlsx", properties), stream("workbook.xlsx", properties));
+    }
+
+    @Test
+    public void xlsAsWorkbook() throws Exception {
+        DataStreamProperties properties = new DataStreamProperties(1, 500, 1);
+        assertEquals(workbook("workbook.xls", properties), stream("workbook.xls", properties));
+    }
+
+    @Test
+    public void laterSheet() throws Exception {
+        DataStreamProperties properties = new DataStreamProperties(1, 0, 2);
+        assertEquals(workbook("workbook.xls", properties), stream("workbook.xls", properties));
+        assertEquals(workbook("workbook.xlsx", properties), stream("workbook.xlsx", properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingSheet() throws Exception {
+        stream("workbook.xlsx", new DataStreamProperties(1, 0, 10));
+    }
+
+    /**
+     * Read rows from the workbook model, as the dao used to.
+     */
+    private static List<Map<String, String>> workbook(String fileName, DataStreamProperties properties) throws Exception {
+        List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+        InputStream stream = DataStreamExcelDaoTest.class.getResourceAsStream("/" + fileName);
+        try {
+            Workbook wb = WorkbookFactory.create(stream);
+            Sheet sheet = wb.getSheetAt(properties.getSheetIndex() - 1);
+            DataColumnMapper mapper = mapper();
+            Map<String, Integer> columnMap = new HashMap<String, Integer>();
+            for (String key : mapper.getKeySet()) {
+                String value = mapper.get(key);
+                columnMap.put(key, (Character.isDigit(value.charAt(0)) ? Integer.parseInt(value) : ExcelUtils.getOrdinal(value)) - 1);
+            }
+            int end = properties.getEndRow() == 0 ? sheet.getLastRowNum() : properties.getEndRow() - 1;
+            for (int i = properties.getStartRow() - 1; i <= end; i++) {
+                Row row = sheet.getRow(i);
+                if (row == null) {
+                    continue;
+                }
+                Map<String, String> facts = new HashMap<String, String>();
+                for (String key : columnMap.keySet()) {
+                    Cell cell = row.getCell(columnMap.get(key));
+                    if (cell == null) {
+                        continue;
+                    }
+                    int type = cell.getCellType() == Cell.CELL_TYPE_FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+                    if (type == Cell.CELL_TYPE_STRING) {
+                        facts.put(key, cell.getStringCellValue().trim());
+                    } else if (type == Cell.CELL_TYPE_NUMERIC) {
+                        double d = cell.getNumericCellValue();
+                        facts.put(key, HSSFDateUtil.isCellDateFormatted(cell)
+                                ? DateHelper.formattedIso8601Date(HSSFDateUtil.getJavaDate(d)) : Double.toString(d));
+                    } else {
+                        facts.put(key, "");
+                    }
+                }
+                if (!facts.isEmpty()) {
+                    facts.put(FactCollection.ROW_KEY, Integer.toString(i + 1));
+                    rows.add(facts);
+                }
+            }
+        } finally {
+            stream.close();
+        }
+        return rows;
+    }
+}
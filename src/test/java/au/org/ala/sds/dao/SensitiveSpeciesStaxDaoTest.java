@@ -0,0 +1,122 @@
+package au.org.ala.sds.dao;
+
+import au.org.ala.sds.model.ConservationInstance;
+import au.org.ala.sds.model.PlantPestInstance;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityInstance;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the StAX and JDOM species readers give the same taxa.
+ */
+public class SensitiveSpeciesStaxDaoTest {
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    @Test
+    public void testSpeciesList() throws Exception {
+        compare(getClass().getResource("/sensitive-species.xml"));
+    }
+
+    @Test
+    public void bundledSpeciesList() throws Exception {
+        // The test resources hide the bundled list of the same name
+        compare(new URL(SensitiveSpeciesXmlDao.class.getProtectionDomain().getCodeSource().getLocation(), "sensitive-species.xml"));
+    }
+
+    @Test
+    public void scottishSpeciesList() throws Exception {
+        compare(getClass().getResource("/sensitive-species-scotland.xml"));
+    }
+
+    @Test
+    public void transientEventsAndOtherElements() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<sensitiveSpeciesList>\n" +
+                "  <sensitiveSpecies name=\"Testus transiens\" family=\"Testidae\" rank=\"SPECIES\" commonName=\"Test &amp; pest\" guid=\"urn:lsid:test:1\">\n" +
+                "    <note>ignored</note>\n" +
+                "    <instances>\n" +
+                "      <plantPestInstance category=\"PBC8\" authority=\"APPD\" zone=\"AUS\" fromDate=\"2001-02-03\" toDate=\"2010\">\n" +
+                "        <transientEvent eventDate=\"2005-06-07\" zone=\"NSW\"/>\n" +
+                "        <transientEvent eventDate=\"2006\" zone=\"QLD\"><comment>nested</comment></transientEvent>\n" +
+                "      </plantPestInstance>\n" +
+                "      <conservationInstance category=\"EN\" authority=\"TEST\" zone=\"NSW\" generalisation=\"1km\"><x/></conservationInstance>\n" +
+                "    </instances>\n" +
+                "    <instances>\n" +
+                "      <conservationInstance category=\"VU\" authority=\"TEST\" zone=\"QLD\" generalisation=\"10km\"/>\n" +
+                "    </instances>\n" +
+                "  </sensitiveSpecies>\n" +
+                "  <sensitiveSpecies name=\"Aaa bbb\" rank=\"SPECIES\" lsid=\"urn:lsid:test:2\">\n" +
+                "    <instances/>\n" +
+                "  </sensitiveSpecies>\n" +
+                "</sensitiveSpeciesList>\n";
+        List<SensitiveTaxon> expected = new SensitiveSpeciesXmlDao(stream(xml)).getAll();
+        List<SensitiveTaxon> actual = new SensitiveSpeciesStaxDao(stream(xml)).getAll();
+        compare(expected, actual);
+        assertEquals("Aaa bbb", actual.get(0).getName());
+        assertEquals(2, actual.get(1).getInstances().size());
+        assertEquals(2, ((PlantPestInstance) actual.get(1).getInstances().get(0)).getTransientEventList().size());
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void compare(URL url) throws Exception {
+        List<SensitiveTaxon> expected;
+        List<SensitiveTaxon> actual;
+        try (InputStream is = url.openStream()) {
+            expected = new SensitiveSpeciesXmlDao(is).getAll();
+        }
+        try (InputStream is = url.openStream()) {
+            actual = new SensitiveSpeciesStaxDao(is).getAll();
+        }
+        assertFalse(expected.isEmpty());
+        compare(expected, actual);
+    }
+
+    private static void compare(List<SensitiveTaxon> expected, List<SensitiveTaxon> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SensitiveTaxon e = expected.get(i);
+            SensitiveTaxon a = actual.get(i);
+            String context = e.getName();
+            assertEquals(context, e.getName(), a.getName());
+            assertEquals(context, e.getFamily(), a.getFamily());
+            assertEquals(context, e.getCommonName(), a.getCommonName());
+            assertEquals(context, e.getRank(), a.getRank());
+            assertEquals(context, e.getLsid(), a.getLsid());
+            assertEquals(context, e.getInstances().size(), a.getInstances().size());
+            for (int j = 0; j < e.getInstances().size(); j++) {
+                SensitivityInstance ei = e.getInstances().get(j);
+                SensitivityInstance ai = a.getInstances().get(j);
+                assertEquals(context, ei.toString(), ai.toString());
+                assertSame(context, ei.getZone(), ai.getZone());
+                assertSame(context, ei.getCategory(), ai.getCategory());
+                if (ei instanceof ConservationInstance) {
+                    assertEquals(context, ((ConservationInstance) ei).getLocationGeneralisation(), ((ConservationInstance) ai).getLocationGeneralisation());
+                }
+                if (ei instanceof PlantPestInstance) {
+                    PlantPestInstance ep = (PlantPestInstance) ei;
+                    PlantPestInstance ap = (PlantPestInstance) ai;
+                    assertEquals(context, ep.getFromDate(), ap.getFromDate());
+                    assertEquals(context, ep.getToDate(), ap.getToDate());
+                    assertEquals(context, String.valueOf(ep.getTransientEventList()), String.valueOf(ap.getTransientEventList()));
+                }
+            }
+        }
+    }
+}
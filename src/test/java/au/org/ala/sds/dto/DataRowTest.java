@@ -0,0 +1,76 @@
+package au.org.ala.sds.dto;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+import au.org.ala.sds.validation.FactCollection;
+
+import static org.junit.Assert.*;
+
+public class DataRowTest {
+
+    private static final DataRow.Schema SCHEMA = new DataRow.Schema(Arrays.asList(
+            FactCollection.SCIENTIFIC_NAME_KEY, FactCollection.DECIMAL_LATITUDE_KEY, FactCollection.DECIMAL_LONGITUDE_KEY,
+            FactCollection.ROW_KEY));
+
+    @Test
+    public void behavesAsAMap() {
+        DataRow row = SCHEMA.newRow();
+        Map<String, String> map = new HashMap<String, String>();
+        assertTrue(row.isEmpty());
+
+        for (Map<String, String> m : Arrays.asList(row, map)) {
+            m.put(FactCollection.SCIENTIFIC_NAME_KEY, "Crex crex");
+            m.put(new String(FactCollection.DECIMAL_LATITUDE_KEY), "-35.2");
+            m.put("dataResourceUid", "dr1");
+            m.put(FactCollection.DECIMAL_LONGITUDE_KEY, null);
+            m.put(FactCollection.ROW_KEY, "2");
+            m.remove(FactCollection.ROW_KEY);
+        }
+        assertEquals(map, row);
+        assertEquals(row, map);
+        assertEquals(map.hashCode(), row.hashCode());
+        assertEquals(4, row.size());
+        assertTrue(row.containsKey(FactCollection.DECIMAL_LONGITUDE_KEY));
+        assertNull(row.get(FactCollection.DECIMAL_LONGITUDE_KEY));
+        assertFalse(row.containsKey(FactCollection.ROW_KEY));
+        assertEquals("-35.2", row.get(FactCollection.DECIMAL_LATITUDE_KEY));
+
+        row.put(FactCollection.DECIMAL_LONGITUDE_KEY, "149.1");
+        assertEquals("149.1", row.get(SCHEMA.indexOf(FactCollection.DECIMAL_LONGITUDE_KEY)));
+        assertEquals(4, row.size());
+    }
+
+    @Test
+    public void removeWhileIterating() {
+        DataRow row = SCHEMA.newRow();
+        row.put(FactCollection.SCIENTIFIC_NAME_KEY, "Crex crex");
+        row.put(FactCollection.ROW_KEY, "2");
+        row.put("dataResourceUid", "dr1");
+        for (Iterator<Map.Entry<String, String>> i = row.entrySet().iterator(); i.hasNext(); ) {
+            if (!i.next().getKey().equals(FactCollection.ROW_KEY)) {
+                i.remove();
+            }
+        }
+        assertEquals(1, row.size());
+        assertEquals("2", row.get(FactCollection.ROW_KEY));
+    }
+
+    @Test
+    public void factsCopyARowWhenChanged() {
+        DataRow row = SCHEMA.newRow();
+        row.put(FactCollection.SCIENTIFIC_NAME_KEY, "Crex crex");
+        FactCollection facts = new FactCollection(row);
+        assertEquals("Crex crex", facts.get(FactCollection.SCIENTIFIC_NAME_KEY));
+
+        facts.add(FactCollection.SCIENTIFIC_NAME_KEY, "Crex");
+        facts.add(FactCollection.STATE_PROVINCE_KEY, "NSW");
+        assertEquals("Crex", facts.get(FactCollection.SCIENTIFIC_NAME_KEY));
+        assertEquals("Crex crex", row.get(FactCollection.SCIENTIFIC_NAME_KEY));
+        assertFalse(row.containsKey(FactCollection.STATE_PROVINCE_KEY));
+    }
+}
@@ -0,0 +1,106 @@
+package au.org.ala.sds.knowledgebase;
+
+import org.drools.compiler.lang.descr.PackageDescr;
+import org.drools.compiler.lang.descr.RuleDescr;
+import org.drools.core.util.DroolsStreamUtils;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kie.api.definition.rule.Rule;
+import org.kie.internal.definition.KnowledgePackage;
+import org.kie.internal.io.ResourceFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class KnowledgeBaseCompilerTest {
+
+    @org.junit.Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void precompiledPackagesMatchRuntimeCompile() throws Exception {
+        for (String drl : KnowledgeBaseFactory.getRuleFiles().values()) {
+            File source = new File(getClass().getResource("/" + drl).toURI());
+            File output = new File(folder.getRoot(), KnowledgeBaseFactory.getPackageName(drl));
+            KnowledgeBaseCompiler.compile(source, output);
+            assertTrue(output.length() > 0);
+
+            Collection<KnowledgePackage> precompiled;
+            try (InputStream in = new FileInputStream(output)) {
+                precompiled = (Collection<KnowledgePackage>) DroolsStreamUtils.streamIn(in, getClass().getClassLoader());
+            }
+            Collection<KnowledgePackage> compiled = KnowledgeBaseFactory.compile(ResourceFactory.newClassPathResource(drl));
+            assertEquals(drl, ruleNames(compiled), ruleNames(precompiled));
+
+            // The loaded packages must be usable without the compiler
+            org.kie.internal.KnowledgeBaseFactory.newKnowledgeBase().addKnowledgePackages(precompiled);
+        }
+    }
+
+    @Test
+    public void agendaGroups() {
+        String drl = "rule \"In Australia\"\n    when\n    then\nend\n//rule \"Disabled\"\n"
+                + "  rule 'Single quoted'\n    when\n    then\nend\n"
+                + "rule Unquoted\n    when\n    then\nend\n"
+                + "rule \"Grouped\" agenda-group \"PBC1\"\n    when\n    then\nend\n";
+        PackageDescr pkg = KnowledgeBaseFactory.toAgendaGroup("PBC1", "test.drl", drl);
+        List<String> names = new ArrayList<String>();
+        for (RuleDescr rule : pkg.getRules()) {
+            names.add(rule.getName());
+            assertEquals(rule.getName(), "PBC1", rule.getAttributes().get("agenda-group").getValue());
+        }
+        assertEquals(Arrays.asList("PBC1 In Australia", "PBC1 Single quoted", "PBC1 Unquoted", "PBC1 Grouped"), names);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ruleInAnotherAgendaGroup() {
+        KnowledgeBaseFactory.toAgendaGroup("PBC1", "test.drl", "rule \"Grouped\" agenda-group \"PBC2\"\n    when\n    then\nend\n");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unparseableRules() {
+        KnowledgeBaseFactory.toAgendaGroup("PBC1", "test.drl", "rule \"Broken\"\n    when\n");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mergedPackages() throws Exception {
+        File output = new File(folder.getRoot(), KnowledgeBaseFactory.MERGED_PACKAGE);
+        KnowledgeBaseCompiler.compileMerged(null, output);
+
+        int expected = 0;
+        for (String drl : KnowledgeBaseFactory.getRuleFiles().values()) {
+            expected += ruleNames(KnowledgeBaseFactory.compile(ResourceFactory.newClassPathResource(drl))).size();
+        }
+        Collection<KnowledgePackage> merged;
+        try (InputStream in = new FileInputStream(output)) {
+            merged = (Collection<KnowledgePackage>) DroolsStreamUtils.streamIn(in, getClass().getClassLoader());
+        }
+        assertEquals(expected, ruleNames(merged).size());
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void missingRules() throws Exception {
+        KnowledgeBaseCompiler.compile(new File(folder.getRoot(), "missing.drl"), new File(folder.getRoot(), "missing.pkg"));
+    }
+
+    private static Set<String> ruleNames(Collection<KnowledgePackage> packages) {
+        Set<String> names = new TreeSet<String>();
+        for (KnowledgePackage pkg : packages) {
+            for (Rule rule : pkg.getRules()) {
+                names.add(pkg.getName() + "." + rule.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,64 @@
+package au.org.ala.sds.knowledgebase;
+
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityCategoryFactory;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.internal.KnowledgeBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class KnowledgeBaseFactoryTest {
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    @Test
+    public void concurrentLookupsShareKnowledgeBases() throws Exception {
+        final List<SensitivityCategory> categories = new ArrayList<SensitivityCategory>();
+        for (String id : KnowledgeBaseFactory.getRuleFiles().keySet()) {
+            categories.add(SensitivityCategoryFactory.getCategory(id));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<KnowledgeBase>>> futures = new ArrayList<Future<List<KnowledgeBase>>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<List<KnowledgeBase>>() {
+                    @Override
+                    public List<KnowledgeBase> call() {
+                        List<KnowledgeBase> kbs = new ArrayList<KnowledgeBase>();
+                        for (SensitivityCategory category : categories) {
+                            kbs.add(KnowledgeBaseFactory.getKnowledgeBase(category));
+                        }
+                        return kbs;
+                    }
+                }));
+            }
+            List<KnowledgeBase> first = futures.get(0).get();
+            for (Future<List<KnowledgeBase>> future : futures) {
+                List<KnowledgeBase> kbs = future.get();
+                for (int i = 0; i < categories.size(); i++) {
+                    assertNotNull(kbs.get(i));
+                    assertSame(first.get(i), kbs.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Nothing left to build
+        KnowledgeBaseFactory.warmUp();
+        assertSame(KnowledgeBaseFactory.getKnowledgeBase(categories.get(0)), KnowledgeBaseFactory.getKnowledgeBase(categories.get(0)));
+    }
+}
@@ -14,13 +14,28 @@
  ***************************************************************************/
 package au.org.ala.sds.model;
 
+import au.org.ala.names.model.LinnaeanRankClassification;
+import au.org.ala.names.model.MetricsResultDTO;
 import au.org.ala.names.search.ALANameSearcher;
+import au.org.ala.names.search.SearchResultException;
 import au.org.ala.sds.SensitiveSpeciesFinder;
 import au.org.ala.sds.SensitiveSpeciesFinderFactory;
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
 import au.org.ala.sds.util.Configuration;
 import au.org.ala.sds.util.TestUtils;
 import org.junit.Test;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
 public class SensitiveSpeciesStoreTest {
     @Test
     public void testCreate() throws Exception {
@@ -28,6 +43,104 @@ public class SensitiveSpeciesStoreTest {
         SensitiveSpeciesFinder finder = SensitiveSpeciesFinderFactory.getSensitiveSpeciesFinder(new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex()));
         SensitiveTaxon taxon = finder.findSensitiveSpecies("Acacia dealbata");
     }
+
+    @Test
+    public void testNameCache() throws Exception {
+        TestUtils.initConfig();
+        SensitiveSpeciesFinder finder = SensitiveSpeciesFinderFactory.getSensitiveSpeciesFinder(new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex()));
+        SensitiveTaxonStore store = finder.getStore();
+        store.clearNameCache();
+
+        SensitiveTaxon taxon = finder.findSensitiveSpecies("Wollemia nobilis");
+        SensitiveTaxon notSensitive = finder.findSensitiveSpecies("Nonexistent nomen");
+        assertEquals(0, store.getNameCache().getHits());
+        assertEquals(2, store.getNameCache().getMisses());
+
+        assertSame(taxon, finder.findSensitiveSpecies("Wollemia nobilis"));
+        assertSame(notSensitive, finder.findSensitiveSpecies("Nonexistent nomen"));
+        assertEquals(2, store.getNameCache().getHits());
+        assertEquals(2, store.getNameCache().size());
+
+        store.clearNameCache();
+        assertEquals(0, store.getNameCache().size());
+    }
+
+    @Test
+    public void testNameSearchFailureIsNotCached() throws Exception {
+        TestUtils.initConfig();
+        final AtomicBoolean fail = new AtomicBoolean();
+        ALANameSearcher searcher = new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex()) {
+            @Override
+            public MetricsResultDTO searchForRecordMetrics(LinnaeanRankClassification cl, boolean recursiveMatching, boolean fuzzy) throws SearchResultException {
+                if (fail.getAndSet(false)) {
+                    throw new SearchResultException("Name index unavailable");
+                }
+                return super.searchForRecordMetrics(cl, recursiveMatching, fuzzy);
+            }
+        };
+        SensitiveTaxonStore store;
+        InputStream stream = getClass().getResourceAsStream("/sensitive-species.xml");
+        try {
+            store = new SensitiveTaxonStore(new SensitiveSpeciesXmlDao(stream), searcher);
+        } finally {
+            stream.close();
+        }
+        SensitiveTaxon expected = store.findByName("Wollemia nobilis");
+        assertNotNull(expected);
+        store.clearNameCache();
+
+        // The search fails once, so the name is looked up again rather than cached as not found
+        fail.set(true);
+        store.findByName("Wollemia nobilis");
+        assertEquals(0, store.getNameCache().size());
+
+        assertSame(expected, store.findByName("Wollemia nobilis"));
+        assertEquals(1, store.getNameCache().size());
+        assertSame(expected, store.findByName("Wollemia nobilis"));
+        assertEquals(1, store.getNameCache().getHits());
+    }
+
+    @Test
+    public void testNameCacheHitsFromThreads() throws Exception {
+        TestUtils.initConfig();
+        final SensitiveSpeciesFinder finder = SensitiveSpeciesFinderFactory.getSensitiveSpeciesFinder(new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex()));
+        SensitiveTaxonStore store = finder.getStore();
+        store.clearNameCache();
+        final String[] names = { "Wollemia nobilis", "Callocephalon fimbriatum", "Nonexistent nomen" };
+        final SensitiveTaxon[] expected = new SensitiveTaxon[names.length];
+        for (int i = 0; i < names.length; i++) {
+            expected[i] = finder.findSensitiveSpecies(names[i]);
+        }
+        assertEquals(names.length, store.getNameCache().getMisses());
+
+        final int threads = 8;
+        final int lookups = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = 0; i < lookups; i++) {
+                            if (finder.findSensitiveSpecies(names[i % names.length]) != expected[i % names.length]) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(threads * lookups, store.getNameCache().getHits());
+        assertEquals(names.length, store.getNameCache().getMisses());
+    }
+
     @Test
     public void testStripTaxonTokens() {
 
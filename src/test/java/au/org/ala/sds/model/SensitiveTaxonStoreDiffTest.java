@@ -0,0 +1,105 @@
+package au.org.ala.sds.model;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.util.TestUtils;
+
+import static org.junit.Assert.*;
+
+public class SensitiveTaxonStoreDiffTest {
+
+    private static final String CREX =
+            "<sensitiveSpecies name=\"Crex crex\" family=\"Rallidae\" rank=\"SPECIES\"><instances>" +
+            "<conservationInstance category=\"EN\" authority=\"Birds Australia\" dataResourceId=\"dr494\" zone=\"AUS\" generalisation=\"10km\" />" +
+            "</instances></sensitiveSpecies>";
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    private static SensitiveTaxonStore store(String... species) throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><sensitiveSpeciesList>");
+        for (String s : species) {
+            xml.append(s);
+        }
+        xml.append("</sensitiveSpeciesList>");
+        return new SensitiveTaxonStore(new SensitiveSpeciesXmlDao(new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8))), null);
+    }
+
+    private static String species(String name, String... instances) {
+        StringBuilder xml = new StringBuilder("<sensitiveSpecies name=\"" + name + "\" rank=\"SPECIES\"><instances>");
+        for (String instance : instances) {
+            xml.append(instance);
+        }
+        return xml.append("</instances></sensitiveSpecies>").toString();
+    }
+
+    private static String conservation(String zone, String authority, String category, String generalisation) {
+        return "<conservationInstance category=\"" + category + "\" authority=\"" + authority + "\" dataResourceId=\"dr1\" zone=\"" +
+                zone + "\" generalisation=\"" + generalisation + "\" />";
+    }
+
+    @Test
+    public void addedRemovedAndChanged() throws Exception {
+        SensitiveTaxonStore before = store(CREX,
+                species("Callocephalon fimbriatum", conservation("NSW", "NSW OEH", "VU", "1km"), conservation("VIC", "Vic DSE", "EN", "10km")),
+                species("Wollemia nobilis", conservation("NSW", "NSW OEH", "EN", "WITHHOLD")));
+        SensitiveTaxonStore after = store(CREX,
+                species("Callocephalon fimbriatum", conservation("NSW", "NSW OEH", "VU", "10km"), conservation("QLD", "Qld EPA", "VU", "1km")),
+                species("Galaxias fontanus", conservation("TAS", "Tas DPIPWE", "EN", "WITHHOLD")));
+
+        SensitiveTaxonStoreDiff diff = SensitiveTaxonStoreDiff.compare(before, after);
+        assertFalse(diff.isEmpty());
+        assertEquals(1, diff.getAdded().size());
+        assertEquals("Galaxias fontanus", diff.getAdded().get(0).getName());
+        assertEquals(1, diff.getRemoved().size());
+        assertEquals("Wollemia nobilis", diff.getRemoved().get(0).getName());
+        assertEquals(Arrays.asList("Callocephalon fimbriatum", "Galaxias fontanus", "Wollemia nobilis"),
+                Arrays.asList(diff.getNames().toArray()));
+
+        assertEquals(1, diff.getChanged().size());
+        SensitiveTaxonStoreDiff.TaxonChange change = diff.getChanged().get(0);
+        assertEquals("Callocephalon fimbriatum", change.getName());
+        assertFalse(change.isLsidChanged());
+        assertEquals(Arrays.asList("NSW", "QLD", "VIC"), Arrays.asList(change.getZones().toArray()));
+
+        List<SensitiveTaxonStoreDiff.InstanceChange> instances = change.getInstances();
+        assertEquals(3, instances.size());
+        SensitiveTaxonStoreDiff.InstanceChange nsw = instances.get(0);
+        assertEquals("NSW", nsw.getZone().getId());
+        assertTrue(nsw.isGeneralisationChanged());
+        assertFalse(nsw.isCategoryChanged());
+        assertTrue(instances.get(1).isAdded());
+        assertEquals("QLD", instances.get(1).getZone().getId());
+        assertTrue(instances.get(2).isRemoved());
+        assertEquals("VIC", instances.get(2).getZone().getId());
+    }
+
+    @Test
+    public void categoryChanged() throws Exception {
+        SensitiveTaxonStoreDiff diff = SensitiveTaxonStoreDiff.compare(
+                store(species("Wollemia nobilis", conservation("NSW", "NSW OEH", "VU", "WITHHOLD"))),
+                store(species("Wollemia nobilis", conservation("NSW", "nsw oeh", "EN", "WITHHOLD"))));
+        assertEquals(1, diff.getChanged().size());
+        SensitiveTaxonStoreDiff.InstanceChange change = diff.getChanged().get(0).getInstances().get(0);
+        assertTrue(change.isCategoryChanged());
+        assertFalse(change.isGeneralisationChanged());
+    }
+
+    @Test
+    public void unchanged() throws Exception {
+        SensitiveTaxonStoreDiff diff = SensitiveTaxonStoreDiff.compare(
+                store(CREX, species("Wollemia nobilis", conservation("NSW", "NSW OEH", "EN", "WITHHOLD"))),
+                store(species("Wollemia nobilis", conservation("NSW", "NSW OEH", "EN", "WITHHOLD")), CREX));
+        assertTrue(diff.isEmpty());
+        assertTrue(diff.getNames().isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package au.org.ala.sds.model;
+
+import au.org.ala.names.search.ALANameSearcher;
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.util.Configuration;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that matching names in parallel builds the same store as matching them in turn.
+ */
+public class SensitiveTaxonStoreParallelTest {
+
+    private static ALANameSearcher nameSearcher;
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+        nameSearcher = new ALANameSearcher(Configuration.getInstance().getNameMatchingIndex());
+    }
+
+    @Test
+    public void testSpeciesList() throws Exception {
+        compare("/sensitive-species.xml");
+    }
+
+    @Test
+    public void scottishSpeciesList() throws Exception {
+        compare("/sensitive-species-scotland.xml");
+    }
+
+    private void compare(String resource) throws Exception {
+        SensitiveTaxonStore serial = new SensitiveTaxonStore(new SensitiveSpeciesXmlDao(getClass().getResourceAsStream(resource)), nameSearcher, 1);
+        SensitiveTaxonStore parallel = new SensitiveTaxonStore(new SensitiveSpeciesXmlDao(getClass().getResourceAsStream(resource)), nameSearcher, 8);
+
+        assertEquals(serial.getTaxonCount(), parallel.getTaxonCount());
+        assertEquals(serial.getLsidMap(), parallel.getLsidMap());
+        assertEquals(serial.getNameMap(), parallel.getNameMap());
+        for (int i = 0; i < serial.getTaxonCount(); i++) {
+            SensitiveTaxon expected = serial.getTaxonList().get(i);
+            SensitiveTaxon actual = parallel.getTaxonList().get(i);
+            String context = expected.getName();
+            assertEquals(context, expected.getName(), actual.getName());
+            assertEquals(context, expected.getRank(), actual.getRank());
+            assertEquals(context, expected.getLsid(), actual.getLsid());
+            assertEquals(context, expected.getAcceptedName(), actual.getAcceptedName());
+            assertEquals(context, expected.getAcceptedTaxon() == null ? null : expected.getAcceptedTaxon().getName(),
+                    actual.getAcceptedTaxon() == null ? null : actual.getAcceptedTaxon().getName());
+            assertEquals(context, expected.getOwnInstances().toString(), actual.getOwnInstances().toString());
+            assertEquals(context, expected.getInstances().toString(), actual.getInstances().toString());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package au.org.ala.sds.model;
+
+import au.org.ala.names.model.RankType;
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SensitiveTaxonStoreSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SensitiveTaxonStore store;
+    private File file;
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    /**
+     * The test species list, with lsids, a synonym and a plant pest with dates and transient events, since there is
+     * no name matching index to supply them.
+     */
+    @Before
+    public void setUp() throws Exception {
+        List<SensitiveTaxon> taxa = new SensitiveSpeciesXmlDao(getClass().getResourceAsStream("/sensitive-species.xml")).getAll();
+        PlantPestInstance plantPest = new PlantPestInstance(SensitivityCategoryFactory.getCategory(SensitivityCategory.PLANT_PEST_NON_TRANSIENT),
+                "APPD", "dr123", SensitivityZoneFactory.getZone(SensitivityZone.QLD), "Reason", null, "2001-02-03", "2010-11-12");
+        plantPest.addTransientEvent("2005-06-07", SensitivityZoneFactory.getZone(SensitivityZone.NSW));
+        SensitiveTaxon pest = new SensitiveTaxon("Testus transiens", RankType.SPECIES);
+        pest.getInstances().add(plantPest);
+        taxa.add(pest);
+        Collections.sort(taxa);
+
+        Map<String, Integer> lsidMap = new HashMap<String, Integer>();
+        Map<String, Integer> nameMap = new HashMap<String, Integer>();
+        for (int i = 0; i < taxa.size(); i++) {
+            taxa.get(i).setLsid("urn:lsid:test:" + i);
+            lsidMap.put(taxa.get(i).getLsid(), i);
+            nameMap.put(taxa.get(i).getName(), i);
+        }
+        SensitiveTaxon synonym = taxa.get(1);
+        synonym.setAcceptedName(taxa.get(0).getName());
+        synonym.setAcceptedTaxon(taxa.get(0));
+        nameMap.remove(synonym.getName());
+
+        store = new SensitiveTaxonStore(taxa, lsidMap, nameMap, null);
+        file = new File(folder.getRoot(), "species-cache.ser");
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        SensitiveTaxonStoreSnapshot.write(store, file);
+        SensitiveTaxonStore copy = SensitiveTaxonStoreSnapshot.read(file, null);
+
+        assertNotNull(copy);
+        assertEquals(store.getTaxonCount(), copy.getTaxonCount());
+        assertEquals(store.getLsidMap(), copy.getLsidMap());
+        assertEquals(store.getNameMap(), copy.getNameMap());
+        for (int i = 0; i < store.getTaxonCount(); i++) {
+            SensitiveTaxon expected = store.getTaxonList().get(i);
+            SensitiveTaxon actual = copy.getTaxonList().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getFamily(), actual.getFamily());
+            assertEquals(expected.getCommonName(), actual.getCommonName());
+            assertEquals(expected.getRank(), actual.getRank());
+            assertEquals(expected.getLsid(), actual.getLsid());
+            assertEquals(expected.getAcceptedName(), actual.getAcceptedName());
+            assertEquals(expected.getOwnInstances().size(), actual.getOwnInstances().size());
+            for (int j = 0; j < expected.getOwnInstances().size(); j++) {
+                assertEquals(expected.getOwnInstances().get(j).toString(), actual.getOwnInstances().get(j).toString());
+                // Zones and categories come from the factories, as they do for a newly built store
+                assertSame(expected.getOwnInstances().get(j).getZone(), actual.getOwnInstances().get(j).getZone());
+                assertSame(expected.getOwnInstances().get(j).getCategory(), actual.getOwnInstances().get(j).getCategory());
+            }
+        }
+
+        assertSame(copy.getTaxonList().get(0), copy.getTaxonList().get(1).getAcceptedTaxon());
+        assertSame(copy.getTaxonList().get(0).getInstances(), copy.getTaxonList().get(1).getInstances());
+
+        PlantPestInstance plantPest = (PlantPestInstance) copy.findByExactMatch("Testus transiens").getInstances().get(0);
+        assertEquals(new PlantPestInstance(null, null, null, null, null, null, "2001-02-03", null).getFromDate(), plantPest.getFromDate());
+        assertEquals(new PlantPestInstance(null, null, null, null, null, null, null, "2010-11-12").getToDate(), plantPest.getToDate());
+        assertEquals(1, plantPest.getTransientEventList().size());
+        assertEquals(SensitivityZoneFactory.getZone(SensitivityZone.NSW), plantPest.getTransientEventList().get(0).getZone());
+
+        String lsid = store.getTaxonList().get(5).getLsid();
+        assertEquals(store.findByLsid(lsid).getName(), copy.findByLsid(lsid).getName());
+    }
+
+    @Test
+    public void damaged() throws Exception {
+        SensitiveTaxonStoreSnapshot.write(store, file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0xFF);
+        }
+        assertNull(SensitiveTaxonStoreSnapshot.read(file, null));
+    }
+
+    @Test
+    public void otherVersion() throws Exception {
+        SensitiveTaxonStoreSnapshot.write(store, file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(SensitiveTaxonStoreSnapshot.VERSION + 1);
+        }
+        assertNull(SensitiveTaxonStoreSnapshot.read(file, null));
+    }
+
+    @Test
+    public void javaSerialization() throws Exception {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
+            oos.writeObject(new ArrayList<String>());
+        }
+        assertNull(SensitiveTaxonStoreSnapshot.read(file, null));
+    }
+}
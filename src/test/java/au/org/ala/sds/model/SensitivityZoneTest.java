@@ -18,7 +18,19 @@ import au.org.ala.sds.util.TestUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class SensitivityZoneTest {
@@ -32,4 +44,52 @@ public class SensitivityZoneTest {
         assertTrue(SensitivityZone.isInAustralia(SensitivityZoneFactory.getZone(SensitivityZone.NSW)));
         assertFalse(SensitivityZone.isInAustralia(SensitivityZoneFactory.getZone(SensitivityZone.NOTAUS)));
     }
+
+    @Test
+    public void getZoneByName() {
+        SensitivityZone nsw = SensitivityZoneFactory.getZone(SensitivityZone.NSW);
+        assertSame(nsw, SensitivityZoneFactory.getZoneByName("New South Wales"));
+        assertSame(nsw, SensitivityZoneFactory.getZoneByName(" NEW SOUTH WALES "));
+        assertSame(nsw, SensitivityZoneFactory.getZoneByName("nsw"));
+        assertSame(nsw, SensitivityZoneFactory.findZone("NSW"));
+
+        long misses = SensitivityZoneFactory.getZoneNameMisses();
+        assertNull(SensitivityZoneFactory.lookupZoneByName("Atlantis"));
+        assertNull(SensitivityZoneFactory.lookupZoneByName(null));
+        assertEquals(misses, SensitivityZoneFactory.getZoneNameMisses());
+        assertNull(SensitivityZoneFactory.getZoneByName("Atlantis"));
+        assertNull(SensitivityZoneFactory.getZoneByName("Lemuria"));
+        assertEquals(misses + 2, SensitivityZoneFactory.getZoneNameMisses());
+    }
+
+    @Test
+    public void concurrentLoad() throws Exception {
+        SensitivityZoneFactory.reset();
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SensitivityZone>> futures = new ArrayList<Future<SensitivityZone>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<SensitivityZone>() {
+                    @Override
+                    public SensitivityZone call() throws Exception {
+                        start.await();
+                        SensitivityZone nsw = SensitivityZoneFactory.getZone(SensitivityZone.NSW);
+                        assertSame(nsw, SensitivityZoneFactory.lookupZoneByName("New South Wales"));
+                        return nsw;
+                    }
+                }));
+            }
+            start.countDown();
+            SensitivityZone nsw = futures.get(0).get();
+            assertNotNull(nsw);
+            for (Future<SensitivityZone> future : futures) {
+                assertSame(nsw, future.get());
+            }
+            assertSame(nsw, SensitivityZoneFactory.getZone(SensitivityZone.NSW));
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
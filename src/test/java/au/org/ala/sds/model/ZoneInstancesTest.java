@@ -0,0 +1,77 @@
+package au.org.ala.sds.model;
+
+import au.org.ala.names.model.RankType;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZoneInstancesTest {
+
+    private static final String[] ZONES = { "[AUS, NSW]", "[AUS, VIC]", "[AUS, QLD]", "[QLD]", "[NOTAUS, NZ]", "[CX]", "[]",
+            "[AUS, WA]", "[NSW, VIC]" };
+
+    private SensitiveTaxon taxon;
+    private ConservationInstance australia;
+    private ConservationInstance nsw;
+    private ConservationInstance vic;
+    private ConservationInstance birds;
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    @Before
+    public void setUp() {
+        SensitivityCategory endangered = SensitivityCategoryFactory.getCategory(SensitivityCategory.ENDANGERED);
+        taxon = new SensitiveTaxon("Testus zonalis", RankType.SPECIES);
+        australia = new ConservationInstance(endangered, "EPBC", null, SensitivityZoneFactory.getZone(SensitivityZone.AUS), null, null, "1km");
+        nsw = new ConservationInstance(endangered, "NSW OEH", null, SensitivityZoneFactory.getZone(SensitivityZone.NSW), null, null, "10km");
+        vic = new ConservationInstance(endangered, "Vic DSE", null, SensitivityZoneFactory.getZone(SensitivityZone.VIC), null, null, "1km");
+        birds = new ConservationInstance(endangered, SensitivityInstance.BIRDS_AUSTRALIA_INSTANCE, null, SensitivityZoneFactory.getZone(SensitivityZone.QLD), null, null, "WITHHOLD");
+        taxon.getInstances().add(australia);
+        taxon.getInstances().add(nsw);
+        taxon.getInstances().add(vic);
+        taxon.getInstances().add(birds);
+    }
+
+    @Test
+    public void matchesTheInstanceScan() {
+        for (String zoneString : ZONES) {
+            ZoneSet zones = ZoneSet.valueOf(zoneString);
+            List<SensitivityZone> list = new ArrayList<SensitivityZone>(zones);
+            assertEquals(zoneString, taxon.getInstancesForZones(list), taxon.getInstancesForZones(zones));
+
+            List<SensitivityInstance> expected = taxon.getInstancesForZones(list);
+            SensitivityInstance.removeInstance(expected, SensitivityInstance.BIRDS_AUSTRALIA_INSTANCE);
+            assertEquals(zoneString, expected, taxon.getInstancesForZones(zones, SensitivityInstance.BIRDS_AUSTRALIA_INSTANCE).getInstances());
+        }
+    }
+
+    @Test
+    public void generalisingInstance() {
+        assertSame(nsw, taxon.getInstancesForZones(ZoneSet.valueOf("[AUS, NSW]"), null).getGeneralisingInstance());
+        // On a tie the later instance is taken
+        assertSame(vic, taxon.getInstancesForZones(ZoneSet.valueOf("[AUS, VIC]"), null).getGeneralisingInstance());
+        assertSame(birds, taxon.getInstancesForZones(ZoneSet.valueOf("[QLD]"), null).getGeneralisingInstance());
+        assertSame(australia, taxon.getInstancesForZones(ZoneSet.valueOf("[QLD]"), SensitivityInstance.BIRDS_AUSTRALIA_INSTANCE).getGeneralisingInstance());
+        assertNull(taxon.getInstancesForZones(ZoneSet.valueOf("[NOTAUS]"), null).getGeneralisingInstance());
+    }
+
+    @Test
+    public void instancesAddedLater() {
+        ZoneSet zones = ZoneSet.valueOf("[AUS, WA]");
+        assertEquals(1, taxon.getInstancesForZones(zones, null).getInstances().size());
+        ConservationInstance wa = new ConservationInstance(SensitivityCategoryFactory.getCategory(SensitivityCategory.VULNERABLE),
+                "WA DEC", null, SensitivityZoneFactory.getZone(SensitivityZone.WA), null, null, "100km");
+        taxon.getInstances().add(wa);
+        assertEquals(2, taxon.getInstancesForZones(zones, null).getInstances().size());
+        assertSame(wa, taxon.getInstancesForZones(zones, null).getGeneralisingInstance());
+    }
+}
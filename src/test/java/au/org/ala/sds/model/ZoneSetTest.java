@@ -0,0 +1,122 @@
+package au.org.ala.sds.model;
+
+import au.org.ala.sds.util.TestUtils;
+import au.org.ala.sds.validation.FactCollection;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZoneSetTest {
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    private static SensitivityZone zone(String id) {
+        return SensitivityZoneFactory.getZone(id);
+    }
+
+    @Test
+    public void interned() {
+        ZoneSet set = ZoneSet.of(Arrays.asList(zone(SensitivityZone.QLD), zone(SensitivityZone.AUS), zone(SensitivityZone.TSPZ)));
+        assertSame(set, ZoneSet.of(new HashSet<SensitivityZone>(Arrays.asList(zone(SensitivityZone.TSPZ), zone(SensitivityZone.QLD), zone(SensitivityZone.AUS), null))));
+        assertSame(set, ZoneSet.valueOf(set.toString()));
+        assertSame(set, ZoneSet.valueOf("TSPZ, QLD, AUS"));
+        assertEquals(3, set.size());
+        assertEquals(new HashSet<SensitivityZone>(set), new HashSet<SensitivityZone>(SensitivityZone.getListFromString(set.toString())));
+        assertTrue(ZoneSet.of(Collections.<SensitivityZone>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void membership() {
+        ZoneSet set = ZoneSet.of(Arrays.asList(zone(SensitivityZone.AUS), zone(SensitivityZone.VIC), zone(SensitivityZone.PIZVICNE)));
+        assertTrue(set.contains(zone(SensitivityZone.VIC)));
+        assertFalse(set.contains(zone(SensitivityZone.NSW)));
+        // Zones are equal by id, even when they were not loaded by the factory
+        assertTrue(set.contains(new SensitivityZone(SensitivityZone.VIC, "Victoria", "Victoria", SensitivityZone.ZoneType.STATE)));
+        assertFalse(set.contains(SensitivityZone.VIC));
+        assertEquals(Arrays.asList(set.toArray()), set);
+        assertEquals(new ArrayList<SensitivityZone>(set).hashCode(), set.hashCode());
+    }
+
+    @Test
+    public void flags() {
+        ZoneSet torresStrait = ZoneSet.valueOf("[QLD, TSSQZ]");
+        assertTrue(torresStrait.isInAustralia());
+        assertTrue(torresStrait.hasState());
+        assertTrue(torresStrait.isInTorresStrait());
+        assertFalse(torresStrait.isNotInAustralia());
+        assertTrue(torresStrait.hasQuarantineZone());
+
+        ZoneSet outside = ZoneSet.valueOf("[NOTAUS, NZ]");
+        assertFalse(outside.isInAustralia());
+        assertTrue(outside.isNotInAustralia());
+
+        ZoneSet territory = ZoneSet.valueOf("[CX]");
+        assertTrue(territory.isExternalTerritory());
+        assertFalse(territory.isInAustralia());
+
+        ZoneSet quarantine = ZoneSet.valueOf("[VIC, PIZVICNE]");
+        assertTrue(quarantine.hasQuarantineZone());
+
+        for (ZoneSet set : Arrays.asList(torresStrait, outside, territory, quarantine)) {
+            List<SensitivityZone> list = new ArrayList<SensitivityZone>(set);
+            assertEquals(SensitivityZone.isInAustralia(list), SensitivityZone.isInAustralia(set));
+            assertEquals(SensitivityZone.isNotInAustralia(list), SensitivityZone.isNotInAustralia(set));
+            assertEquals(SensitivityZone.isInTorresStrait(list), SensitivityZone.isInTorresStrait(set));
+            assertEquals(SensitivityZone.isExternalTerritory(list), SensitivityZone.isExternalTerritory(set));
+        }
+    }
+
+    @Test
+    public void reloaded() {
+        SensitivityZone nsw = zone(SensitivityZone.NSW);
+        SensitivityZone[] registry = SensitivityZoneFactory.getRegistry();
+        SensitivityZoneFactory.reset();
+
+        // A zone from the earlier load joins a set of the zones now loaded
+        ZoneSet set = ZoneSet.of(Arrays.asList(nsw, zone(SensitivityZone.AUS)));
+        assertNotSame(registry, set.getRegistry());
+        assertSame(SensitivityZoneFactory.getRegistry(), set.getRegistry());
+        assertTrue(set.contains(zone(SensitivityZone.NSW)));
+        assertSame(zone(SensitivityZone.NSW), set.get(set.indexOf(nsw)));
+        assertSame(set, ZoneSet.valueOf("NSW, AUS"));
+
+        // An ordinal asked of the earlier registry is an ordinal in that registry
+        int ordinal = SensitivityZoneFactory.getOrdinal(registry, zone(SensitivityZone.NSW));
+        assertSame(nsw, registry[ordinal]);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        ZoneSet.valueOf("[AUS, NSW]").add(zone(SensitivityZone.VIC));
+    }
+
+    @Test
+    public void zoneDescriptionsLeaveTheSetAlone() {
+        ZoneSet set = ZoneSet.valueOf("[AUS, NSW]");
+        assertEquals("New South Wales, Australia", SensitivityZone.getZoneDescriptions(set));
+        assertEquals(zone(SensitivityZone.AUS), set.get(0));
+    }
+
+    @Test
+    public void factCollection() {
+        FactCollection facts = new FactCollection();
+        facts.add(FactCollection.ZONES_KEY, "NT");
+        assertEquals(Collections.singletonList(zone(SensitivityZone.NT)), facts.getZones());
+
+        ZoneSet set = ZoneSet.valueOf("[AUS, WA]");
+        facts.setZones(set);
+        assertSame(set, facts.getZones());
+        assertEquals(set.toString(), facts.get(FactCollection.ZONES_KEY));
+        assertTrue(facts.contains(FactCollection.ZONES_KEY));
+    }
+}
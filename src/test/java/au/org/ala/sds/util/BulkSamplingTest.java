@@ -0,0 +1,99 @@
+package au.org.ala.sds.util;
+
+import au.org.ala.sds.model.GeoLocation;
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.SensitivityZoneFactory;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the bulk sampling path against a stub layers service.
+ */
+public class BulkSamplingTest {
+
+    private HttpServer server;
+    private String layersServiceUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/intersect/", exchange -> {
+            requests.incrementAndGet();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            double latitude = Double.parseDouble(path[path.length - 2]);
+            String body = latitude > -37.5 ? "[{\"field\":\"cl22\",\"value\":\"New South Wales\"}]" : "[]";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        layersServiceUrl = Configuration.getInstance().getLayersServiceUrl();
+        Configuration.getInstance().setLayersServiceUrl("http://localhost:" + server.getAddress().getPort());
+        GeoLocationHelper.setZoneIntersector(null);
+    }
+
+    @After
+    public void stopServer() {
+        Configuration.getInstance().setLayersServiceUrl(layersServiceUrl);
+        GeoLocationHelper.clearZoneCache();
+        server.stop(0);
+    }
+
+    @Test
+    public void distinctPointsAreSampledOnce() throws Exception {
+        GeoLocation nsw = new GeoLocation("-35.0", "145.0");
+        GeoLocation nswAgain = new GeoLocation("-35.00", "145.0");
+        GeoLocation outside = new GeoLocation("-41.5", "173.9");
+        List<GeoLocation> locations = Arrays.asList(nsw, nswAgain, outside, new GeoLocation("-35.0", "145.0"));
+
+        Map<GeoLocation, Set<SensitivityZone>> zones = GeoLocationHelper.getZonesContainingPoints(locations);
+        assertEquals(2, requests.get());
+        assertEquals(3, zones.size());
+        assertTrue(zones.get(nsw).contains(SensitivityZoneFactory.getZone(SensitivityZone.NSW)));
+        assertSame(zones.get(nsw), zones.get(nswAgain));
+        assertTrue(zones.get(outside).contains(SensitivityZoneFactory.getZone(SensitivityZone.NOTAUS)));
+
+        // Second call is answered from the cache, and agrees with the single point lookup
+        zones = GeoLocationHelper.getZonesContainingPoints(locations);
+        assertEquals(2, requests.get());
+        assertSame(zones.get(nsw), GeoLocationHelper.getZonesContainingPoint("-35.0", "145.0"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void manyPointsAreSampledConcurrently() throws Exception {
+        GeoLocation[] locations = new GeoLocation[50];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new GeoLocation(String.valueOf(-30.0 - i * 0.2), "145.0");
+        }
+        Map<GeoLocation, Set<SensitivityZone>> zones = GeoLocationHelper.getZonesContainingPoints(Arrays.asList(locations));
+        assertEquals(locations.length, requests.get());
+        assertEquals(locations.length, zones.size());
+        assertTrue(zones.get(locations[0]).contains(SensitivityZoneFactory.getZone(SensitivityZone.NSW)));
+        assertTrue(zones.get(locations[49]).contains(SensitivityZoneFactory.getZone(SensitivityZone.NOTAUS)));
+    }
+}
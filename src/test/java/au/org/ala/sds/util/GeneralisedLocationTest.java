@@ -4,11 +4,14 @@ import au.org.ala.names.model.RankType;
 import au.org.ala.sds.model.*;
 import org.junit.Test;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 
 public class GeneralisedLocationTest {
@@ -81,4 +84,40 @@ public class GeneralisedLocationTest {
         assertEquals(ACT_LONG, defaultGeneralisation.getGeneralisedLongitude());
         assertEquals("", defaultGeneralisation.getGeneralisationInMetres());
     }
+
+    @Test
+    public void roundAsFormatted() {
+        String[] coordinates = { "-35.12345", "146.67890", "-0.04", "-0.00", "9.96", "-9.96", ".55", "+1.55", "007.55",
+                "5.", "0.5", "-0.5", "99.9995", "1.005", "-37.0", "12", "1.5E2", "-1.23456e-3" };
+        for (String coordinate : coordinates) {
+            for (int decimalPlaces = 0; decimalPlaces <= 3; decimalPlaces++) {
+                BigDecimal bd = new BigDecimal(coordinate);
+                String expected = bd.scale() > decimalPlaces ? String.format("%." + decimalPlaces + "f", bd) : coordinate;
+                assertEquals(coordinate + " to " + decimalPlaces, expected, GeneralisedLocation.round(coordinate, decimalPlaces));
+            }
+        }
+        assertEquals("-0.0", GeneralisedLocation.round("-0.04", 1));
+        assertEquals("10.0", GeneralisedLocation.round("9.96", 1));
+        assertEquals("", GeneralisedLocation.round(null, 1));
+    }
+
+    @Test
+    public void roundInAnotherLocale() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+            assertEquals("-35,12", GeneralisedLocation.round("-35.12345", 2));
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, locale);
+        }
+    }
+
+    @Test
+    public void generalisation() {
+        assertEquals(Generalisation.KM10, Generalisation.parse("10KM"));
+        assertEquals(Generalisation.WITHHOLD, Generalisation.parse("withhold"));
+        assertNull(Generalisation.parse("5km"));
+        assertNull(Generalisation.parse(null));
+        assertEquals(Generalisation.KM1, new ConservationInstance(VULNERABLE, "QLD DEHP", "dr493", QLD, null, null, "1km").getGeneralisation());
+    }
 }
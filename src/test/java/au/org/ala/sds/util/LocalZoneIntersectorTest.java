@@ -0,0 +1,104 @@
+package au.org.ala.sds.util;
+
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.SensitivityZoneFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LocalZoneIntersectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        GeoLocationHelper.setZoneIntersector(null);
+    }
+
+    private LocalZoneIntersector createIntersector() throws Exception {
+        File dir = folder.getRoot();
+        write(new File(dir, "cl22.wkt"),
+                "# Simplified state boxes\n" +
+                "New South Wales\tPOLYGON((141 -37.5, 153.6 -37.5, 153.6 -28.2, 141 -28.2, 141 -37.5))\n" +
+                "Victoria\tPOLYGON((141 -39.2, 150 -39.2, 150 -37.5, 141 -37.5, 141 -39.2))\n");
+        write(new File(dir, "cl937.geojson"),
+                "{\"type\":\"FeatureCollection\",\"features\":[" +
+                "{\"type\":\"Feature\",\"properties\":{\"name\":\"Torres Strait Protected Zone\"}," +
+                "\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[[141.5,-10.8],[143.5,-10.8],[143.5,-9.2],[141.5,-9.2],[141.5,-10.8]]]}}" +
+                "]}");
+        return new LocalZoneIntersector(dir, Arrays.asList("cl22", "cl937", "cl927"), "name");
+    }
+
+    private static void write(File file, String content) throws Exception {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+
+    @Test
+    public void intersect() throws Exception {
+        LocalZoneIntersector intersector = createIntersector();
+        assertEquals(3, intersector.getFeatureCount());
+
+        Map<String, String> values = intersector.intersect(-35.0, 145.0);
+        assertEquals(1, values.size());
+        assertEquals("New South Wales", values.get("cl22"));
+
+        values = intersector.intersect(-10.0, 142.5);
+        assertEquals("Torres Strait Protected Zone", values.get("cl937"));
+        assertFalse(values.containsKey("cl22"));
+
+        assertTrue(intersector.intersect(-41.5, 173.9).isEmpty());
+    }
+
+    @Test
+    public void zonesMatchLayersService() throws Exception {
+        GeoLocationHelper.setZoneIntersector(createIntersector());
+
+        Set<SensitivityZone> zones = GeoLocationHelper.getZonesContainingPoint("-35.0", "145.0");
+        assertTrue(zones.contains(SensitivityZoneFactory.getZone(SensitivityZone.NSW)));
+
+        zones = GeoLocationHelper.getZonesContainingPoint("-10.0", "142.5");
+        assertTrue(zones.contains(SensitivityZoneFactory.getZone(SensitivityZone.TSPZ)));
+
+        zones = GeoLocationHelper.getZonesContainingPoint("-41.5", "173.9");
+        assertEquals(1, zones.size());
+        assertTrue(zones.contains(SensitivityZoneFactory.getZone(SensitivityZone.NOTAUS)));
+    }
+
+    @Test
+    public void cachedZones() throws Exception {
+        GeoLocationHelper.setZoneIntersector(createIntersector());
+
+        Set<SensitivityZone> zones = GeoLocationHelper.getZonesContainingPoint("-35.1", "145.0");
+        assertEquals(0, GeoLocationHelper.getZoneCacheHits());
+        assertSame(zones, GeoLocationHelper.getZonesContainingPoint("-35.10", "145.000"));
+        assertEquals(1, GeoLocationHelper.getZoneCacheHits());
+        assertEquals(1, GeoLocationHelper.getZoneCacheMisses());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedZonesAreImmutable() throws Exception {
+        GeoLocationHelper.setZoneIntersector(createIntersector());
+        GeoLocationHelper.getZonesContainingPoint("-35.1", "145.0").clear();
+    }
+}
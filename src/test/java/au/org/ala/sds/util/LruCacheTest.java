@@ -0,0 +1,89 @@
+package au.org.ala.sds.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LruCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LruCache<String, String> cache = new LruCache<String, String>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void disabled() {
+        LruCache<String, String> cache = new LruCache<String, String>(0);
+        cache.put("a", "1");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void expires() throws Exception {
+        LruCache<String, String> cache = new LruCache<String, String>(10, 20, TimeUnit.MILLISECONDS);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(50);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getExpired());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void concurrentLookups() throws Exception {
+        final LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>(100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int wrong = 0;
+                        for (int i = 0; i < 20000; i++) {
+                            int key = (i * 31 + seed) % 150;
+                            Integer value = cache.get(key);
+                            if (value == null) {
+                                cache.put(key, key * 2);
+                            } else if (value != key * 2) {
+                                wrong++;
+                            }
+                        }
+                        return wrong;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(0), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= 100);
+        assertEquals(8 * 20000, cache.getHits() + cache.getMisses());
+        assertTrue(cache.getHits() > 0);
+    }
+}
@@ -0,0 +1,37 @@
+package au.org.ala.sds.util;
+
+import java.util.Collection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Base for plant pest scenario tests, which run each test once under every plant pest engine
+ * (sds.plantpest.engine). The engine is set before each test and the previous engine restored after it.
+ */
+@RunWith(Parameterized.class)
+public abstract class PlantPestEngineScenarios {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return TestUtils.plantPestEngines();
+    }
+
+    @Parameterized.Parameter
+    public String engine;
+
+    private String previousEngine;
+
+    @Before
+    public void useEngine() {
+        previousEngine = Configuration.getInstance().getPlantPestEngine();
+        Configuration.getInstance().setPlantPestEngine(engine);
+    }
+
+    @After
+    public void restoreEngine() {
+        Configuration.getInstance().setPlantPestEngine(previousEngine);
+    }
+}
@@ -4,6 +4,9 @@ import au.org.ala.names.search.ALANameSearcher;
 import au.org.ala.sds.PlantPestEradicatedTest;
 import au.org.ala.sds.SensitiveSpeciesFinderFactory;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 public class TestUtils {
     /**
      * Set up a common configuration
@@ -17,4 +20,10 @@ public class TestUtils {
         Configuration.getInstance().setCategoriesUrl(TestUtils.class.getResource("/sensitivity-categories.xml").toExternalForm());
     }
 
+    /**
+     * @return The plant pest engines, as the parameters of tests that run each scenario under both
+     */
+    public static Collection<Object[]> plantPestEngines() {
+        return Arrays.asList(new Object[][] { { "drools" }, { "java" } });
+    }
 }
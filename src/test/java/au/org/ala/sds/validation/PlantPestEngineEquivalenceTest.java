@@ -0,0 +1,177 @@
+package au.org.ala.sds.validation;
+
+import au.org.ala.sds.SensitiveDataService;
+import au.org.ala.sds.dao.SensitiveSpeciesXmlDao;
+import au.org.ala.sds.knowledgebase.KnowledgeBaseFactory;
+import au.org.ala.sds.model.Message;
+import au.org.ala.sds.model.PlantPestInstance;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityCategoryFactory;
+import au.org.ala.sds.model.SensitivityInstance;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the Drools rules and {@link CompiledPlantPestService} side by side and checks they give identical outcomes.
+ * <p>
+ * The taxa are the plant pests in the test sensitive-species.xml, which the PlantPest*Test classes use, both as
+ * supplied and re-assigned to every plant pest category. Records are generated from combinations of state, zone,
+ * country, date and name fields that drive the rule conditions. When the rules throw, the Java evaluator must throw the
+ * same exception, with the same message, as the rules did.
+ * <p>
+ * The hand-written scenarios of the PlantPest*Test classes, with their located records, dates and transient events, are
+ * run under each engine by those classes, which are parameterised by engine.
+ */
+public class PlantPestEngineEquivalenceTest {
+
+    private static final String[] CATEGORIES = {
+            SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA, SensitivityCategory.PLANT_PEST_ERADICATED,
+            SensitivityCategory.PLANT_PEST_UNDER_ERADICATION, SensitivityCategory.PLANT_PEST_SUBJECT_TO_OFFICIAL_CONTROL,
+            SensitivityCategory.PLANT_PEST_IN_TORRES_STRAIT_ZONE, SensitivityCategory.PLANT_PEST_IS_QUEENSLAND_FRUIT_FLY,
+            SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION, SensitivityCategory.PLANT_PEST_NON_TRANSIENT,
+            SensitivityCategory.PLANT_PEST_EXOTIC_BIOLOGICAL_CONTROL_AGENT, SensitivityCategory.PLANT_PEST_HIGHER_TAXON_ID };
+    private static final String[] STATES = { null, "Queensland", "South Australia", "New South Wales", "NT", "Victoria",
+            "CX", "TSPZ", "TSSQZ", "FFEZ", "PFFPQA1995", "ECCPQA2004", "RIFARA", "PIZNSWAC", "PIZVICNE" };
+    private static final String[] COUNTRIES = { null, "Australia", "New Zealand" };
+    private static final String[] DATES = { null, "1977-06-01", "1990-05-01", "1996-06-01", "2001-10-01", "2005-01-01", "2016-03-03" };
+    private static final int RECORDS_PER_TAXON = 60;
+
+    private static List<SensitiveTaxon> taxa = new ArrayList<SensitiveTaxon>();
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+        for (SensitiveTaxon taxon : new SensitiveSpeciesXmlDao(PlantPestEngineEquivalenceTest.class.getResourceAsStream("/sensitive-species.xml")).getAll()) {
+            if (taxon.isPlantPest()) {
+                taxa.add(taxon);
+            }
+        }
+        assertFalse(taxa.isEmpty());
+    }
+
+    @Test
+    public void suppliedCategories() {
+        Random random = new Random(20140318L);
+        for (SensitiveTaxon taxon : taxa) {
+            compare(taxon, random);
+        }
+    }
+
+    @Test
+    public void everyCategory() {
+        Random random = new Random(19951018L);
+        for (String category : CATEGORIES) {
+            for (SensitiveTaxon taxon : taxa) {
+                compare(reassign(taxon, category), random);
+            }
+        }
+    }
+
+    /**
+     * @return A copy of the taxon whose first instance, and so the rules it starts with, is in the given category
+     */
+    private static SensitiveTaxon reassign(SensitiveTaxon taxon, String category) {
+        SensitiveTaxon copy = new SensitiveTaxon(taxon.getName(), taxon.getRank());
+        copy.setFamily(taxon.getFamily());
+        SensitivityInstance first = taxon.getInstances().get(0);
+        copy.getInstances().add(new PlantPestInstance(SensitivityCategoryFactory.getCategory(category), first.getAuthority(),
+                first.getDataResourceId(), first.getZone(), first.getReason(), first.getRemarks(), null, null));
+        copy.getInstances().addAll(taxon.getInstances());
+        return copy;
+    }
+
+    private static void compare(SensitiveTaxon taxon, Random random) {
+        String category = taxon.getInstances().get(0).getCategory().getId();
+        PlantPestService drools = new PlantPestService(taxon,
+                KnowledgeBaseFactory.getKnowledgeBase(taxon.getInstances().get(0).getCategory()), new SdsReportFactory(), false);
+        PlantPestService java = new CompiledPlantPestService(taxon, new SdsReportFactory());
+
+        for (int i = 0; i < RECORDS_PER_TAXON; i++) {
+            Map<String, String> record = record(taxon, random);
+            String context = category + " " + taxon.getName() + " " + record;
+            ValidationOutcome expected = null, actual = null;
+            RuntimeException expectedError = null, actualError = null;
+            try {
+                expected = drools.validate(new HashMap<String, String>(record));
+            } catch (RuntimeException e) {
+                expectedError = e;
+            }
+            try {
+                actual = java.validate(new HashMap<String, String>(record));
+            } catch (RuntimeException e) {
+                actualError = e;
+            }
+            if (expectedError != null || actualError != null) {
+                assertTrue(context + " drools: " + expectedError + " java: " + actualError, expectedError != null && actualError != null);
+                // Both engines must fail in the same way, once Drools' wrapping of an exception thrown by a rule is removed
+                Throwable expectedCause = rootCause(expectedError), actualCause = rootCause(actualError);
+                assertEquals(context, expectedCause.getClass(), actualCause.getClass());
+                assertEquals(context, expectedCause.getMessage(), actualCause.getMessage());
+                continue;
+            }
+            assertEquals(context, expected.isValid(), actual.isValid());
+            assertEquals(context, expected.isLoadable(), actual.isLoadable());
+            assertEquals(context, expected.isSensitive(), actual.isSensitive());
+            assertEquals(context, expected.isControlledAccess(), actual.isControlledAccess());
+            assertEquals(context, expected.getResult(), actual.getResult());
+            assertEquals(context, expected.getReport().getCategory(), actual.getReport().getCategory());
+            assertEquals(context, expected.getReport().getAssertion(), actual.getReport().getAssertion());
+            assertEquals(context, messages(expected), messages(actual));
+        }
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null && e.getCause() != e) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private static Map<String, String> record(SensitiveTaxon taxon, Random random) {
+        Map<String, String> record = new HashMap<String, String>();
+        put(record, FactCollection.STATE_PROVINCE_KEY, STATES[random.nextInt(STATES.length)]);
+        put(record, FactCollection.COUNTRY_KEY, COUNTRIES[random.nextInt(COUNTRIES.length)]);
+        put(record, FactCollection.EVENT_DATE_KEY, DATES[random.nextInt(DATES.length)]);
+        switch (random.nextInt(3)) {
+            case 0:
+                record.put(FactCollection.SCIENTIFIC_NAME_KEY, taxon.getName());
+                break;
+            case 1:
+                record.put("genus", taxon.getName().split(" ")[0]);
+                break;
+            default:
+        }
+        if (random.nextBoolean()) {
+            record.put("dataResourceUid", "dr" + random.nextInt(1000));
+        }
+        if (random.nextBoolean()) {
+            record.put("locality", "Somewhere " + random.nextInt(10));
+        }
+        record.put(SensitiveDataService.SAMPLED_VALUES_PROVIDED, "true");
+        return record;
+    }
+
+    private static void put(Map<String, String> record, String key, String value) {
+        if (value != null) {
+            record.put(key, value);
+        }
+    }
+
+    private static List<String> messages(ValidationOutcome outcome) {
+        List<String> messages = new ArrayList<String>();
+        for (Message message : outcome.getReport().getMessages()) {
+            messages.add(message.getType() + ":" + message.getMessageText());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,95 @@
+package au.org.ala.sds.validation;
+
+import au.org.ala.names.model.RankType;
+import au.org.ala.sds.SensitiveDataService;
+import au.org.ala.sds.knowledgebase.KnowledgeBaseFactory;
+import au.org.ala.sds.model.Message;
+import au.org.ala.sds.model.PlantPestInstance;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityCategoryFactory;
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.SensitivityZoneFactory;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the merged knowledge base, with delegation by agenda group focus, gives the same outcomes as a
+ * knowledge base per category.
+ */
+public class PlantPestMergedRulesTest {
+
+    private static final String[] STATES = { "Queensland", "New South Wales", "South Australia", "Victoria", "Western Australia" };
+
+    private static List<SensitiveTaxon> taxa = new ArrayList<SensitiveTaxon>();
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+
+        // PBC1 -> PBC5b -> PBC6
+        taxa.add(taxon("Bactrocera tryoni", SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA, SensitivityZone.AUS));
+        // PBC4 -> PBC6 outside Queensland
+        taxa.add(taxon("Testus controllus", SensitivityCategory.PLANT_PEST_SUBJECT_TO_OFFICIAL_CONTROL, SensitivityZone.QLD));
+        // PBC8 -> PBC1
+        taxa.add(taxon("Testus transiens", SensitivityCategory.PLANT_PEST_NON_TRANSIENT, SensitivityZone.AUS));
+        taxa.add(taxon("Testus notifiabilis", SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION, SensitivityZone.NSW));
+    }
+
+    private static SensitiveTaxon taxon(String name, String category, String zone) {
+        SensitiveTaxon taxon = new SensitiveTaxon(name, RankType.SPECIES);
+        taxon.getInstances().add(new PlantPestInstance(SensitivityCategoryFactory.getCategory(category), "TEST", null,
+                SensitivityZoneFactory.getZone(zone), null, null, null, null));
+        return taxon;
+    }
+
+    private static Map<String, String> record(SensitiveTaxon taxon, int i) {
+        Map<String, String> facts = new HashMap<String, String>();
+        facts.put(FactCollection.SCIENTIFIC_NAME_KEY, taxon.getName());
+        facts.put(FactCollection.STATE_PROVINCE_KEY, STATES[i % STATES.length]);
+        if (i % 4 != 3) {
+            facts.put(FactCollection.EVENT_DATE_KEY, (1990 + i % 25) + "-0" + (1 + i % 9) + "-15");
+        }
+        facts.put(SensitiveDataService.SAMPLED_VALUES_PROVIDED, "true");
+        return facts;
+    }
+
+    @Test
+    public void mergedRulesGiveTheSameOutcome() {
+        for (SensitiveTaxon taxon : taxa) {
+            PlantPestService perCategory = new PlantPestService(taxon,
+                    KnowledgeBaseFactory.getKnowledgeBase(taxon.getInstances().get(0).getCategory()), new SdsReportFactory(), false);
+            PlantPestService merged = new PlantPestService(taxon, KnowledgeBaseFactory.getMergedKnowledgeBase(), new SdsReportFactory(), false);
+            merged.setMergedRules(true);
+
+            for (int i = 0; i < STATES.length * 4; i++) {
+                ValidationOutcome expected = perCategory.validate(record(taxon, i));
+                ValidationOutcome actual = merged.validate(record(taxon, i));
+                String context = taxon.getName() + " " + record(taxon, i);
+                assertEquals(context, expected.isValid(), actual.isValid());
+                assertEquals(context, expected.isLoadable(), actual.isLoadable());
+                assertEquals(context, expected.isSensitive(), actual.isSensitive());
+                assertEquals(context, expected.isControlledAccess(), actual.isControlledAccess());
+                assertEquals(context, expected.getReport().getCategory(), actual.getReport().getCategory());
+                assertEquals(context, expected.getReport().getAssertion(), actual.getReport().getAssertion());
+                assertEquals(context, messages(expected), messages(actual));
+            }
+        }
+    }
+
+    private static List<String> messages(ValidationOutcome outcome) {
+        List<String> messages = new ArrayList<String>();
+        for (Message message : outcome.getReport().getMessages()) {
+            messages.add(message.getType() + ":" + message.getMessageText());
+        }
+        return messages;
+    }
+}
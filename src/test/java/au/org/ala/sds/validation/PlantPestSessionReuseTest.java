@@ -0,0 +1,110 @@
+package au.org.ala.sds.validation;
+
+import au.org.ala.names.model.RankType;
+import au.org.ala.sds.SensitiveDataService;
+import au.org.ala.sds.knowledgebase.KnowledgeBaseFactory;
+import au.org.ala.sds.model.Message;
+import au.org.ala.sds.model.PlantPestInstance;
+import au.org.ala.sds.model.SensitiveTaxon;
+import au.org.ala.sds.model.SensitivityCategory;
+import au.org.ala.sds.model.SensitivityCategoryFactory;
+import au.org.ala.sds.model.SensitivityZone;
+import au.org.ala.sds.model.SensitivityZoneFactory;
+import au.org.ala.sds.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.internal.KnowledgeBase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares reused rules sessions with a session per record. Throughput is measured by PlantPestSessionReuseBenchmark
+ * in the jmh profile.
+ */
+public class PlantPestSessionReuseTest {
+
+    private static final String[] STATES = { "Queensland", "New South Wales", "Victoria", "Western Australia" };
+
+    private static List<SensitiveTaxon> taxa = new ArrayList<SensitiveTaxon>();
+
+    @BeforeClass
+    public static void runOnce() throws Exception {
+        TestUtils.initConfig();
+
+        SensitiveTaxon notifiable = new SensitiveTaxon("Testus notifiabilis", RankType.SPECIES);
+        notifiable.getInstances().add(new PlantPestInstance(
+                SensitivityCategoryFactory.getCategory(SensitivityCategory.PLANT_PEST_NOTIFIABLE_UNDER_STATE_LEGISLATION),
+                "QLD", null, SensitivityZoneFactory.getZone(SensitivityZone.QLD), null, null, null, null));
+        taxa.add(notifiable);
+
+        // Queensland fruit fly delegates from PBC1 to PBC5b
+        SensitiveTaxon qff = new SensitiveTaxon("Bactrocera tryoni", RankType.SPECIES);
+        qff.getInstances().add(new PlantPestInstance(
+                SensitivityCategoryFactory.getCategory(SensitivityCategory.PLANT_PEST_NOT_KNOWN_IN_AUSTRALIA),
+                "APPD", null, SensitivityZoneFactory.getZone(SensitivityZone.AUS), null, null, null, null));
+        taxa.add(qff);
+    }
+
+    private static Map<String, String> record(SensitiveTaxon taxon, int i) {
+        Map<String, String> facts = new HashMap<String, String>();
+        facts.put(FactCollection.SCIENTIFIC_NAME_KEY, taxon.getName());
+        facts.put(FactCollection.STATE_PROVINCE_KEY, STATES[i % STATES.length]);
+        facts.put(FactCollection.EVENT_DATE_KEY, (1990 + i % 25) + "-0" + (1 + i % 9) + "-15");
+        facts.put(SensitiveDataService.SAMPLED_VALUES_PROVIDED, "true");
+        return facts;
+    }
+
+    private static PlantPestService service(SensitiveTaxon taxon, boolean reuse) {
+        KnowledgeBase knowledgeBase = KnowledgeBaseFactory.getKnowledgeBase(taxon.getInstances().get(0).getCategory());
+        return new PlantPestService(taxon, knowledgeBase, new SdsReportFactory(), reuse);
+    }
+
+    @Test
+    public void reusedSessionsGiveTheSameOutcome() {
+        for (SensitiveTaxon taxon : taxa) {
+            PlantPestService perRecord = service(taxon, false);
+            PlantPestService reused = service(taxon, true);
+            for (int i = 0; i < STATES.length * 3; i++) {
+                ValidationOutcome expected = perRecord.validate(record(taxon, i));
+                ValidationOutcome actual = reused.validate(record(taxon, i));
+                String context = taxon.getName() + " " + record(taxon, i);
+                assertEquals(context, expected.isLoadable(), actual.isLoadable());
+                assertEquals(context, expected.isSensitive(), actual.isSensitive());
+                assertEquals(context, expected.isControlledAccess(), actual.isControlledAccess());
+                assertEquals(context, expected.getReport().getCategory(), actual.getReport().getCategory());
+                assertEquals(context, expected.getReport().getAssertion(), actual.getReport().getAssertion());
+                assertEquals(context, messages(expected), messages(actual));
+            }
+        }
+    }
+
+    @Test
+    public void sessionsAreDroppedWhenTheKnowledgeBasesAreRebuilt() {
+        SensitiveTaxon taxon = taxa.get(0);
+        KnowledgeBaseFactory.reset();
+        ValidationOutcome before = service(taxon, true).validate(record(taxon, 0));
+        int count = PlantPestService.getSessionCount();
+        assertTrue(count > 0);
+
+        KnowledgeBaseFactory.reset();
+        assertEquals(0, PlantPestService.getSessionCount());
+
+        ValidationOutcome after = service(taxon, true).validate(record(taxon, 0));
+        assertEquals(count, PlantPestService.getSessionCount());
+        assertEquals(before.isLoadable(), after.isLoadable());
+        assertEquals(messages(before), messages(after));
+    }
+
+    private static List<String> messages(ValidationOutcome outcome) {
+        List<String> messages = new ArrayList<String>();
+        for (Message message : outcome.getReport().getMessages()) {
+            messages.add(message.getType() + ":" + message.getMessageText());
+        }
+        return messages;
+    }
+}